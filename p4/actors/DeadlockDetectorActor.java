@@ -0,0 +1,238 @@
+package cmsc433.p4.actors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import cmsc433.p4.messages.DeadlockStatsRequestMsg;
+import cmsc433.p4.messages.DeadlockStatsResponseMsg;
+import cmsc433.p4.messages.DeadlockVictimMsg;
+import cmsc433.p4.messages.WaitForGraphRequestMsg;
+import cmsc433.p4.messages.WaitForGraphResponseMsg;
+import cmsc433.p4.util.LatencyHistogram;
+import cmsc433.p4.util.WaitForEdge;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.actor.Props;
+import akka.actor.AbstractActor.Receive;
+import akka.actor.AbstractActor;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * Central deadlock detector.  Every interval, the detector asks every resource manager
+ * for the wait-for edges of its resources, and once all have answered, looks for cycles
+ * in the combined graph.  For each cycle it picks the request that started waiting
+ * last, and tells its owner to deny it with reason DEADLOCK.
+ *
+ * The managers' snapshots are taken at different times, so a cycle in one round's graph
+ * may never have existed.  A deadlocked request waits for good, though, so only edges
+ * also seen in the previous round are used: a deadlock is broken within two intervals
+ * of forming, and a cycle of waits that each lasted less than an interval is left alone.
+ */
+public class DeadlockDetectorActor extends AbstractActor {
+
+	/**
+	 * Message the detector sends itself to start a round.
+	 */
+	private static final class Tick {
+	}
+
+	private final ArrayList<ActorRef> managers;
+	private final long intervalMs;
+	private Cancellable ticks;
+	private long round;
+	private int pending;						// Responses still expected this round
+	private ArrayList<WaitForEdge> edges = new ArrayList<WaitForEdge>();		// Edges received this round
+	private HashMap<WaitForEdge,Long> firstSeen = new HashMap<WaitForEdge,Long>();	// Edges of last round, and when first seen
+	private long rounds;
+	private long messages;
+	private long edgesReceived;
+	private long victims;
+	private final LatencyHistogram detectionLatency = new LatencyHistogram();
+
+	/**
+	 * Props structure-generator for this class.
+	 * @return  Props structure
+	 */
+	static Props props (ArrayList<ActorRef> managers, long intervalMs) {
+		return Props.create(DeadlockDetectorActor.class, managers, intervalMs);
+	}
+
+	/**
+	 * Factory method for creating deadlock detectors
+	 * @param managers		Resource managers to watch
+	 * @param intervalMs	Time between detection rounds, in milliseconds
+	 * @param system		Actor system in which detector will execute
+	 * @return				Reference to new detector
+	 */
+	public static ActorRef makeDetector (ArrayList<ActorRef> managers, long intervalMs, ActorSystem system) {
+		return system.actorOf(props(managers, intervalMs));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param managers		Resource managers to watch
+	 * @param intervalMs	Time between detection rounds, in milliseconds
+	 */
+	private DeadlockDetectorActor(ArrayList<ActorRef> managers, Long intervalMs) {
+		super();
+		this.managers = new ArrayList<ActorRef>(managers);
+		this.intervalMs = intervalMs;
+	}
+
+	@Override
+	public void preStart() {
+		FiniteDuration interval = FiniteDuration.create(intervalMs, TimeUnit.MILLISECONDS);
+		ticks = getContext().getSystem().scheduler().schedule(interval, interval, getSelf(), new Tick(),
+				getContext().dispatcher(), ActorRef.noSender());
+	}
+
+	@Override
+	public void postStop() {
+		ticks.cancel();
+	}
+
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				.match(Object.class, this::onReceive)
+				.build();
+	}
+
+	public void onReceive(Object msg) throws Exception {
+		if (msg instanceof Tick) {
+			// skip a tick if the managers have not all answered the last round
+			if (pending == 0) {
+				round++;
+				pending = managers.size();
+				WaitForGraphRequestMsg request = new WaitForGraphRequestMsg(round);
+				for (ActorRef m : managers) {
+					m.tell(request, getSelf());
+				}
+				messages += managers.size();
+			}
+		}
+		else if (msg instanceof WaitForGraphResponseMsg) {
+			WaitForGraphResponseMsg response = (WaitForGraphResponseMsg) msg;
+			messages++;
+			if (response.getRound() == round && pending > 0) {
+				edges.addAll(response.getEdges());
+				edgesReceived += response.getEdges().size();
+				if (--pending == 0) {
+					detect();
+				}
+			}
+		}
+		else if (msg instanceof DeadlockStatsRequestMsg) {
+			getSender().tell(new DeadlockStatsResponseMsg(rounds, messages, edgesReceived, victims, detectionLatency.copy()), getSelf());
+		}
+	}
+
+	/**
+	 * Find the cycles among the edges seen in this round and the last, and break each by
+	 * denying one of its requests.
+	 */
+	private void detect() {
+		long now = System.nanoTime();
+		rounds++;
+		HashMap<WaitForEdge,Long> seen = new HashMap<WaitForEdge,Long>(edges.size() * 2);
+		HashMap<Object,ArrayList<WaitForEdge>> graph = new HashMap<Object,ArrayList<WaitForEdge>>();
+		for (WaitForEdge e : edges) {
+			Long first = firstSeen.get(e);
+			seen.put(e, (first == null) ? now : first);
+			if (first != null) {
+				graph.computeIfAbsent(e.getWaiter(), k -> new ArrayList<WaitForEdge>()).add(e);
+			}
+		}
+		firstSeen = seen;
+		edges = new ArrayList<WaitForEdge>();
+
+		ArrayList<WaitForEdge> cycle;
+		while ((cycle = findCycle(graph)) != null) {
+			WaitForEdge victim = cycle.get(0);
+			long formed = 0;
+			for (WaitForEdge e : cycle) {
+				long since = since(e);
+				if (since > since(victim)) {
+					victim = e;
+				}
+				formed = Math.max(formed, since);
+			}
+			detectionLatency.record(now - formed);
+			victims++;
+			messages++;
+			victim.getManager().tell(new DeadlockVictimMsg(victim.getResourceName(), victim.getWaiter()), getSelf());
+			// the denied request no longer waits for anyone
+			Iterator<WaitForEdge> it = graph.get(victim.getWaiter()).iterator();
+			while (it.hasNext()) {
+				WaitForEdge e = it.next();
+				if (e.getResourceName().equals(victim.getResourceName())) {
+					it.remove();
+					firstSeen.remove(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param e	Edge
+	 * @return	When the request of the edge started waiting, or if it is not timestamped,
+	 * 			when the edge was first seen
+	 */
+	private long since(WaitForEdge e) {
+		return (e.getSince() != 0) ? e.getSince() : firstSeen.get(e);
+	}
+
+	/**
+	 * Find a cycle by depth-first search, without recursion so that long chains of waits
+	 * cannot overflow the stack.
+	 *
+	 * @param graph	Edges leaving each waiting user
+	 * @return		Edges of a cycle, in order, or null if there is none
+	 */
+	private static ArrayList<WaitForEdge> findCycle(HashMap<Object,ArrayList<WaitForEdge>> graph) {
+		HashMap<Object,Boolean> visited = new HashMap<Object,Boolean>();	// True while on the search path
+		ArrayList<Object> nodes = new ArrayList<Object>();
+		ArrayList<Iterator<WaitForEdge>> frames = new ArrayList<Iterator<WaitForEdge>>();
+		ArrayList<WaitForEdge> path = new ArrayList<WaitForEdge>();		// path.get(i) leads from nodes.get(i)
+		for (Object start : graph.keySet()) {
+			if (visited.containsKey(start)) {
+				continue;
+			}
+			visited.put(start, true);
+			nodes.add(start);
+			frames.add(graph.get(start).iterator());
+			while (!frames.isEmpty()) {
+				Iterator<WaitForEdge> it = frames.get(frames.size() - 1);
+				if (it.hasNext()) {
+					WaitForEdge e = it.next();
+					Boolean onPath = visited.get(e.getHolder());
+					if (onPath == null) {
+						visited.put(e.getHolder(), true);
+						path.add(e);
+						nodes.add(e.getHolder());
+						ArrayList<WaitForEdge> out = graph.get(e.getHolder());
+						frames.add((out == null) ? Collections.<WaitForEdge>emptyIterator() : out.iterator());
+					}
+					else if (onPath) {
+						ArrayList<WaitForEdge> cycle = new ArrayList<WaitForEdge>(path.subList(nodes.indexOf(e.getHolder()), path.size()));
+						cycle.add(e);
+						return cycle;
+					}
+				}
+				else {
+					visited.put(nodes.remove(nodes.size() - 1), false);
+					frames.remove(frames.size() - 1);
+					if (!path.isEmpty()) {
+						path.remove(path.size() - 1);
+					}
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -1,6 +1,7 @@
 package cmsc433.p4.actors;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import cmsc433.p4.messages.LogMsg;
 import cmsc433.p4.messages.LogResultMsg;
@@ -19,7 +20,7 @@ public class LoggerActor extends AbstractActor {
 	private ArrayList<Object> log = new ArrayList<Object>();
 	
 	// Users who have started but not terminated.
-	private ArrayList<ActorRef> activeUsers = new ArrayList<ActorRef>();
+	private HashSet<Object> activeUsers = new HashSet<Object>();	// Users, or virtual users, that have started
 	
 	// Destination for eventual log.
 	
@@ -71,13 +72,13 @@ public class LoggerActor extends AbstractActor {
 
 			// Check if event corresponds to user start; if so, add to list of users
 			if (lMsg.getType() == LogMsg.EventType.USER_START) {
-				activeUsers.add(lMsg.getUser());
+				activeUsers.add(lMsg.getPrincipal());
 			}
 			
 			// Check if event corresponds to user termination; if so, remove from list
 			// of users.  If list becomes empty, send log out
 			else if (lMsg.getType() == LogMsg.EventType.USER_TERMINATE) {
-				activeUsers.remove(lMsg.getUser());
+				activeUsers.remove(lMsg.getPrincipal());
 				if (activeUsers.isEmpty()) {
 					simulationManager.tell(new LogResultMsg(log), getSelf());
 				}
@@ -0,0 +1,227 @@
+package cmsc433.p4.actors;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.messages.AccessRequestBatchMsg;
+import cmsc433.p4.messages.AccessRequestBatchResponseMsg;
+import cmsc433.p4.messages.AccessRequestDeniedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.WhoHasResourceRequestMsg;
+import cmsc433.p4.messages.WhoHasResourceResponseMsg;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import com.typesafe.config.Config;
+import scala.Option;
+
+/**
+ * Mailbox for resource managers, which may be bounded, give priority to control
+ * messages, or both.
+ *
+ * A bounded mailbox holds at most capacity messages.  An access request (or batch of
+ * them) that arrives at a full mailbox is not queued: the sender's thread denies it at
+ * once with reason OVERLOADED, on behalf of the manager, so that a user learns right
+ * away to back off instead of waiting behind the backlog.  The receipt and denial of
+ * the request are logged as the manager would log them, to the logger the manager
+ * registers with setLogger(), so the log misses no OVERLOADED denial; getRejected()
+ * counts them as well.  Every other message is
+ * always queued, since dropping a release, a management request or a setup message
+ * would leave the system inconsistent, as would dropping a multi-resource request that
+ * has already acquired some of its parts.  So the bound holds for new access requests
+ * only, which are what floods a manager.
+ *
+ * A priority mailbox has two queues.  New access requests and discovery messages go in
+ * the second, and everything else, releases and management requests above all, in the
+ * first, which the manager empties before taking from the second.  A release that
+ * unblocks waiters is then handled as soon as the manager is free, instead of after
+ * every request that arrived before it.  Each queue keeps arrival order, so with two
+ * classes of message there is no need for the ordered queue of a general priority
+ * mailbox, and queueing stays constant time.  Releases still cannot overtake the
+ * requests they release, since a user only releases what it has been granted.
+ *
+ * Managers use this mailbox when they are made with a mailbox capacity or priority,
+ * which needs an actor system configured by Systems.makeActorSystem, where ID names
+ * the mailbox and its capacity (0 for no bound) and priority settings.
+ */
+public class ManagerMailbox implements MailboxType, ProducesMessageQueue<ManagerMailbox.Queue> {
+
+	/**
+	 * Configuration path of the mailbox.
+	 */
+	public static final String ID = "cmsc433.p4.manager-mailbox";
+
+	private static final ConcurrentHashMap<ActorRef,Queue> queues = new ConcurrentHashMap<ActorRef,Queue>();
+
+	private final int capacity;			// Most messages, or 0 for no bound
+	private final boolean priority;
+
+	/**
+	 * Constructor used by Akka, with the configuration at ID.
+	 */
+	public ManagerMailbox(ActorSystem.Settings settings, Config config) {
+		this.capacity = config.getInt("capacity");
+		this.priority = config.hasPath("priority") && config.getBoolean("priority");
+		if (capacity < 0)
+			throw new IllegalArgumentException("Mailbox capacity must not be negative: " + capacity);
+	}
+
+	@Override
+	public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+		Queue q = new Queue(capacity, priority, owner.isDefined() ? owner.get() : ActorRef.noSender());
+		if (owner.isDefined()) {
+			queues.put(owner.get(), q);
+		}
+		return q;
+	}
+
+	/**
+	 * Give the mailbox of a manager the logger to log the requests it denies to.
+	 * @param manager	Manager
+	 * @param logger	Actor the manager sends logging messages to
+	 */
+	public static void setLogger(ActorRef manager, ActorRef logger) {
+		Queue q = queues.get(manager);
+		if (q != null) {
+			q.logger = logger;
+		}
+	}
+
+	/**
+	 * @param manager	Manager
+	 * @return			Access requests the mailbox of the manager has denied as OVERLOADED, or
+	 * 					0 if the manager does not have a bounded mailbox
+	 */
+	public static long getRejected(ActorRef manager) {
+		Queue q = queues.get(manager);
+		return (q == null) ? 0 : q.rejected.get();
+	}
+
+	/**
+	 * Queue of one manager.  Messages are counted as they are queued and taken, so a full
+	 * queue is detected without walking it.
+	 */
+	public static class Queue implements MessageQueue, UnboundedMessageQueueSemantics {
+		private final ConcurrentLinkedQueue<Envelope> urgent = new ConcurrentLinkedQueue<Envelope>();	// Used only with priority
+		private final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<Envelope>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final AtomicLong rejected = new AtomicLong();
+		private final int capacity;
+		private final boolean priority;
+		private final ActorRef owner;
+		private volatile ActorRef logger;		// Logger of owner, or null until it is set
+
+		Queue(int capacity, boolean priority, ActorRef owner) {
+			this.capacity = capacity;
+			this.priority = priority;
+			this.owner = owner;
+		}
+
+		@Override
+		public void enqueue(ActorRef receiver, Envelope handle) {
+			Object msg = handle.message();
+			boolean sheddable = isSheddable(msg);
+			if (size.incrementAndGet() > capacity && capacity > 0 && sheddable) {
+				size.decrementAndGet();
+				reject(msg);
+				return;
+			}
+			if (priority && !sheddable && !(msg instanceof WhoHasResourceRequestMsg) && !(msg instanceof WhoHasResourceResponseMsg)) {
+				urgent.add(handle);
+			}
+			else {
+				queue.add(handle);
+			}
+		}
+
+		@Override
+		public Envelope dequeue() {
+			Envelope e = urgent.poll();
+			if (e == null) {
+				e = queue.poll();
+			}
+			if (e != null) {
+				size.decrementAndGet();
+			}
+			return e;
+		}
+
+		@Override
+		public int numberOfMessages() {
+			return size.get();
+		}
+
+		@Override
+		public boolean hasMessages() {
+			return !urgent.isEmpty() || !queue.isEmpty();
+		}
+
+		@Override
+		public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+			queues.remove(owner, this);
+			Envelope e;
+			while ((e = dequeue()) != null) {
+				deadLetters.enqueue(owner, e);
+			}
+		}
+
+		/**
+		 * @param msg	Message
+		 * @return		Whether the message may be denied instead of queued: an access request
+		 * 				that has acquired nothing, or a batch of such requests
+		 */
+		private static boolean isSheddable(Object msg) {
+			if (msg instanceof AccessRequestMsg) {
+				return !ResourceManagerActor.isHop((AccessRequestMsg) msg);
+			}
+			if (msg instanceof AccessRequestBatchMsg) {
+				for (AccessRequestMsg m : ((AccessRequestBatchMsg) msg).getRequests()) {
+					if (ResourceManagerActor.isHop(m))
+						return false;
+				}
+				return true;
+			}
+			return false;
+		}
+
+		private void reject(Object msg) {
+			if (msg instanceof AccessRequestMsg) {
+				AccessRequestMsg m = (AccessRequestMsg) msg;
+				rejected.incrementAndGet();
+				logRejected(m);
+				m.getReplyTo().tell(new AccessRequestDeniedMsg(m, AccessRequestDenialReason.OVERLOADED), owner);
+			}
+			else {
+				AccessRequestBatchMsg batch = (AccessRequestBatchMsg) msg;
+				ArrayList<Object> responses = new ArrayList<Object>(batch.getRequests().size());
+				for (AccessRequestMsg m : batch.getRequests()) {
+					logRejected(m);
+					responses.add(new AccessRequestDeniedMsg(m, AccessRequestDenialReason.OVERLOADED));
+				}
+				rejected.addAndGet(responses.size());
+				batch.getReplyTo().tell(new AccessRequestBatchResponseMsg(responses), owner);
+			}
+		}
+
+		/**
+		 * Log the receipt and denial of a request the mailbox has denied.
+		 * @param m	Request
+		 */
+		private void logRejected(AccessRequestMsg m) {
+			ActorRef l = logger;
+			if (l != null) {
+				l.tell(LogMsg.makeAccessRequestReceivedLogMsg(m.getReplyTo(), owner, m.getAccessRequest(), m.getTimes()), owner);
+				l.tell(LogMsg.makeAccessRequestDeniedLogMsg(m.getReplyTo(), owner, m.getAccessRequest(), AccessRequestDenialReason.OVERLOADED), owner);
+			}
+		}
+	}
+}
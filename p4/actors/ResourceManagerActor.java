@@ -1,40 +1,89 @@
 package cmsc433.p4.actors;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import cmsc433.p4.enums.*;
+import cmsc433.p4.jfr.*;
 import cmsc433.p4.messages.*;
 import cmsc433.p4.util.*;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
 import akka.actor.Props;
+import akka.actor.Terminated;
 import akka.actor.AbstractActor.Receive;
 import akka.actor.AbstractActor;
+import scala.concurrent.duration.FiniteDuration;
 
 public class ResourceManagerActor extends AbstractActor {
 
+	private static final int RECENT_REQUEST_IDS = 65536;	// Request IDs remembered to drop retried requests
+	private static final long DEADLINE_TICK_MS = 5;			// Resolution of request timeouts
+
+	/**
+	 * Message the manager sends itself to expire the deadlines of waiting requests and the
+	 * leases of holders.
+	 */
+	private static final class DeadlineTick {
+	}
+
 	private ActorRef logger;					// Actor to send logging messages to
 	private HashMap<String,ActorRef> srcToManager;
 	private ArrayList<ActorRef> managers;
-	private HashMap<String,Resource> localResources;
+	private HashMap<String,ResourceState> resources;		// State of local resources, created on first use for ranges
+	private RangeIndex<ResourceStats> localRanges;			// Local ranges, with counters of their idle resources
+	private RangeIndex<ActorRef> remoteRanges;				// Managers of remote ranges
 	private ArrayList<ActorRef> localUsers;
-	private HashMap<String,ArrayList<ManagementRequestMsg>> pendingDisabled;
-	private HashMap<String,LinkedBlockingQueue<Object>> blockingRequests;
-	private HashMap<String,ArrayList<ActorRef>> writeAccess;
-	private HashMap<String,LinkedBlockingQueue<ActorRef>> readAccess;
 	private HashMap<String,Integer> srcSearch;
 	private HashMap<String,ArrayList<Object>> waitForSearch;
+	private HashMap<String,Long> searchStart;		// When discovery of a resource began
+	private EnumMap<LatencyStage,LatencyHistogram> latencies;
+	private RecentRequestIds recentRequests;
+	private long duplicatesDropped;
+	private ActorRef batchReplyTo;				// User of batch being handled, or null
+	private ArrayList<Object> batchResponses;	// Responses to batchReplyTo collected while handling a batch
+	private HashSet<ResourceState> waiting;		// Resources with requests queued since the last wait-for snapshot,
+												// or null before the deadlock detector first asks for one
+	private TimerWheel<Object> deadlines;		// Deadlines of queued requests with timeouts, and leases, or null before the first
+	private HashMap<AccessRequestMsg,TimerWheel.Timer<Object>> deadlineTimers;
+	private HashMap<ManagementRequestMsg,TimerWheel.Timer<Object>> drainTimers;	// Deadlines of waiting disables
+	private Cancellable deadlineTicks;			// Ticks advancing deadlines, or null while none are pending
+	private final int maxQueuedPerResource;		// Most blocking requests queued for a resource, or 0 for no limit
+	private final int maxWaiting;				// Most requests queued or awaiting discovery, or 0 for no limit
+	private int queued;							// Blocking requests queued, over all resources
+	private int parked;							// Messages held in waitForSearch
+	private long overloaded;					// Access requests denied with reason OVERLOADED
+	private HashMap<ActorRef,HashSet<String>> watched;	// Users watched, with the local resources they may hold
+														// or wait for; a multiplexed user is watched as its driver
 
 	/**
 	 * Props structure-generator for this class.
 	 * @return  Props structure
 	 */
 	static Props props (ActorRef logger) {
-		return Props.create(ResourceManagerActor.class, logger);
+		return Props.create(ResourceManagerActor.class, logger, 0, 0);
+	}
+
+	/**
+	 * Props structure-generator for this class, with the limits and mailbox the options give.
+	 * @return  Props structure
+	 */
+	static Props props (ActorRef logger, SystemOptions options) {
+		Props props = Props.create(ResourceManagerActor.class, logger, options.getMaxQueuedPerResource(), options.getMaxWaitingPerManager());
+		if (options.hasManagerMailbox()) {
+			props = props.withMailbox(ManagerMailbox.ID);
+		}
+		return props;
 	}
 
 	/**
@@ -48,6 +97,21 @@ public class ResourceManagerActor extends AbstractActor {
 		return newManager;
 	}
 
+	/**
+	 * Factory method for creating resource managers with the admission limits and mailbox
+	 * given by options
+	 * @param logger			Actor to send logging messages to
+	 * @param system			Actor system in which manager will execute; if the options bound
+	 * 							the mailbox or give it priority, made by Systems.makeActorSystem
+	 * @param options			Options for the system
+	 * @return					Reference to new manager
+	 */
+	public static ActorRef makeResourceManager (ActorRef logger, ActorSystem system, SystemOptions options) {
+		if (options.hasManagerMailbox() && !system.settings().config().hasPath(ManagerMailbox.ID))
+			throw new IllegalArgumentException("Bounded or priority manager mailboxes need an actor system made by Systems.makeActorSystem");
+		return system.actorOf(props(logger, options));
+	}
+
 	/**
 	 * Sends a message to the Logger Actor
 	 * @param msg The message to be sent to the logger
@@ -56,22 +120,105 @@ public class ResourceManagerActor extends AbstractActor {
 		logger.tell(msg, getSelf());
 	}
 
+	/**
+	 * Sends a response to a user, recording the latency of the request if it is timestamped,
+	 * and counting access grants and denials for local resources.  While a batch is being
+	 * handled, responses to its user are collected instead, to be sent in one message
+	 * @param user		The user to respond to
+	 * @param response	Granted or denied message for an access or management request
+	 */
+	public void respond (ActorRef user, Object response) {
+		RequestTimes times = null;
+		boolean management = false;
+		if (response instanceof AccessRequestGrantedMsg) {
+			AccessRequestGrantedMsg granted = (AccessRequestGrantedMsg) response;
+			AccessRequest part = MultiAccessRequest.partOf(granted.getRequest());
+			times = granted.getTimes();
+			ResourceState rs = resources.get(part.getResourceName());
+			if (rs != null) {
+				ResourceStats stats = rs.stats;
+				stats.granted(part.getType(), System.nanoTime());
+				AccessGrantedEvent.emit(stats.getName(), granted.getRequest().getType().name(),
+						(times == null || times.getEnqueued() == 0) ? 0 : times.getResponded() - times.getEnqueued(), stats.getHolders());
+			}
+		}
+		else if (response instanceof AccessRequestDeniedMsg) {
+			AccessRequestDeniedMsg denied = (AccessRequestDeniedMsg) response;
+			times = denied.getTimes();
+			ResourceState rs = resources.get(denied.getRequest().getResourceName());
+			if (rs != null) {
+				rs.stats.denied(denied.getReason());
+			}
+			AccessDeniedEvent.emit(denied.getRequest().getResourceName(), denied.getRequest().getType().name(), denied.getReason().name());
+		}
+		else if (response instanceof ManagementRequestGrantedMsg) {
+			times = ((ManagementRequestGrantedMsg) response).getTimes();
+			management = true;
+		}
+		else if (response instanceof ManagementRequestDeniedMsg) {
+			times = ((ManagementRequestDeniedMsg) response).getTimes();
+			management = true;
+		}
+		if (times != null) {
+			latencies.get(LatencyStage.LOCAL_MAILBOX).record(times.getLocalArrival() - times.getCreated());
+			if (times.getOwnerArrival() != 0) {
+				latencies.get(LatencyStage.FORWARDING).record(times.getOwnerArrival() - times.getLocalArrival());
+			}
+			if (management) {
+				latencies.get(LatencyStage.MANAGEMENT_TOTAL).record(times.getResponded() - times.getCreated());
+			}
+			else {
+				if (times.getEnqueued() != 0) {
+					latencies.get(LatencyStage.WAIT_QUEUE).record(times.getResponded() - times.getEnqueued());
+				}
+				if (times.getOwnerArrival() != 0) {
+					latencies.get(LatencyStage.OWNER_SERVICE).record(times.getResponded() - times.getOwnerArrival());
+				}
+				latencies.get(LatencyStage.ACCESS_TOTAL).record(times.getResponded() - times.getCreated());
+			}
+		}
+		if(batchResponses != null && user.equals(batchReplyTo)) {
+			batchResponses.add(response);
+		}
+		else {
+			user.tell(response, getSelf());
+		}
+	}
+
 	/**
 	 * Constructor
 	 * 
 	 * @param logger			Actor to send logging messages to
+	 * @param maxQueuedPerResource	Most blocking requests queued for any one resource, or 0 for no limit
+	 * @param maxWaiting		Most requests queued or awaiting discovery in this manager, or 0 for no limit
 	 */
-	private ResourceManagerActor(ActorRef logger) {
+	private ResourceManagerActor(ActorRef logger, Integer maxQueuedPerResource, Integer maxWaiting) {
 		super();
 		this.logger = logger;
-		this.localResources = new HashMap<String,Resource>();
+		// so that requests a bounded mailbox denies are logged too
+		ManagerMailbox.setLogger(getSelf(), logger);
+		this.maxQueuedPerResource = maxQueuedPerResource;
+		this.maxWaiting = maxWaiting;
+		this.resources = new HashMap<String,ResourceState>();
+		this.localRanges = new RangeIndex<ResourceStats>();
+		this.remoteRanges = new RangeIndex<ActorRef>();
 		this.srcToManager = new HashMap<String,ActorRef>();
-		this.blockingRequests = new HashMap<String,LinkedBlockingQueue<Object>>();
-		this.writeAccess = new HashMap<String,ArrayList<ActorRef>>();
-		this.readAccess = new HashMap<String,LinkedBlockingQueue<ActorRef>>();
 		this.waitForSearch = new HashMap<String,ArrayList<Object>>(); 
 		this.srcSearch = new HashMap<String,Integer>();
-		this.pendingDisabled = new HashMap<String,ArrayList<ManagementRequestMsg>>();
+		this.searchStart = new HashMap<String,Long>();
+		this.latencies = new EnumMap<LatencyStage,LatencyHistogram>(LatencyStage.class);
+		for (LatencyStage stage : LatencyStage.values()) {
+			latencies.put(stage, new LatencyHistogram());
+		}
+		this.recentRequests = new RecentRequestIds(RECENT_REQUEST_IDS);
+		this.watched = new HashMap<ActorRef,HashSet<String>>();
+	}
+
+	@Override
+	public void postStop() {
+		if(deadlineTicks != null) {
+			deadlineTicks.cancel();
+		}
 	}
 
 	@Override
@@ -82,94 +229,1082 @@ public class ResourceManagerActor extends AbstractActor {
 	}
 
 
+	/**
+	 * @param src	Resource name
+	 * @return		Whether resource is local, either declared individually or in a local range
+	 */
+	public boolean isLocal(String src) {
+		return resources.containsKey(src) || localRanges.get(src) != null;
+	}
+
+	/**
+	 * Return the state of a local resource, creating it if the resource is in a local
+	 * range and has no state.
+	 * @param src	Name of local resource
+	 * @return		State of resource
+	 */
+	ResourceState state(String src) {
+		ResourceState rs = resources.get(src);
+		if(rs == null) {
+			Resource r = Systems.makeResource(src);
+			r.enable();
+			rs = new ResourceState(r, localRanges.get(src), localRanges.rangeOf(src).getGrantPolicy());
+			resources.put(src, rs);
+		}
+		return rs;
+	}
+
+	/**
+	 * Drop the state of a resource in a range if it is idle, adding its counters to
+	 * those of the range.
+	 * @param rs	State of resource
+	 */
+	void dropIfIdle(ResourceState rs) {
+		if(rs.isIdle()) {
+			resources.remove(rs.resource.getName());
+			rs.rangeStats.add(rs.stats, System.nanoTime());
+		}
+	}
+
 	public void checkDisabled(String src) {
+		ResourceState rs = resources.get(src);
 		// if no disable requests then do nothing
-		if(!pendingDisabled.get(src).isEmpty() && localResources.get(src).getStatus() != ResourceStatus.DISABLED) {
+		if(!rs.pendingDisabled.isEmpty() && rs.resource.getStatus() != ResourceStatus.DISABLED) {
 			// there is atleast 1 disable request so check if it can be granted
-			if(readAccess.get(src).isEmpty() && writeAccess.get(src).isEmpty()) {
+			if(rs.readAccess.isEmpty() && rs.writeAccess.isEmpty()) {
 				// no write or read keys outstanding disable and send the success messages
-				localResources.get(src).disable();
+				rs.resource.disable();
+				long drained = rs.stats.drainFinished(System.nanoTime());
+				if(drained >= 0) {
+					latencies.get(LatencyStage.DRAIN).record(drained);
+				}
+				DisableDrainedEvent.emit(src, Math.max(drained, 0), rs.pendingDisabled.size());
 				log(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), src, ResourceStatus.DISABLED));
-				for(ManagementRequestMsg m : pendingDisabled.get(src)) {
+				rs.drainDeadline = 0;
+				for(ManagementRequestMsg m : rs.pendingDisabled) {
+					TimerWheel.Timer<Object> timer = (drainTimers == null) ? null : drainTimers.remove(m);
+					if(timer != null) {
+						deadlines.cancel(timer);
+					}
 					log(LogMsg.makeManagementRequestGrantedLogMsg(m.getReplyTo(), getSelf(),m.getRequest()));
 					ManagementRequestGrantedMsg granted = new ManagementRequestGrantedMsg(m);
-					m.getReplyTo().tell(granted, getSelf());
+					respond(m.getReplyTo(), granted);
+				}
+				ArrayList<ManagementRequestMsg> disables = new ArrayList<ManagementRequestMsg>(rs.pendingDisabled);
+				rs.pendingDisabled.clear();
+				for(ManagementRequestMsg m : disables) {
+					unwatch(rs, actorOf(m.getPrincipal()));
 				}
-				pendingDisabled.get(src).clear();
 			}
 
 		}
 	}
 
-	// process all the requests in the blocking queue and remove the ones that are addressed
-	// at end check if resource should be disabled and respond to disable requests appropriately
+	/**
+	 * @param rs		State of local resource
+	 * @param principal	User
+	 * @param write		Whether the access is write access
+	 * @return			Whether the access is compatible with the access already held
+	 */
+	boolean compatible(ResourceState rs, Object principal, boolean write) {
+		if(rs.resource.getCapacity() > 0) {
+			return rs.readAccess.size() < rs.resource.getCapacity();
+		}
+		if(rs.writeAccess.size() != 0 && !rs.writeAccess.get(0).equals(principal)) {
+			return false;
+		}
+		return !write || rs.readAccess.size() == 0 || onlyContains(principal, rs.resource.getName());
+	}
+
+	/**
+	 * Decide whether a newly arrived request can be granted at once, rather than
+	 * waiting behind the blocking requests of the resource as its policy requires.
+	 * Users already holding access are never made to wait behind others, since those
+	 * may be waiting for them.
+	 * @param rs		State of local resource
+	 * @param principal	User
+	 * @param write		Whether the access is write access
+	 * @return			Whether to grant the access now
+	 */
+	boolean admits(ResourceState rs, Object principal, boolean write) {
+		if(!compatible(rs, principal, write)) {
+			return false;
+		}
+		if(rs.blockingRequests.isEmpty() || rs.policy == GrantPolicy.READER_PREFERRING || rs.holds(principal)) {
+			return true;
+		}
+		// FIFO never overtakes a waiting request; the others only keep readers from overtaking writers
+		return rs.policy != GrantPolicy.FIFO && rs.queuedWriters == 0;
+	}
+
+	// process all the requests in the blocking queue and remove the ones that are addressed,
+	// in the order the policy of the resource requires
 	public void processBlocking(String src) {
-		// this might not be in order
-		LinkedBlockingQueue<Object> toRemove = new LinkedBlockingQueue<Object>(blockingRequests.get(src));
-		for(Object o : toRemove ) {
-			if(o instanceof AccessRequestMsg ) {
+		ResourceState rs = resources.get(src);
+		if(!rs.pendingDisabled.isEmpty() || rs.resource.getStatus() == ResourceStatus.DISABLED) {
+			// access requests denied due to disable
+			for(Object o : new ArrayList<Object>(rs.blockingRequests)) {
 				AccessRequestMsg temp = (AccessRequestMsg) o;
-				// TODO: fix this condition so that it checks that the list is size 0 not boolean anymore
-				//might need to add a second condition checking the resources actual disable status
-				if(pendingDisabled.get(src).isEmpty() && localResources.get(src).getStatus() != ResourceStatus.DISABLED) {
-					if(temp.getAccessRequest().getType() == AccessRequestType.CONCURRENT_READ_BLOCKING) {
-						// concurrent read: check that no exclusive write access exists or that its owned by this user
-						if(writeAccess.get(src).size() == 0 || writeAccess.get(src).get(0) == temp.getReplyTo()) {
-							readAccess.get(src).add(temp.getReplyTo());
-							// Access Request Granted Log
-							log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
-							blockingRequests.get(src).remove(o);
-							AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
-							temp.getReplyTo().tell(granted, getSelf());
-						}
+				AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
+				log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
+				dequeue(rs, temp);
+				unwatch(rs, actorOf(temp.getPrincipal()));
+				releaseAcquired(temp);
+				respond(temp.getReplyTo(), denied);
+			}
+			return;
+		}
+		switch(rs.policy) {
+		case READER_PREFERRING:
+			grantBlocking(rs, true, true, false);
+			break;
+		case WRITER_PREFERRING:
+			grantBlocking(rs, false, true, false);
+			if(rs.queuedWriters == 0) {
+				grantBlocking(rs, true, false, false);
+			}
+			break;
+		case FIFO:
+			grantBlocking(rs, true, true, true);
+			break;
+		case PHASE_FAIR:
+			// after a write phase, or with no writer waiting, the waiting readers go together;
+			// after a read phase, the next writer goes
+			if(rs.writePhase || rs.queuedWriters == 0) {
+				if(grantBlocking(rs, true, false, false) == 0) {
+					grantBlocking(rs, false, true, false);
+				}
+			}
+			else {
+				grantBlocking(rs, false, true, false);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Grant the blocking requests of a resource that are compatible with the access held,
+	 * in queue order.
+	 * @param rs		State of local resource, which is enabled with no disable pending
+	 * @param reads		Whether to consider read requests
+	 * @param writes	Whether to consider write requests
+	 * @param inOrder	Whether to stop at the first request that cannot be granted
+	 * @return			Number of requests granted
+	 */
+	int grantBlocking(ResourceState rs, boolean reads, boolean writes, boolean inOrder) {
+		int granted = 0;
+		for(Object o : new ArrayList<Object>(rs.blockingRequests)) {
+			AccessRequestMsg temp = (AccessRequestMsg) o;
+			boolean write = ResourceState.isWrite(temp.getAccessRequest());
+			if(write ? !writes : !reads) {
+				continue;
+			}
+			if(!compatible(rs, temp.getPrincipal(), write)) {
+				// once a capacity resource is full, no later request fits either
+				if(inOrder || rs.resource.getCapacity() > 0) {
+					break;
+				}
+				continue;
+			}
+			grant(rs, temp, write);
+			dequeue(rs, temp);
+			granted++;
+			if(temp.getAccessRequest() instanceof MultiAccessRequest) {
+				partGranted(temp, rs);
+				continue;
+			}
+			// Access Request Granted Log
+			log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
+			respond(temp.getReplyTo(), new AccessRequestGrantedMsg(temp));
+		}
+		return granted;
+	}
+
+	/**
+	 * Handle an access request for a local resource: grant it, deny it, or add it to the
+	 * blocking requests of the resource.
+	 * @param temp	Request, already timestamped at the owner
+	 */
+	void handleLocalAccess(AccessRequestMsg temp) {
+		AccessRequest req = temp.getAccessRequest();
+		String src = req.getResourceName();
+		ResourceState rs = state(src);
+		if(ResourceState.isSlot(req) != (rs.resource.getCapacity() > 0)) {
+			denyAll(temp, AccessRequestDenialReason.WRONG_REQUEST_TYPE);
+			dropIfIdle(rs);
+			return;
+		}
+		switch(req.getType()) {
+		case ALL_OF_BLOCKING:
+			handleLocalPart(temp, rs);
+			break;
+		case SLOT_BLOCKING:
+		case SLOT_NONBLOCKING:
+			handleLocalSlot(temp, rs);
+			break;
+		case CONCURRENT_READ_BLOCKING:
+			// check that the resource isnt pending disabled, and the resource either does not have any write accesses or the access is owned by the requestor
+			if(rs.pendingDisabled.isEmpty() && rs.resource.getStatus() != ResourceStatus.DISABLED) {
+				if(admits(rs, temp.getPrincipal(), false)) {
+					grant(rs, temp, false);
+					// Access Request Granted Log and message
+					log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
+					AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
+					respond(temp.getReplyTo(), granted);
+				}
+				else {
+					// instead of denying when busy we will add the request to the blocking list for this resource
+					enqueue(rs, temp);
+				}
+			}
+			else {
+				AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
+				log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
+				respond(temp.getReplyTo(), denied);
+			}
+			break;
+		case CONCURRENT_READ_NONBLOCKING:
+			// check that the resource isnt pending disabled, and the resource either does not have any write accesses or the access is owned by the requestor
+			if(rs.pendingDisabled.isEmpty() && rs.resource.getStatus() != ResourceStatus.DISABLED) {
+				if(admits(rs, temp.getPrincipal(), false)) {
+					grant(rs, temp, false);
+					// Access Request Granted Log
+					log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
+					AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
+					respond(temp.getReplyTo(), granted);
+				}
+				else {
+					AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_BUSY);
+					log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_BUSY));
+					respond(temp.getReplyTo(), denied);
+				}
+			}
+			else {
+				AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
+				log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
+				respond(temp.getReplyTo(), denied);
+			}
+			break;
+		case EXCLUSIVE_WRITE_BLOCKING:
+			// check that the resource isnt pending disabled, and the resource either does not have any write accesses or the access is owned by the requestor
+			if(rs.pendingDisabled.isEmpty() && rs.resource.getStatus() != ResourceStatus.DISABLED) {
+				// also need to check that there are currently no read access keys held by someone other than the requester
+				if(admits(rs, temp.getPrincipal(), true)) {
+					grant(rs, temp, true);
+					// Access Request Granted Log
+					log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
+					AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
+					respond(temp.getReplyTo(), granted);
+				}
+				else {
+					// instead of denying when busy we will add the request to the blocking list for this resource
+					enqueue(rs, temp);
+				}
+			}
+			else {
+				AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
+				log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
+				respond(temp.getReplyTo(), denied);
+			}
+			break;
+		case EXCLUSIVE_WRITE_NONBLOCKING:
+			// check that the resource isnt pending disabled, and the resource either does not have any write accesses or the access is owned by the requestor
+			if(rs.pendingDisabled.isEmpty() && rs.resource.getStatus() != ResourceStatus.DISABLED) {
+				// also need to check that there are currently no read access keys held by someone other than the requester
+				if(admits(rs, temp.getPrincipal(), true)) {
+					grant(rs, temp, true);
+					// Access Request Granted Log
+					log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
+					AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
+					respond(temp.getReplyTo(), granted);
+				}
+				else {
+					AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_BUSY);
+					// instead of denying when busy we will add the request to the blocking list for this resource
+					log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_BUSY));
+					respond(temp.getReplyTo(), denied);
+				}
+			}
+			else {
+				AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
+				log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
+				respond(temp.getReplyTo(), denied);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Handle a request for a slot of a local capacity resource: grant it if a slot is
+	 * free, and otherwise queue it if it is blocking, or deny it.
+	 * @param temp	Request
+	 * @param rs	State of capacity resource
+	 */
+	void handleLocalSlot(AccessRequestMsg temp, ResourceState rs) {
+		if(!rs.pendingDisabled.isEmpty() || rs.resource.getStatus() == ResourceStatus.DISABLED) {
+			denyAll(temp, AccessRequestDenialReason.RESOURCE_DISABLED);
+		}
+		else if(admits(rs, temp.getPrincipal(), false)) {
+			grant(rs, temp, false);
+			log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
+			respond(temp.getReplyTo(), new AccessRequestGrantedMsg(temp));
+		}
+		else if(temp.getAccessRequest().getType() == AccessRequestType.SLOT_BLOCKING) {
+			enqueue(rs, temp);
+		}
+		else {
+			denyAll(temp, AccessRequestDenialReason.RESOURCE_BUSY);
+		}
+	}
+
+	/**
+	 * Give the user of a request access to a local resource, and watch the user so that the
+	 * access is released if the user stops without releasing it.  If the request has a
+	 * lease, it replaces any lease the user has on the resource.
+	 * @param rs		State of resource
+	 * @param temp		Request, or multi-resource request whose current part is for the resource
+	 * @param write		Whether the access is write access
+	 */
+	void grant(ResourceState rs, AccessRequestMsg temp, boolean write) {
+		rs.grant(temp.getPrincipal(), write);
+		watch(temp.getPrincipal(), rs.resource.getName());
+		long leaseMs = MultiAccessRequest.partOf(temp.getAccessRequest()).getLeaseMs();
+		if(leaseMs > 0) {
+			lease(rs, temp.getPrincipal(), TimeUnit.MILLISECONDS.toNanos(leaseMs));
+		}
+	}
 
+	/**
+	 * Start or restart the lease of a user holding access to a local resource.  Leases are
+	 * timed by the same wheel as request deadlines, so that there is no scheduler timer
+	 * for each.
+	 * @param rs			State of resource
+	 * @param principal		User
+	 * @param leaseNanos	Length of lease from now
+	 */
+	void lease(ResourceState rs, Object principal, long leaseNanos) {
+		if(rs.leases == null) {
+			rs.leases = new HashMap<Object,ResourceState.Lease>();
+		}
+		ResourceState.Lease lease = rs.leases.get(principal);
+		if(lease == null) {
+			lease = new ResourceState.Lease(rs, principal);
+			rs.leases.put(principal, lease);
+		}
+		else {
+			deadlines.cancel(lease.timer);
+		}
+		long now = System.nanoTime();
+		lease.leaseNanos = leaseNanos;
+		lease.timer = schedule(lease, now + leaseNanos, now);
+	}
+
+	/**
+	 * Drop the lease of a user, if it has one, once it holds no access to the resource.
+	 * @param rs		State of resource
+	 * @param principal	User
+	 */
+	void endLease(ResourceState rs, Object principal) {
+		if(rs.leases == null) {
+			return;
+		}
+		ResourceState.Lease lease = rs.leases.remove(principal);
+		if(lease != null) {
+			deadlines.cancel(lease.timer);
+		}
+	}
+
+	/**
+	 * End the drain of a resource whose disable has reached its deadline, revoking the
+	 * access of every holder.  The caller then disables the resource.
+	 * @param rs	State of resource being drained
+	 */
+	void forceDrain(ResourceState rs) {
+		LinkedHashSet<Object> holders = new LinkedHashSet<Object>(rs.writeAccess);
+		holders.addAll(rs.readAccess);
+		for(Object principal : holders) {
+			revoke(rs, principal, RevocationReason.DRAIN_DEADLINE);
+		}
+		if(!holders.isEmpty()) {
+			rs.stats.drainForced();
+		}
+	}
+
+	/**
+	 * Take back all the access a user holds to a local resource, logging each release as
+	 * from the user, and tell the user.  The caller then grants the requests this unblocks.
+	 * @param rs		State of resource
+	 * @param principal	User
+	 * @param reason	Reason for revoking
+	 */
+	void revoke(ResourceState rs, Object principal, RevocationReason reason) {
+		String src = rs.resource.getName();
+		ActorRef actor = actorOf(principal);
+		AccessType readType = (rs.resource.getCapacity() > 0) ? AccessType.SLOT : AccessType.CONCURRENT_READ;
+		releaseAll(rs, rs.writeAccess.iterator(), principal::equals, actor, AccessType.EXCLUSIVE_WRITE);
+		releaseAll(rs, rs.readAccess.iterator(), principal::equals, actor, readType);
+		endLease(rs, principal);
+		unwatch(rs, actor);
+		rs.stats.revoked(reason);
+		VirtualUser user = (principal instanceof VirtualUser) ? (VirtualUser) principal : null;
+		actor.tell(new AccessRevokedMsg(src, reason, user), getSelf());
+	}
+
+	/**
+	 * Record that a user may hold or wait for a local resource, watching the user if it is
+	 * not watched yet.  Users stay watched until they terminate or unwatch() finds them
+	 * with no local resource left.
+	 * @param principal	User
+	 * @param src		Name of resource
+	 */
+	void watch(Object principal, String src) {
+		ActorRef actor = actorOf(principal);
+		HashSet<String> names = watched.get(actor);
+		if(names == null) {
+			names = new HashSet<String>();
+			watched.put(actor, names);
+			getContext().watch(actor);
+		}
+		names.add(src);
+	}
+
+	/**
+	 * Forget a local resource for a user once neither the user nor, for a driver, any of
+	 * its users holds it, waits for it or waits to disable it, and stop watching the user
+	 * once it has no resource left.
+	 * @param rs		State of resource
+	 * @param actor		User actor, or driver of multiplexed users
+	 */
+	void unwatch(ResourceState rs, ActorRef actor) {
+		HashSet<String> names = watched.get(actor);
+		String src = rs.resource.getName();
+		if(names == null || !names.contains(src)) {
+			return;
+		}
+		for(Object h : rs.writeAccess) {
+			if(isRunBy(h, actor)) {
+				return;
+			}
+		}
+		for(Object h : rs.readAccess) {
+			if(isRunBy(h, actor)) {
+				return;
+			}
+		}
+		for(Object o : rs.blockingRequests) {
+			if(isRunBy(((AccessRequestMsg) o).getPrincipal(), actor)) {
+				return;
+			}
+		}
+		for(ManagementRequestMsg m : rs.pendingDisabled) {
+			if(isRunBy(m.getPrincipal(), actor)) {
+				return;
+			}
+		}
+		names.remove(src);
+		if(names.isEmpty()) {
+			watched.remove(actor);
+			getContext().unwatch(actor);
+		}
+	}
+
+	/**
+	 * @param principal	User
+	 * @return			Actor messages for the user go to: the user itself, or the driver of a
+	 * 					multiplexed user
+	 */
+	static ActorRef actorOf(Object principal) {
+		return (principal instanceof VirtualUser) ? ((VirtualUser) principal).getDriver() : (ActorRef) principal;
+	}
+
+	/**
+	 * @param principal	User holding access or making a request
+	 * @param actor		Actor
+	 * @return			Whether the user is the actor, or a multiplexed user run by it
+	 */
+	static boolean isRunBy(Object principal, ActorRef actor) {
+		return principal.equals(actor) || (principal instanceof VirtualUser && ((VirtualUser) principal).getDriver().equals(actor));
+	}
+
+	/**
+	 * Release every access held by a user that has terminated, and drop its queued
+	 * requests and waiting disables, logging each release; then grant the requests the releases unblock and
+	 * finish the disables they were holding up.
+	 * @param actor		User actor, or driver of multiplexed users, that has terminated
+	 */
+	void releaseTerminated(ActorRef actor) {
+		HashSet<String> names = watched.remove(actor);
+		if(names == null) {
+			return;
+		}
+		for(String src : names) {
+			ResourceState rs = resources.get(src);
+			if(rs == null) {
+				// dropped while idle, so nothing was held
+				continue;
+			}
+			boolean released = false;
+			for(Object o : new ArrayList<Object>(rs.blockingRequests)) {
+				AccessRequestMsg temp = (AccessRequestMsg) o;
+				if(isRunBy(temp.getPrincipal(), actor)) {
+					dequeue(rs, temp);
+					releaseAcquired(temp);
+					// requests queued behind it may now be granted
+					released = true;
+				}
+			}
+			// its waiting disables no longer hold up requests, nor revoke holders at their deadline
+			boolean deadlineLeft = false;
+			for(ManagementRequestMsg m : new ArrayList<ManagementRequestMsg>(rs.pendingDisabled)) {
+				TimerWheel.Timer<Object> timer = (drainTimers == null) ? null : drainTimers.get(m);
+				if(isRunBy(m.getPrincipal(), actor)) {
+					rs.pendingDisabled.remove(m);
+					if(timer != null) {
+						drainTimers.remove(m);
+						deadlines.cancel(timer);
 					}
-					else {
-						// exclusive write
-						if((readAccess.get(src).size() == 0 || onlyContains(temp.getReplyTo(),src)) && (writeAccess.get(src).size() == 0 || writeAccess.get(src).get(0) == temp.getReplyTo())) {
-							writeAccess.get(src).add(temp.getReplyTo());
-							// Access Request Granted Log
-							log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
-							blockingRequests.get(src).remove(o);
-							AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
-							temp.getReplyTo().tell(granted, getSelf());
+					released = true;
+				}
+				else {
+					deadlineLeft |= timer != null;
+				}
+			}
+			if(!deadlineLeft) {
+				rs.drainDeadline = 0;
+			}
+			if(rs.pendingDisabled.isEmpty()) {
+				rs.stats.drainAbandoned();
+			}
+			AccessType readType = (rs.resource.getCapacity() > 0) ? AccessType.SLOT : AccessType.CONCURRENT_READ;
+			released |= releaseAll(rs, rs.writeAccess.iterator(), h -> isRunBy(h, actor), actor, AccessType.EXCLUSIVE_WRITE);
+			released |= releaseAll(rs, rs.readAccess.iterator(), h -> isRunBy(h, actor), actor, readType);
+			if(rs.leases != null) {
+				for(Object principal : new ArrayList<Object>(rs.leases.keySet())) {
+					if(isRunBy(principal, actor)) {
+						endLease(rs, principal);
+					}
+				}
+			}
+			if(released) {
+				processBlocking(src);
+				checkDisabled(src);
+			}
+			dropIfIdle(rs);
+		}
+	}
 
-						}
+	/**
+	 * Remove the holders of a resource that match, logging each release as from an actor.
+	 * @return	Whether any holder was removed
+	 */
+	boolean releaseAll(ResourceState rs, Iterator<Object> holders, Predicate<Object> whose, ActorRef actor, AccessType type) {
+		boolean released = false;
+		while(holders.hasNext()) {
+			if(whose.test(holders.next())) {
+				holders.remove();
+				rs.stats.released(System.nanoTime());
+				log(LogMsg.makeAccessReleasedLogMsg(actor, getSelf(), new AccessRelease(rs.resource.getName(), type)));
+				AccessReleasedEvent.emit(rs.resource.getName(), type.name(), rs.stats.getHolders());
+				released = true;
+			}
+		}
+		return released;
+	}
+
+	/**
+	 * Add a blocking request to the queue of a resource, or deny it with reason OVERLOADED
+	 * if the queue or the manager is at its limit.
+	 * @param rs	State of resource
+	 * @param temp	Request
+	 */
+	void enqueue(ResourceState rs, AccessRequestMsg temp) {
+		if((maxQueuedPerResource > 0 && rs.blockingRequests.size() >= maxQueuedPerResource) || isFull()) {
+			overload(temp);
+			return;
+		}
+		AccessRequestMsg queued = (temp.getTimes() == null) ? temp : temp.withTimes(temp.getTimes().atEnqueue());
+		long now = System.nanoTime();
+		rs.enqueue(queued);
+		this.queued++;
+		watch(temp.getPrincipal(), rs.resource.getName());
+		rs.stats.enqueued(now);
+		AccessQueuedEvent.emit(rs.resource.getName(), temp.getAccessRequest().getType().name(), rs.stats.getQueueDepth());
+		if(waiting != null) {
+			waiting.add(rs);
+		}
+		long timeoutMs = MultiAccessRequest.partOf(temp.getAccessRequest()).getTimeoutMs();
+		if(timeoutMs > 0) {
+			// schedule() makes the map along with the wheel, so it must run first
+			TimerWheel.Timer<Object> timer = schedule(queued, now + TimeUnit.MILLISECONDS.toNanos(timeoutMs), now);
+			deadlineTimers.put(queued, timer);
+		}
+	}
 
+	/**
+	 * Schedule a request deadline, lease or disable deadline on the wheel, making the wheel
+	 * and starting its ticks if need be.
+	 * @param item		Queued request, lease or waiting disable
+	 * @param deadline	When it expires
+	 * @param now		Current time
+	 * @return			Timer, for cancelling
+	 */
+	TimerWheel.Timer<Object> schedule(Object item, long deadline, long now) {
+		if(deadlines == null) {
+			deadlines = new TimerWheel<Object>(TimeUnit.MILLISECONDS.toNanos(DEADLINE_TICK_MS), now);
+			deadlineTimers = new HashMap<AccessRequestMsg,TimerWheel.Timer<Object>>();
+		}
+		if(deadlineTicks == null) {
+			FiniteDuration tick = FiniteDuration.create(DEADLINE_TICK_MS, TimeUnit.MILLISECONDS);
+			deadlineTicks = getContext().getSystem().scheduler().schedule(tick, tick, getSelf(), new DeadlineTick(),
+					getContext().dispatcher(), ActorRef.noSender());
+		}
+		return deadlines.schedule(item, deadline);
+	}
+
+	/**
+	 * Remove a blocking request from the queue of a resource, because it is being granted
+	 * or denied, cancelling its deadline if it has one.
+	 * @param rs	State of resource
+	 * @param temp	Queued request
+	 */
+	void dequeue(ResourceState rs, AccessRequestMsg temp) {
+		rs.dequeue(temp);
+		rs.stats.dequeued(System.nanoTime());
+		queued--;
+		if(deadlineTimers != null) {
+			TimerWheel.Timer<Object> timer = deadlineTimers.remove(temp);
+			if(timer != null) {
+				deadlines.cancel(timer);
+			}
+		}
+	}
+
+	/**
+	 * Deny the queued requests whose deadlines have passed with reason TIMEOUT, revoke the
+	 * access of holders whose leases have run out or whose resources have disables past
+	 * their deadlines, and stop the ticks once no deadlines or leases are left.
+	 */
+	void expireDeadlines() {
+		ArrayList<Object> expired = new ArrayList<Object>();
+		deadlines.advance(System.nanoTime(), expired::add);
+		LinkedHashSet<ResourceState> changed = new LinkedHashSet<ResourceState>();
+		for(Object o : expired) {
+			if(o instanceof ResourceState.Lease) {
+				ResourceState.Lease lease = (ResourceState.Lease) o;
+				revoke(lease.rs, lease.principal, RevocationReason.LEASE_EXPIRED);
+				changed.add(lease.rs);
+				continue;
+			}
+			if(o instanceof ManagementRequestMsg) {
+				ManagementRequestMsg m = (ManagementRequestMsg) o;
+				drainTimers.remove(m);
+				ResourceState rs = resources.get(m.getRequest().getResourceName());
+				forceDrain(rs);
+				changed.add(rs);
+				continue;
+			}
+			AccessRequestMsg temp = (AccessRequestMsg) o;
+			deadlineTimers.remove(temp);
+			ResourceState rs = resources.get(temp.getAccessRequest().getResourceName());
+			dequeue(rs, temp);
+			unwatch(rs, actorOf(temp.getPrincipal()));
+			denyAll(temp, AccessRequestDenialReason.TIMEOUT);
+			changed.add(rs);
+		}
+		// requests queued behind the expired ones, or for resources revoked, may now be
+		// granted, and pending disables finished
+		for(ResourceState rs : changed) {
+			processBlocking(rs.resource.getName());
+			checkDisabled(rs.resource.getName());
+			dropIfIdle(rs);
+		}
+		if(deadlines.isEmpty()) {
+			deadlineTicks.cancel();
+			deadlineTicks = null;
+		}
+	}
+
+	/**
+	 * Add the wait-for edges of the queued requests of a resource: each waits for the
+	 * holders it conflicts with, and, unless later requests may overtake earlier ones,
+	 * for the users of the requests ahead of it.  A request for a slot of a capacity
+	 * resource waits for any one holder to release, not all of them, which edges cannot
+	 * express, so it gets none and its deadlocks are left to timeouts.
+	 * @param rs	State of resource
+	 * @param edges	List to add edges to
+	 */
+	void waitForEdges(ResourceState rs, ArrayList<WaitForEdge> edges) {
+		String src = rs.resource.getName();
+		ArrayList<Object> ahead = new ArrayList<Object>();
+		HashSet<Object> waitsFor = new HashSet<Object>();
+		if(rs.resource.getCapacity() > 0) {
+			return;
+		}
+		for(Object o : rs.blockingRequests) {
+			AccessRequestMsg temp = (AccessRequestMsg) o;
+			Object waiter = temp.getPrincipal();
+			waitsFor.clear();
+			waitsFor.addAll(rs.writeAccess);
+			if(ResourceState.isWrite(temp.getAccessRequest())) {
+				waitsFor.addAll(rs.readAccess);
+			}
+			if(rs.policy != GrantPolicy.READER_PREFERRING) {
+				waitsFor.addAll(ahead);
+			}
+			waitsFor.remove(waiter);
+			long since = (temp.getTimes() == null) ? 0 : temp.getTimes().getEnqueued();
+			for(Object holder : waitsFor) {
+				edges.add(new WaitForEdge(waiter, holder, src, getSelf(), since));
+			}
+			ahead.add(waiter);
+		}
+	}
+
+	/**
+	 * Handle the current part of a multi-resource request, whose resource is local: acquire
+	 * it and pass the request on, wait for it like a single request of the same type, or
+	 * deny the whole request.
+	 * @param temp	Request
+	 * @param rs	State of resource of current part
+	 */
+	void handleLocalPart(AccessRequestMsg temp, ResourceState rs) {
+		AccessRequest part = ((MultiAccessRequest) temp.getAccessRequest()).getPart();
+		boolean write = ResourceState.isWrite(part);
+		if(!rs.pendingDisabled.isEmpty() || rs.resource.getStatus() == ResourceStatus.DISABLED) {
+			denyAll(temp, AccessRequestDenialReason.RESOURCE_DISABLED);
+		}
+		else if(admits(rs, temp.getPrincipal(), write)) {
+			grant(rs, temp, write);
+			partGranted(temp, rs);
+		}
+		else if(part.getType() == AccessRequestType.CONCURRENT_READ_BLOCKING || part.getType() == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING
+				|| part.getType() == AccessRequestType.SLOT_BLOCKING) {
+			enqueue(rs, temp);
+		}
+		else {
+			denyAll(temp, AccessRequestDenialReason.RESOURCE_BUSY);
+		}
+	}
+
+	/**
+	 * Having acquired the current part of a multi-resource request, grant the request if
+	 * that was the last part, and otherwise pass it on to the owner of the next part.
+	 * @param temp	Request
+	 * @param rs	State of resource of current part
+	 */
+	void partGranted(AccessRequestMsg temp, ResourceState rs) {
+		MultiAccessRequest multi = (MultiAccessRequest) temp.getAccessRequest();
+		if(multi.isLast()) {
+			log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),multi));
+			respond(temp.getReplyTo(), new AccessRequestGrantedMsg(temp));
+			return;
+		}
+		rs.stats.granted(multi.getPart().getType(), System.nanoTime());
+		AccessRequestMsg next = temp.withRequest(multi.next(getSelf()));
+		String src = next.getAccessRequest().getResourceName();
+		ActorRef man = getManager(src, next);
+		if(man == getSelf()) {
+			handleLocalAccess(next);
+		}
+		else if(man != null) {
+			log(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), man, next.getAccessRequest()));
+			RequestForwardedEvent.emit(src, "AccessRequest", man);
+			man.tell(next, getSelf());
+		}
+	}
+
+	/**
+	 * Handle an any-of request: grant a local resource of its group if one can be
+	 * granted now, and otherwise pass the request on to a manager that has not tried its
+	 * resources yet, preferring the known owner of a resource named in the group, or deny
+	 * it once every manager has.
+	 * @param temp	Request
+	 */
+	void handleAnyOf(AccessRequestMsg temp) {
+		if(temp.getTimes() != null) {
+			temp = temp.withTimes(temp.getTimes().atOwner());
+		}
+		AnyOfAccessRequest any = (AnyOfAccessRequest) temp.getAccessRequest();
+		String src = freeLocal(any, temp.getPrincipal());
+		if(src != null) {
+			grant(state(src), temp, ResourceState.isWrite(any));
+			AccessRequestMsg granted = temp.withRequest(any.grant(src));
+			log(LogMsg.makeAccessRequestGrantedLogMsg (granted.getReplyTo(),getSelf(),granted.getAccessRequest()));
+			respond(granted.getReplyTo(), new AccessRequestGrantedMsg(granted));
+			return;
+		}
+		any = any.visit(getSelf(), ownsAnyOf(any));
+		ActorRef next = null;
+		if(any.getNames() != null) {
+			for(String name : any.getNames()) {
+				ActorRef m = srcToManager.containsKey(name) ? srcToManager.get(name) : remoteRanges.get(name);
+				if(m != null && !any.hasVisited(m)) {
+					next = m;
+					break;
+				}
+			}
+		}
+		if(next == null) {
+			for(ActorRef m : managers) {
+				if(!any.hasVisited(m)) {
+					next = m;
+					break;
+				}
+			}
+		}
+		AccessRequestMsg forward = temp.withRequest(any);
+		if(next == null) {
+			AccessRequestDenialReason reason = any.isFound() ? AccessRequestDenialReason.RESOURCE_BUSY : AccessRequestDenialReason.RESOURCE_NOT_FOUND;
+			log(LogMsg.makeAccessRequestDeniedLogMsg(forward.getReplyTo(), getSelf(), any, reason));
+			respond(forward.getReplyTo(), new AccessRequestDeniedMsg(forward, reason));
+		}
+		else {
+			log(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), next, any));
+			RequestForwardedEvent.emit(any.getGroup(), "AccessRequest", next);
+			next.tell(forward, getSelf());
+		}
+	}
+
+	/**
+	 * Find a local resource in the group of an any-of request that can be granted now.
+	 * Resources of a range without state are idle, so the first of a matching range found
+	 * without state is free; a prefix only takes in the resources of a range if it is a
+	 * prefix of all their names.
+	 * @param any		Request
+	 * @param principal	User
+	 * @return			Name of resource, or null if there is none
+	 */
+	String freeLocal(AnyOfAccessRequest any, Object principal) {
+		if(any.getNames() != null) {
+			for(String src : any.getNames()) {
+				if(isLocal(src)) {
+					ResourceState rs = state(src);
+					if(grantableNow(rs, any, principal)) {
+						return src;
+					}
+					dropIfIdle(rs);
+				}
+			}
+			return null;
+		}
+		for(ResourceState rs : resources.values()) {
+			if(any.matches(rs.resource.getName()) && grantableNow(rs, any, principal)) {
+				return rs.resource.getName();
+			}
+		}
+		// resources in ranges are never capacity resources
+		for(ResourceRange range : ResourceState.isSlot(any) ? new ArrayList<ResourceRange>() : localRanges.ranges()) {
+			if((range.getBaseName() + "_").startsWith(any.getPrefix())) {
+				for(int i = range.getFirst(); i <= range.getLast(); i++) {
+					if(!resources.containsKey(range.getName(i))) {
+						return range.getName(i);
 					}
 				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param any	Any-of request
+	 * @return		Whether a local resource is in the group of the request
+	 */
+	boolean ownsAnyOf(AnyOfAccessRequest any) {
+		if(any.getNames() != null) {
+			for(String src : any.getNames()) {
+				if(isLocal(src)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		for(String src : resources.keySet()) {
+			if(any.matches(src)) {
+				return true;
+			}
+		}
+		for(ResourceRange range : localRanges.ranges()) {
+			if((range.getBaseName() + "_").startsWith(any.getPrefix())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param rs		State of local resource
+	 * @param any		Any-of request
+	 * @param principal	User
+	 * @return			Whether the resource suits the request and can be granted to the user now
+	 */
+	boolean grantableNow(ResourceState rs, AnyOfAccessRequest any, Object principal) {
+		return ResourceState.isSlot(any) == (rs.resource.getCapacity() > 0) && rs.pendingDisabled.isEmpty()
+				&& rs.resource.getStatus() != ResourceStatus.DISABLED && admits(rs, principal, ResourceState.isWrite(any));
+	}
+
+	/**
+	 * @return	Whether as many requests wait in this manager as it allows
+	 */
+	boolean isFull() {
+		return maxWaiting > 0 && queued + parked >= maxWaiting;
+	}
+
+	/**
+	 * Deny an access request with reason OVERLOADED, releasing any parts it has acquired.
+	 * @param temp	Request
+	 */
+	void overload(AccessRequestMsg temp) {
+		overloaded++;
+		denyAll(temp, AccessRequestDenialReason.OVERLOADED);
+	}
+
+	/**
+	 * Deny an access request, releasing the parts it has acquired if it is a
+	 * multi-resource request.
+	 * @param temp		Request
+	 * @param reason	Reason for denying the current part
+	 */
+	void denyAll(AccessRequestMsg temp, AccessRequestDenialReason reason) {
+		releaseAcquired(temp);
+		log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(), temp.getAccessRequest(), reason));
+		respond(temp.getReplyTo(), new AccessRequestDeniedMsg(temp, reason));
+	}
+
+	/**
+	 * Release, on behalf of its user, the parts a multi-resource request acquired before
+	 * the current one, by sending releases straight to their owners.
+	 * @param temp	Request, which need not be a multi-resource request
+	 */
+	void releaseAcquired(AccessRequestMsg temp) {
+		if(!(temp.getAccessRequest() instanceof MultiAccessRequest)) {
+			return;
+		}
+		MultiAccessRequest multi = (MultiAccessRequest) temp.getAccessRequest();
+		for(int i = 0; i < multi.getIndex(); i++) {
+			AccessRequest part = multi.getPart(i);
+			AccessRelease release = new AccessRelease(part.getResourceName(), ResourceState.accessType(part));
+			multi.getOwner(i).tell(new AccessReleaseMsg(release, temp.getReplyTo(), temp.getVirtualUser()), getSelf());
+		}
+	}
+
+	/**
+	 * @param temp	Access request
+	 * @return		Whether the request is a multi-resource request past its first part,
+	 * 				which managers pass to each other and a user never retries, so its ID
+	 * 				may be seen again by a manager owning more than one part
+	 */
+	static boolean isHop(AccessRequestMsg temp) {
+		return temp.getAccessRequest() instanceof MultiAccessRequest && ((MultiAccessRequest) temp.getAccessRequest()).getIndex() > 0;
+	}
+
+	/**
+	 * Tell the user of a request sent directly to this manager that it does not own the
+	 * resource, so the user can send the request to its local manager instead.  This is
+	 * not a final response, so it is neither logged nor counted.
+	 * @param temp	Request
+	 */
+	void staleRoute(AccessRequestMsg temp) {
+		AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp, AccessRequestDenialReason.STALE_ROUTE);
+		if(batchResponses != null && temp.getReplyTo().equals(batchReplyTo)) {
+			batchResponses.add(denied);
+		}
+		else {
+			temp.getReplyTo().tell(denied, getSelf());
+		}
+	}
+
+	/**
+	 * Handle a batch of access requests as if each had arrived on its own, answering the
+	 * ones that can be answered right away in one batched response and forwarding the
+	 * ones for remote resources in one batch per owner.
+	 * @param batch	Batch of requests
+	 */
+	void handleBatch(AccessRequestBatchMsg batch) {
+		LinkedHashMap<ActorRef,ArrayList<AccessRequestMsg>> forwards = new LinkedHashMap<ActorRef,ArrayList<AccessRequestMsg>>();
+		batchReplyTo = batch.getReplyTo();
+		batchResponses = new ArrayList<Object>(batch.getRequests().size());
+		try {
+			for(AccessRequestMsg temp : batch.getRequests()) {
+				if(!isHop(temp) && isDuplicate(temp.getRequestId())) {
+					continue;
+				}
+				if(temp.isDirect() && !isLocal(temp.getAccessRequest().getResourceName())) {
+					staleRoute(temp);
+					continue;
+				}
+				if(temp.getTimes() != null && temp.getTimes().getLocalArrival() == 0) {
+					temp = temp.withTimes(temp.getTimes().atLocalManager());
+				}
+				log(LogMsg.makeAccessRequestReceivedLogMsg (temp.getReplyTo(), getSelf(), temp.getAccessRequest(), temp.getTimes()));
+				if(temp.getAccessRequest() instanceof AnyOfAccessRequest) {
+					handleAnyOf(temp);
+					continue;
+				}
+				ActorRef man = getManager(temp.getAccessRequest().getResourceName(),temp);
+				if(man == null) {
+					// waiting for discovery; answered or forwarded on its own later
+					continue;
+				}
+				if(man == getSelf()) {
+					if(temp.getTimes() != null) {
+						temp = temp.withTimes(temp.getTimes().atOwner());
+					}
+					handleLocalAccess(temp);
+				}
 				else {
-					// access request denied due to disable
-					AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
-					log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-					blockingRequests.get(src).remove(o);
-					temp.getReplyTo().tell(denied, getSelf());
+					log(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), man, temp.getAccessRequest()));
+					RequestForwardedEvent.emit(temp.getAccessRequest().getResourceName(), "AccessRequest", man);
+					forwards.computeIfAbsent(man, k -> new ArrayList<AccessRequestMsg>()).add(temp);
 				}
 			}
 		}
+		finally {
+			ArrayList<Object> responses = batchResponses;
+			batchResponses = null;
+			batchReplyTo = null;
+			if(!responses.isEmpty()) {
+				batch.getReplyTo().tell(new AccessRequestBatchResponseMsg(responses), getSelf());
+			}
+		}
+		for(Map.Entry<ActorRef,ArrayList<AccessRequestMsg>> e : forwards.entrySet()) {
+			ArrayList<AccessRequestMsg> requests = e.getValue();
+			e.getKey().tell(requests.size() == 1 ? requests.get(0) : new AccessRequestBatchMsg(requests, batch.getReplyTo()), getSender());
+		}
 	}
 
 	// my own method
 	// TODO: double check this you mightve goofed
 	public ActorRef getManager(String srcName,Object request) {
 		// check if local
-		if(localResources.containsKey(srcName)) {
+		if(isLocal(srcName)) {
 			return getSelf();
 		}
 		else {
-			// search for a manager who has the resource
+			// search for a manager who has the resource, or the range it is in
 			if(srcToManager.containsKey(srcName)) {
 				return srcToManager.get(srcName);
 			}
+			else if(remoteRanges.get(srcName) != null) {
+				return remoteRanges.get(srcName);
+			}
 			else {
 				// send a whoHasResourceRequestMsg to every manager to see if the resource exists
+				// unless too many requests wait already: the caller treats a denied request as one
+				// that is waiting, and no search is started that nothing waits on
+				if(request instanceof AccessRequestMsg && isFull()) {
+					overload((AccessRequestMsg) request);
+					return null;
+				}
 				// add the src to a hashmap to keep track of how many responses you get (in order to tell if it exists)
 				if(!srcSearch.containsKey(srcName)) {
 					srcSearch.put(srcName, 0);
 					waitForSearch.put(srcName, new ArrayList<Object>());
+					searchStart.put(srcName, System.nanoTime());
 				}
 				// add this request to a list of requests pending on the search
 				waitForSearch.get(srcName).add(request);
+				parked++;
+				DiscoveryBroadcastEvent.emit(srcName, managers.size() - 1, waitForSearch.get(srcName).size());
 				for(ActorRef m : managers) {
 					// check to make sure you dont send the request to yourself
 					if(m != getSelf()) {
@@ -185,10 +1320,23 @@ public class ResourceManagerActor extends AbstractActor {
 
 
 
-	public Boolean onlyContains(ActorRef user, String src) {
+	/**
+	 * Record the ID of a request, if it has one.
+	 * @param requestId	ID of request, or 0 for none
+	 * @return			Whether the request has been seen before and should be dropped
+	 */
+	boolean isDuplicate(long requestId) {
+		if(requestId != 0 && !recentRequests.add(requestId)) {
+			duplicatesDropped++;
+			return true;
+		}
+		return false;
+	}
+
+	public Boolean onlyContains(Object user, String src) {
 		Boolean flag = true;
-		for(ActorRef r : readAccess.get(src)) {
-			if(r != user) {
+		for(Object r : resources.get(src).readAccess) {
+			if(!r.equals(user)) {
 				flag = false;
 			}
 		}
@@ -203,8 +1351,20 @@ public class ResourceManagerActor extends AbstractActor {
 		ActorRef user = null;
 		LogMsg logger = null;
 		LogMsg forward = null;
+		String src = null;
+		String kind = null;
+		if(msg instanceof LeaseRenewalMsg) {
+			// a renewal gets no response, so one for a resource not found is dropped
+			if(manager != null) {
+				RequestForwardedEvent.emit(((LeaseRenewalMsg) msg).getRenewal().getResourceName(), "LeaseRenewal", manager);
+				manager.tell(msg, getSelf());
+			}
+			return;
+		}
 		if(msg instanceof AccessRequestMsg) {
 			AccessRequestMsg temp = (AccessRequestMsg) msg;
+			src = temp.getAccessRequest().getResourceName();
+			kind = "AccessRequest";
 			response = new AccessRequestDeniedMsg(((AccessRequestMsg) msg),AccessRequestDenialReason.RESOURCE_NOT_FOUND);
 			user = ((AccessRequestMsg) msg).getReplyTo();
 			logger = LogMsg.makeAccessRequestDeniedLogMsg(user, getSelf(), temp.getAccessRequest(),AccessRequestDenialReason.RESOURCE_NOT_FOUND);
@@ -216,6 +1376,8 @@ public class ResourceManagerActor extends AbstractActor {
 		}
 		else if(msg instanceof ManagementRequestMsg) {
 			ManagementRequestMsg temp = (ManagementRequestMsg) msg;
+			src = temp.getRequest().getResourceName();
+			kind = "ManagementRequest";
 			response = new ManagementRequestDeniedMsg((ManagementRequestMsg) msg,ManagementRequestDenialReason.RESOURCE_NOT_FOUND);
 			user = ((ManagementRequestMsg) msg).getReplyTo();
 			logger = LogMsg.makeManagementRequestDeniedLogMsg(user, getSelf(), temp.getRequest(), ManagementRequestDenialReason.RESOURCE_NOT_FOUND);
@@ -223,13 +1385,17 @@ public class ResourceManagerActor extends AbstractActor {
 		}
 		if(user != null) {
 			if(manager == null) {
+				if(msg instanceof AccessRequestMsg) {
+					releaseAcquired((AccessRequestMsg) msg);
+				}
 				log(logger);
-				user.tell(response, getSelf());
+				respond(user, response);
 				// log denial
 			}
 			else {
 				// log forwarding
 				log(forward);
+				RequestForwardedEvent.emit(src, kind, manager);
 				manager.tell(msg, user);
 			}
 		}
@@ -262,12 +1428,15 @@ public class ResourceManagerActor extends AbstractActor {
 				r.enable();
 				log(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), r.getName(), ResourceStatus.ENABLED));
 				name = r.getName();
-				this.readAccess.put(name, new LinkedBlockingQueue<ActorRef>());
-				this.blockingRequests.put(name, new LinkedBlockingQueue<Object>());
-				this.pendingDisabled.put(name, new ArrayList<ManagementRequestMsg>());
-				this.writeAccess.put(name, new ArrayList<ActorRef>());
 				// add every resource to the list
-				this.localResources.put(r.getName(),r);
+				this.resources.put(name, new ResourceState(r, null, r.getGrantPolicy() != null ? r.getGrantPolicy() : temp.getGrantPolicy()));
+			}
+			for(ResourceRange range : temp.getLocalResourceRanges()) {
+				// resources in a range get their state when they are first used
+				log(LogMsg.makeLocalResourceCreatedLogMsg(getSelf(), range.toString()));
+				log(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), range.toString(), ResourceStatus.ENABLED));
+				this.localRanges.put(range.getGrantPolicy() != null ? range : range.withGrantPolicy(temp.getGrantPolicy()),
+						new ResourceStats(range.toString()));
 			}
 			AddInitialLocalResourcesResponseMsg response = new AddInitialLocalResourcesResponseMsg(temp);
 			getSender().tell(response, getSelf());
@@ -287,115 +1456,49 @@ public class ResourceManagerActor extends AbstractActor {
 		}
 		else if(msg instanceof AccessRequestMsg) {
 			AccessRequestMsg temp = (AccessRequestMsg) msg;
-			log(LogMsg.makeAccessRequestReceivedLogMsg (temp.getReplyTo(), getSelf(), temp.getAccessRequest()));
+			// a retried request has already been handled or forwarded, so drop it
+			if(!isHop(temp) && isDuplicate(temp.getRequestId())) {
+				return;
+			}
+			// a request sent directly to this manager for a resource it does not own
+			// followed a stale route, so bounce it back to the user
+			if(temp.isDirect() && !isLocal(temp.getAccessRequest().getResourceName())) {
+				staleRoute(temp);
+				return;
+			}
+			// timestamp arrival at the first manager to see the request
+			if(temp.getTimes() != null && temp.getTimes().getLocalArrival() == 0) {
+				temp = temp.withTimes(temp.getTimes().atLocalManager());
+				msg = temp;
+			}
+			log(LogMsg.makeAccessRequestReceivedLogMsg (temp.getReplyTo(), getSelf(), temp.getAccessRequest(), temp.getTimes()));
+			if(temp.getAccessRequest() instanceof AnyOfAccessRequest) {
+				handleAnyOf(temp);
+				return;
+			}
 			ActorRef man = getManager(temp.getAccessRequest().getResourceName(),msg);
 			// log access Request received
 			if(man != null) {
 				if(man == getSelf()) {
 					// the resource is local so handle it
-					AccessRequest req = temp.getAccessRequest();
-					String src = req.getResourceName();
-					switch(req.getType()) {
-					case CONCURRENT_READ_BLOCKING:
-						// check that the resource isnt pending disabled, and the resource either does not have any write accesses or the access is owned by the requestor
-						if(pendingDisabled.get(src).isEmpty() && localResources.get(src).getStatus() != ResourceStatus.DISABLED) {
-							if(writeAccess.get(src).size() == 0 || writeAccess.get(src).get(0) == temp.getReplyTo()) {
-								readAccess.get(src).add(temp.getReplyTo());
-								// Access Request Granted Log and message
-								log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
-								AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
-								temp.getReplyTo().tell(granted, getSelf());
-							}
-							else {
-								// instead of denying when busy we will add the request to the blocking list for this resource
-								blockingRequests.get(src).put(msg);
-							}
-						}
-						else {
-							AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
-							log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-							getSender().tell(denied, getSelf());
-						}
-						break;
-					case CONCURRENT_READ_NONBLOCKING:
-						// check that the resource isnt pending disabled, and the resource either does not have any write accesses or the access is owned by the requestor
-						if(pendingDisabled.get(src).isEmpty() && localResources.get(src).getStatus() != ResourceStatus.DISABLED) {
-							if(writeAccess.get(src).size() == 0 || writeAccess.get(src).get(0) == temp.getReplyTo()) {
-								readAccess.get(src).add(temp.getReplyTo());
-								// Access Request Granted Log
-								log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
-								AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
-								temp.getReplyTo().tell(granted, getSelf());
-							}
-							else {
-								AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_BUSY);
-								log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_BUSY));
-								getSender().tell(denied, getSelf());
-							}
-						}
-						else {
-							AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
-							log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-							getSender().tell(denied, getSelf());
-						}
-						break;
-					case EXCLUSIVE_WRITE_BLOCKING:
-						// check that the resource isnt pending disabled, and the resource either does not have any write accesses or the access is owned by the requestor
-						if(pendingDisabled.get(src).isEmpty() && localResources.get(src).getStatus() != ResourceStatus.DISABLED) {
-							// also need to check that there are currently no read access keys held by someone other than the requester
-							if((readAccess.get(src).size() == 0 || onlyContains(temp.getReplyTo(),src)) && (writeAccess.get(src).size() == 0 || writeAccess.get(src).get(0) == temp.getReplyTo())) {
-								writeAccess.get(src).add(temp.getReplyTo());
-								// Access Request Granted Log
-								log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
-								AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
-								temp.getReplyTo().tell(granted, getSelf());
-							}
-							else {
-								// instead of denying when busy we will add the request to the blocking list for this resource
-								blockingRequests.get(src).put(msg);
-							}
-						}
-						else {
-							AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
-							log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-							getSender().tell(denied, getSelf());
-						}
-						break;
-					case EXCLUSIVE_WRITE_NONBLOCKING:
-						// check that the resource isnt pending disabled, and the resource either does not have any write accesses or the access is owned by the requestor
-						if(pendingDisabled.get(src).isEmpty() && localResources.get(src).getStatus() != ResourceStatus.DISABLED) {
-							// also need to check that there are currently no read access keys held by someone other than the requester
-							if((readAccess.get(src).size() == 0 || onlyContains(temp.getReplyTo(),src)) && (writeAccess.get(src).size() == 0 || writeAccess.get(src).get(0) == temp.getReplyTo())) {
-								writeAccess.get(src).add(temp.getReplyTo());
-								// Access Request Granted Log
-								log(LogMsg.makeAccessRequestGrantedLogMsg (temp.getReplyTo(),getSelf(),temp.getAccessRequest()));
-								AccessRequestGrantedMsg granted = new AccessRequestGrantedMsg(temp);
-								temp.getReplyTo().tell(granted, getSelf());
-							}
-							else {
-								AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_BUSY);
-								// instead of denying when busy we will add the request to the blocking list for this resource
-								log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_BUSY));
-								getSender().tell(denied, getSelf());
-							}
-						}
-						else {
-							AccessRequestDeniedMsg denied = new AccessRequestDeniedMsg(temp,AccessRequestDenialReason.RESOURCE_DISABLED);
-							log(LogMsg.makeAccessRequestDeniedLogMsg(temp.getReplyTo(), getSelf(),temp.getAccessRequest(), AccessRequestDenialReason.RESOURCE_DISABLED));
-							getSender().tell(denied, getSelf());
-						}
-						break;
+					if(temp.getTimes() != null) {
+						temp = temp.withTimes(temp.getTimes().atOwner());
+						msg = temp;
 					}
-
+					handleLocalAccess(temp);
 				}
 				else {
 					// manager of the resource is someone else
 					// TODO: might want to change getSender to temp.getReply()
 					log(LogMsg.makeAccessRequestForwardedLogMsg(getSelf(), man, temp.getAccessRequest()));
+					RequestForwardedEvent.emit(temp.getAccessRequest().getResourceName(), "AccessRequest", man);
 					man.tell(msg, getSender());
 				}
 			}
 		}
+		else if(msg instanceof AccessRequestBatchMsg) {
+			handleBatch((AccessRequestBatchMsg) msg);
+		}
 		else if(msg instanceof AccessReleaseMsg) {
 			AccessReleaseMsg temp = (AccessReleaseMsg) msg;
 			String srcName = temp.getAccessRelease().getResourceName();
@@ -406,57 +1509,126 @@ public class ResourceManagerActor extends AbstractActor {
 			if(man != null) {
 				// if resource local
 				if(man == getSelf()) {
+					ResourceState rs = state(srcName);
 					switch(((AccessReleaseMsg) msg).getAccessRelease().getType()) {
 					case CONCURRENT_READ:
 						// if the requester has access remove it else ignore
-						if(readAccess.get(srcName).contains(temp.getSender())) {
-							readAccess.get(srcName).remove(temp.getSender());
+						if(rs.resource.getCapacity() == 0 && rs.readAccess.contains(temp.getPrincipal())) {
+							rs.readAccess.remove(temp.getPrincipal());
+							rs.stats.released(System.nanoTime());
+							AccessReleasedEvent.emit(srcName, temp.getAccessRelease().getType().name(), rs.stats.getHolders());
 							// process blocking requests
 							processBlocking(srcName);
 							checkDisabled(srcName);
 						}
 						// TODO: add access release ignored
 						break;
+					case SLOT:
+						if(rs.resource.getCapacity() > 0 && rs.readAccess.contains(temp.getPrincipal())) {
+							rs.readAccess.remove(temp.getPrincipal());
+							rs.stats.released(System.nanoTime());
+							AccessReleasedEvent.emit(srcName, temp.getAccessRelease().getType().name(), rs.stats.getHolders());
+							// process blocking requests
+							processBlocking(srcName);
+							checkDisabled(srcName);
+						}
+						break;
 					case EXCLUSIVE_WRITE:
-						if(writeAccess.get(srcName).contains(temp.getSender())) {
-							writeAccess.get(srcName).remove(temp.getSender());
+						if(rs.writeAccess.contains(temp.getPrincipal())) {
+							rs.writeAccess.remove(temp.getPrincipal());
+							rs.stats.released(System.nanoTime());
+							AccessReleasedEvent.emit(srcName, temp.getAccessRelease().getType().name(), rs.stats.getHolders());
 							// process blocking requests
 							processBlocking(srcName);
 							checkDisabled(srcName);
 						}
 						break;
 					}
-
+					if(rs.leases != null && rs.leases.containsKey(temp.getPrincipal()) && !rs.holds(temp.getPrincipal())) {
+						endLease(rs, temp.getPrincipal());
+					}
+					// a user no longer holding the resource need not be remembered for it
+					unwatch(rs, actorOf(temp.getPrincipal()));
+					dropIfIdle(rs);
 				}
 				else {
 					// resource isnt local
 					log(LogMsg.makeAccessReleaseForwardedLogMsg(getSelf(), man, temp.getAccessRelease()));
+					RequestForwardedEvent.emit(srcName, "AccessRelease", man);
 					man.tell(msg, getSender());
 				}
 
 			}
 
 		}
+		else if(msg instanceof LeaseRenewalMsg) {
+			LeaseRenewalMsg temp = (LeaseRenewalMsg) msg;
+			String srcName = temp.getRenewal().getResourceName();
+			ActorRef man = getManager(srcName, msg);
+			if(man == getSelf()) {
+				// a renewal for access not held, or held without a lease, is ignored
+				ResourceState rs = resources.get(srcName);
+				ResourceState.Lease lease = (rs == null || rs.leases == null) ? null : rs.leases.get(temp.getPrincipal());
+				if(lease != null) {
+					long leaseMs = temp.getRenewal().getLeaseMs();
+					lease(rs, temp.getPrincipal(), leaseMs > 0 ? TimeUnit.MILLISECONDS.toNanos(leaseMs) : lease.leaseNanos);
+				}
+			}
+			else if(man != null) {
+				RequestForwardedEvent.emit(srcName, "LeaseRenewal", man);
+				man.tell(msg, getSender());
+			}
+		}
 		else if(msg instanceof ManagementRequestMsg) {
 			ManagementRequestMsg temp = (ManagementRequestMsg) msg;
+			if(isDuplicate(temp.getRequestId())) {
+				return;
+			}
 			String srcName = temp.getRequest().getResourceName();
-			log(LogMsg.makeManagementRequestReceivedLogMsg(temp.getReplyTo(), getSelf(),temp.getRequest()));
+			// timestamp arrival at the first manager to see the request
+			if(temp.getTimes() != null && temp.getTimes().getLocalArrival() == 0) {
+				temp = temp.withTimes(temp.getTimes().atLocalManager());
+				msg = temp;
+			}
+			log(LogMsg.makeManagementRequestReceivedLogMsg(temp.getReplyTo(), getSelf(),temp.getRequest(), temp.getTimes()));
 			ActorRef man = getManager(temp.getRequest().getResourceName(),msg);
 			if(man != null) {
 				if(man == getSelf()) {
+					if(temp.getTimes() != null) {
+						temp = temp.withTimes(temp.getTimes().atOwner());
+						msg = temp;
+					}
+					ResourceState rs = state(srcName);
 					if(temp.getRequest().getType() == ManagementRequestType.DISABLE) {
 						// disable: add to pendingDisable and run checkDisabled if the requester can disable
 						// to check if they can disable check to make sure they dont currently hold any access keys
-						if(readAccess.get(srcName).contains(temp.getReplyTo()) || writeAccess.get(srcName).contains(temp.getReplyTo())) {
+						if(rs.readAccess.contains(temp.getPrincipal()) || rs.writeAccess.contains(temp.getPrincipal())) {
 							// requester holds access so deny
 							log(LogMsg.makeManagementRequestDeniedLogMsg(temp.getReplyTo(), getSelf(), temp.getRequest(), ManagementRequestDenialReason.ACCESS_HELD_BY_USER));
 							ManagementRequestDeniedMsg denied = new ManagementRequestDeniedMsg(temp, ManagementRequestDenialReason.ACCESS_HELD_BY_USER);
-							temp.getReplyTo().tell(denied, getSelf());
+							respond(temp.getReplyTo(), denied);
 						}
 						else {
-							pendingDisabled.get(srcName).add(temp);
+							if(rs.resource.getStatus() != ResourceStatus.DISABLED) {
+								rs.stats.drainStarted(System.nanoTime());
+							}
+							rs.pendingDisabled.add(temp);
+							watch(temp.getPrincipal(), srcName);
 							processBlocking(srcName);
 							checkDisabled(srcName);
+							// a disable still waiting for holders revokes them at its deadline
+							long deadlineMs = temp.getRequest().getDeadlineMs();
+							if(deadlineMs > 0 && rs.pendingDisabled.contains(temp) && rs.resource.getStatus() != ResourceStatus.DISABLED) {
+								long now = System.nanoTime();
+								long deadline = now + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+								if(drainTimers == null) {
+									drainTimers = new HashMap<ManagementRequestMsg,TimerWheel.Timer<Object>>();
+								}
+								drainTimers.put(temp, schedule(temp, deadline, now));
+								if(rs.drainDeadline == 0 || deadline < rs.drainDeadline) {
+									rs.drainDeadline = deadline;
+								}
+							}
 						}
 
 					}
@@ -464,30 +1636,127 @@ public class ResourceManagerActor extends AbstractActor {
 						// enable : enable the resource and clear the disable requests
 						// TODO: add resource changed log
 						
-						if(localResources.get(srcName).getStatus() == ResourceStatus.DISABLED) {
-							localResources.get(srcName).enable();
+						if(rs.resource.getStatus() == ResourceStatus.DISABLED) {
+							rs.resource.enable();
 							log(LogMsg.makeResourceStatusChangedLogMsg(getSelf(), srcName, ResourceStatus.ENABLED));
 						}
 						log(LogMsg.makeManagementRequestGrantedLogMsg(temp.getReplyTo(), getSelf(), temp.getRequest()));
-						ManagementRequestGrantedMsg granted = new ManagementRequestGrantedMsg(temp.getRequest());
-						temp.getReplyTo().tell(granted, getSelf());
+						ManagementRequestGrantedMsg granted = new ManagementRequestGrantedMsg(temp);
+						respond(temp.getReplyTo(), granted);
 					}
+					dropIfIdle(rs);
 				}
 				else {
 					// resource isnt local
 					log(LogMsg.makeManagementRequestForwardedLogMsg(getSelf(), man, temp.getRequest()));
+					RequestForwardedEvent.emit(srcName, "ManagementRequest", man);
 					man.tell(msg, getSender());
 				}
 			}
 
 		}
+		else if(msg instanceof ManagerStatsRequestMsg) {
+			EnumMap<LatencyStage,LatencyHistogram> copies = new EnumMap<LatencyStage,LatencyHistogram>(LatencyStage.class);
+			for (LatencyStage stage : latencies.keySet()) {
+				copies.put(stage, latencies.get(stage).copy());
+			}
+			getSender().tell(new ManagerStatsResponseMsg(copies, duplicatesDropped, overloaded, ManagerMailbox.getRejected(getSelf())), getSelf());
+		}
+		else if(msg instanceof ResourceStatsRequestMsg) {
+			// snapshot every local resource with state and every range, most contended first,
+			// and send the top k
+			long now = System.nanoTime();
+			ArrayList<ResourceStats> snapshots = new ArrayList<ResourceStats>(resources.size());
+			for(ResourceState rs : resources.values()) {
+				snapshots.add(rs.stats.snapshot(now));
+			}
+			for(ResourceStats stats : localRanges.values()) {
+				snapshots.add(stats.snapshot(now));
+			}
+			snapshots.sort((a, b) -> a.getWaitNanos() != b.getWaitNanos() ? Long.compare(b.getWaitNanos(), a.getWaitNanos())
+					: Long.compare(b.getTotalDenials(), a.getTotalDenials()));
+			int k = ((ResourceStatsRequestMsg) msg).getK();
+			if(k > 0 && k < snapshots.size()) {
+				snapshots = new ArrayList<ResourceStats>(snapshots.subList(0, k));
+			}
+			getSender().tell(new ResourceStatsResponseMsg(snapshots, getSelf()), getSelf());
+		}
+		else if(msg instanceof DrainProgressRequestMsg) {
+			long now = System.nanoTime();
+			ArrayList<DrainProgress> drains = new ArrayList<DrainProgress>();
+			for(ResourceState rs : resources.values()) {
+				if(!rs.pendingDisabled.isEmpty() && rs.resource.getStatus() != ResourceStatus.DISABLED) {
+					drains.add(new DrainProgress(rs.resource.getName(), rs.writeAccess.size() + rs.readAccess.size(),
+							rs.pendingDisabled.size(), rs.stats.getCurrentDrainNanos(now),
+							(rs.drainDeadline == 0) ? -1 : Math.max(rs.drainDeadline - now, 0)));
+				}
+			}
+			drains.sort((a, b) -> Long.compare(b.getElapsedNanos(), a.getElapsedNanos()));
+			getSender().tell(new DrainProgressResponseMsg(drains, getSelf()), getSelf());
+		}
+		else if(msg instanceof WaitForGraphRequestMsg) {
+			// the first snapshot scans every resource; later ones only those that have had waiters since
+			if(waiting == null) {
+				waiting = new HashSet<ResourceState>();
+				for(ResourceState rs : resources.values()) {
+					if(!rs.blockingRequests.isEmpty()) {
+						waiting.add(rs);
+					}
+				}
+			}
+			ArrayList<WaitForEdge> edges = new ArrayList<WaitForEdge>();
+			Iterator<ResourceState> it = waiting.iterator();
+			while(it.hasNext()) {
+				ResourceState rs = it.next();
+				if(rs.blockingRequests.isEmpty() || resources.get(rs.resource.getName()) != rs) {
+					it.remove();
+				}
+				else {
+					waitForEdges(rs, edges);
+				}
+			}
+			getSender().tell(new WaitForGraphResponseMsg(((WaitForGraphRequestMsg) msg).getRound(), edges), getSelf());
+		}
+		else if(msg instanceof Terminated) {
+			releaseTerminated(((Terminated) msg).getActor());
+		}
+		else if(msg instanceof DeadlineTick) {
+			if(deadlineTicks != null) {
+				expireDeadlines();
+			}
+		}
+		else if(msg instanceof DeadlockVictimMsg) {
+			DeadlockVictimMsg temp = (DeadlockVictimMsg) msg;
+			ResourceState rs = resources.get(temp.getResourceName());
+			AccessRequestMsg victim = null;
+			if(rs != null) {
+				for(Object o : rs.blockingRequests) {
+					if(((AccessRequestMsg) o).getPrincipal().equals(temp.getPrincipal())) {
+						victim = (AccessRequestMsg) o;
+						break;
+					}
+				}
+			}
+			// the request may have been granted or denied since the snapshot
+			if(victim != null) {
+				dequeue(rs, victim);
+				unwatch(rs, actorOf(victim.getPrincipal()));
+				denyAll(victim, AccessRequestDenialReason.DEADLOCK);
+				// requests queued behind the victim may now be granted
+				processBlocking(temp.getResourceName());
+				dropIfIdle(rs);
+			}
+		}
 		else if(msg instanceof WhoHasResourceRequestMsg) {
 			WhoHasResourceRequestMsg temp = (WhoHasResourceRequestMsg)msg;
 			Boolean result = false;
-			if(localResources.containsKey(temp.getResourceName())) {
+			if(isLocal(temp.getResourceName())) {
 				result = true;
 			}
-			WhoHasResourceResponseMsg response = new WhoHasResourceResponseMsg(temp.getResourceName(),result,getSelf());
+			// for a resource in a range, answer for the whole range, even while it has state
+			ResourceState rs = resources.get(temp.getResourceName());
+			ResourceRange range = (rs != null && rs.rangeStats == null) ? null : localRanges.rangeOf(temp.getResourceName());
+			WhoHasResourceResponseMsg response = new WhoHasResourceResponseMsg(temp.getResourceName(),result,getSelf(),range);
 			getSender().tell(response, getSelf());
 		}
 		else if(msg instanceof WhoHasResourceResponseMsg) {
@@ -500,8 +1769,17 @@ public class ResourceManagerActor extends AbstractActor {
 					// send appropriate request to the sender of this response
 					// also add the found resource to that manager in your hashmap srcToManager
 					request = waitForSearch.remove(name);
+					parked -= request.size();
 					srcSearch.remove(name);
-					srcToManager.put(name, getSender());
+					long searched = System.nanoTime() - searchStart.remove(name);
+					latencies.get(LatencyStage.DISCOVERY).record(searched);
+					DiscoveryResolvedEvent.emit(name, true, searched, request.size());
+					if(temp.getRange() != null) {
+						remoteRanges.put(temp.getRange(), getSender());
+					}
+					else {
+						srcToManager.put(name, getSender());
+					}
 					// send log for discovered resource
 					log(LogMsg.makeRemoteResourceDiscoveredLogMsg(getSelf(),getSender(),name));
 					for(Object o: request) {
@@ -514,7 +1792,11 @@ public class ResourceManagerActor extends AbstractActor {
 					// if every manager says they dont have it remove the request and send the appropriate response
 					if(srcSearch.get(name) == managers.size() - 1) {
 						srcSearch.remove(name);
+						long searched = System.nanoTime() - searchStart.remove(name);
+						latencies.get(LatencyStage.DISCOVERY).record(searched);
 						request = waitForSearch.remove(name);
+						parked -= request.size();
+						DiscoveryResolvedEvent.emit(name, false, searched, request.size());
 						for(Object o : request) {
 							handleWhoHas(o,null);
 						}
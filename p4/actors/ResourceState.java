@@ -0,0 +1,144 @@
+package cmsc433.p4.actors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.GrantPolicy;
+import cmsc433.p4.enums.ResourceStatus;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.MultiAccessRequest;
+import cmsc433.p4.messages.ManagementRequestMsg;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.ResourceStats;
+import cmsc433.p4.util.TimerWheel;
+
+/**
+ * Lock state of one local resource, owned by its resource manager.
+ *
+ * Resources declared individually keep their state for the life of the manager.
+ * Resources in a declared range get their state when first used, and lose it again
+ * once idle (enabled, with no holders, waiters or pending disables), at which point
+ * their counters are added to the counters of the range.
+ */
+class ResourceState {
+
+	/**
+	 * Lease on all the access one user holds to the resource, which the manager revokes
+	 * when its timer expires.
+	 */
+	static final class Lease {
+		final ResourceState rs;
+		final Object principal;
+		long leaseNanos;					// Length given when last granted or renewed
+		TimerWheel.Timer<Object> timer;
+
+		Lease(ResourceState rs, Object principal) {
+			this.rs = rs;
+			this.principal = principal;
+		}
+	}
+
+	final Resource resource;
+	final ArrayList<Object> writeAccess = new ArrayList<Object>();					// Holders: user actors or virtual users
+	final LinkedBlockingQueue<Object> readAccess = new LinkedBlockingQueue<Object>();		// For a capacity resource, holders of slots
+	final LinkedHashSet<Object> blockingRequests = new LinkedHashSet<Object>();		// In arrival order; removing any is O(1)
+	final ArrayList<ManagementRequestMsg> pendingDisabled = new ArrayList<ManagementRequestMsg>();
+	HashMap<Object,Lease> leases;		// Leases of holders that have them, or null if none ever has
+	long drainDeadline;		// When the first waiting disable with a deadline revokes the holders, or 0 if none
+	final ResourceStats stats;
+	final ResourceStats rangeStats;		// Counters of range, or null if declared individually
+	final GrantPolicy policy;
+	int queuedWriters;		// Write requests in blockingRequests
+	boolean writePhase;		// Whether the last access granted was a write
+
+	/**
+	 * @param resource		Resource
+	 * @param rangeStats	Counters of range resource belongs to, or null if declared individually
+	 * @param policy		Policy for granting access
+	 */
+	ResourceState(Resource resource, ResourceStats rangeStats, GrantPolicy policy) {
+		this.resource = resource;
+		this.stats = new ResourceStats(resource.getName());
+		this.rangeStats = rangeStats;
+		this.policy = policy;
+	}
+
+	/**
+	 * @param request	Access request
+	 * @return			Whether the request, or the current part of a multi-resource
+	 * 					request, is for write access
+	 */
+	static boolean isWrite(AccessRequest request) {
+		AccessRequestType type = MultiAccessRequest.partOf(request).getType();
+		return type == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING || type == AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING;
+	}
+
+	/**
+	 * @param request	Access request
+	 * @return			Whether the request, or the current part of a multi-resource
+	 * 					request, is for a slot of a capacity resource
+	 */
+	static boolean isSlot(AccessRequest request) {
+		AccessRequestType type = MultiAccessRequest.partOf(request).getType();
+		return type == AccessRequestType.SLOT_BLOCKING || type == AccessRequestType.SLOT_NONBLOCKING;
+	}
+
+	/**
+	 * @param request	Request for a single resource
+	 * @return			Type of access it is granted
+	 */
+	static AccessType accessType(AccessRequest request) {
+		return isSlot(request) ? AccessType.SLOT : isWrite(request) ? AccessType.EXCLUSIVE_WRITE : AccessType.CONCURRENT_READ;
+	}
+
+	/**
+	 * @param principal	User
+	 * @return			Whether the user holds read or write access
+	 */
+	boolean holds(Object principal) {
+		return writeAccess.contains(principal) || readAccess.contains(principal);
+	}
+
+	/**
+	 * Give a user access.
+	 * @param principal	User
+	 * @param write		Whether the access is write access
+	 */
+	void grant(Object principal, boolean write) {
+		if (write)
+			writeAccess.add(principal);
+		else
+			readAccess.add(principal);
+		writePhase = write;
+	}
+
+	/**
+	 * @param m	Blocking request to add to the end of the queue
+	 */
+	void enqueue(AccessRequestMsg m) {
+		blockingRequests.add(m);
+		if (isWrite(m.getAccessRequest()))
+			queuedWriters++;
+	}
+
+	/**
+	 * @param m	Blocking request to remove from the queue
+	 */
+	void dequeue(AccessRequestMsg m) {
+		if (blockingRequests.remove(m) && isWrite(m.getAccessRequest()))
+			queuedWriters--;
+	}
+
+	/**
+	 * @return	Whether state can be dropped, and recreated when next needed
+	 */
+	boolean isIdle() {
+		return rangeStats != null && resource.getStatus() == ResourceStatus.ENABLED && writeAccess.isEmpty()
+				&& readAccess.isEmpty() && blockingRequests.isEmpty() && pendingDisabled.isEmpty();
+	}
+}
@@ -1,11 +1,24 @@
 package cmsc433.p4.actors;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.jfr.UserStepEvent;
 import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestBatchMsg;
+import cmsc433.p4.messages.AccessRequestBatchResponseMsg;
 import cmsc433.p4.messages.AccessRequestDeniedMsg;
 import cmsc433.p4.messages.AccessRequestGrantedMsg;
 import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.AccessRevokedMsg;
+import cmsc433.p4.messages.LeaseRenewalMsg;
 import cmsc433.p4.messages.LogMsg;
 import cmsc433.p4.messages.ManagementRequestDeniedMsg;
 import cmsc433.p4.messages.ManagementRequestGrantedMsg;
@@ -13,8 +26,15 @@ import cmsc433.p4.messages.ManagementRequestMsg;
 import cmsc433.p4.messages.UserStartMsg;
 import cmsc433.p4.util.AccessRelease;
 import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.AnyOfAccessRequest;
+import cmsc433.p4.util.LeaseRenewal;
+import cmsc433.p4.util.LongMap;
 import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.MultiAccessRequest;
+import cmsc433.p4.util.RequestIds;
+import cmsc433.p4.util.RequestTimes;
 import cmsc433.p4.util.SleepStep;
+import cmsc433.p4.util.SystemOptions;
 import cmsc433.p4.util.UserScript;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
@@ -31,13 +51,45 @@ import akka.actor.AbstractActor;
  * on to the next step in the script.  When the script is finished, the user actor
  * should stop.
  * 
+ * A user may instead be made with a window W > 1, in which case it pipelines its
+ * script: up to W steps may be in flight at once, as long as they use disjoint
+ * resources, and requests for any one resource are still made in script order.  A user
+ * may also batch the access requests of each step into one AccessRequestBatchMsg.
+ * 
+ * With an owner cache, a user remembers the manager that answered its last request for
+ * each remote resource, which is the manager owning it, and sends later requests and
+ * releases for the resource straight there rather than via its local manager.  If the
+ * manager turns out not to own the resource, it answers STALE_ROUTE, and the user
+ * forgets it and sends the request to its local manager.
+ * 
  *
  */
 public class UserActor extends AbstractActor {
 	
+	private static final String BLOCKING = "";	// Stands for all resources in blocking requests; not a resource name
+	private static final int OWNER_CACHE_SIZE = 1024;	// Most owners a user remembers
+	
+	/**
+	 * A step that has been sent and is awaiting responses.
+	 */
+	private static final class Step {
+		final ArrayList<String> resources;	// Resources used by step
+		final long start;					// When requests of step were sent
+		int requests;						// Requests in step that need responses
+		int pending;						// Requests still awaiting responses
+		
+		Step(ArrayList<String> resources) {
+			this.resources = resources;
+			this.start = System.nanoTime();
+		}
+	}
+	
 	private UserScript script;	// Script of messages to send
 	private ActorRef localResourceManager;	// Local resource manager for user
 	private ActorRef logger;	// Actor to send logging messages to
+	private final int window;	// Most steps in flight at once
+	private final boolean batched;	// Whether access requests of a step are sent in one batch
+	private final LinkedHashMap<String,ActorRef> owners;	// Owners of remote resources, least recently used first, or null if not cached
 	
 	/**
 	 * Props structure-generator for this class.  Assumption:  script is list of 
@@ -49,7 +101,20 @@ public class UserActor extends AbstractActor {
 	 * @return			Props structure
 	 */
 	static Props props(UserScript script, ActorRef localResourceManager, ActorRef logger) {
-		return Props.create(UserActor.class, script, localResourceManager, logger);
+		return props(script, localResourceManager, logger, SystemOptions.defaults());
+	}
+	
+	/**
+	 * Props structure-generator for users with the given options.
+	 * 
+	 * @param script	Script of requests to make
+	 * @param localResourceManager	Local resource manager for user
+	 * @param logger	Actor to send logging messages to
+	 * @param options	Options: pipeline window and batching of requests
+	 * @return			Props structure
+	 */
+	static Props props(UserScript script, ActorRef localResourceManager, ActorRef logger, SystemOptions options) {
+		return Props.create(UserActor.class, script, localResourceManager, logger, options);
 	}
 	
 	/**
@@ -64,6 +129,19 @@ public class UserActor extends AbstractActor {
 		ActorRef newUser = system.actorOf(props(script, localResourceManager, logger));
 		return newUser;
 	}
+	
+	/**
+	 * Make a new user actor with the given options and install it in the given actor system
+	 * @param script	Script of requests to make
+	 * @param localResourceManager	Local resource manager for user
+	 * @param logger	Actor to send logging messages to
+	 * @param system	Actor system
+	 * @param options	Options: pipeline window and batching of requests
+	 * @return			Reference to new user actor
+	 */
+	public static ActorRef makeUser (UserScript script, ActorRef localResourceManager, ActorRef logger, ActorSystem system, SystemOptions options) {
+		return system.actorOf(props(script, localResourceManager, logger, options));
+	}
 		
 	/**
 	 * Constructor.
@@ -71,26 +149,32 @@ public class UserActor extends AbstractActor {
 	 * @param script	Script of requests to be made by user
 	 * @param localResourceManager	Local resource manager for user
 	 * @param logger	Actor to send logging messages to
+	 * @param options	Options: pipeline window and batching of requests
 	 */
-	private UserActor(UserScript script, ActorRef localResourceManager, ActorRef logger) {
+	private UserActor(UserScript script, ActorRef localResourceManager, ActorRef logger, SystemOptions options) {
 		super();
 		this.script = script;
 		this.localResourceManager = localResourceManager;
 		this.logger = logger;
-	}
+		this.window = options.getPipelineWindow();
+		this.batched = options.isBatchedRequests();
+		this.owners = !options.isOwnerCache() ? null : new LinkedHashMap<String,ActorRef>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
 
-	private ArrayList<Object> currentPendingRequests;	// Requests that need responses
-	
-	/**
-	 * Remove access-release requests.
-	 */
-	private void removeResponselessRequests() {
-		for (int j = currentPendingRequests.size() - 1; j >= 0; j--) {
-			if (currentPendingRequests.get(j) instanceof AccessRelease || currentPendingRequests.get(j) instanceof SleepStep) {
-				currentPendingRequests.remove(j);
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,ActorRef> eldest) {
+				return size() > OWNER_CACHE_SIZE;
 			}
-		}
+		};
 	}
+
+	private final RequestIds requestIds = new RequestIds();	// Source of IDs for requests of this user
+	private final LongMap<Step> currentPendingRequests = new LongMap<Step>();	// Steps of requests that need responses, by request ID
+	private final ArrayDeque<ArrayList<Object>> lookahead = new ArrayDeque<ArrayList<Object>>();	// Steps taken from script but not sent
+	private final HashSet<String> busyResources = new HashSet<String>();	// Resources used by steps in flight
+	private final HashMap<String,ArrayDeque<String>> anyGranted = new HashMap<String,ArrayDeque<String>>();	// Resources granted to any-of requests
+																											// and not released, by group, oldest first
+	private int stepsInFlight;		// Steps with requests awaiting responses
 	
 	/**
 	 * Method for logging start of user.
@@ -107,83 +191,275 @@ public class UserActor extends AbstractActor {
 	}
 
 	/**
-	 * If script is non-empty, retrieve next step, delete it from script,
-	 * then send all messages.  Otherwise, stop actor.
+	 * Take steps from the script into the lookahead, then send every step of the
+	 * lookahead that may go now, in script order, while fewer than window steps are in
+	 * flight.  A step may go if its resources are disjoint from those of the steps in
+	 * flight and of the earlier steps still in the lookahead, so that requests for each
+	 * resource are made in script order.  A step with a sleep only goes once nothing is in
+	 * flight, and no later step goes before it.  When the script is finished and nothing
+	 * is in flight, stop actor.
 	 * 
-	 * @return	Next list of messages to send, if it exists, and null otherwise
 	 * @throws Exception 
 	 */
 	private void sendNextMsgs () throws Exception {
-		if (script.isDone()) {  // No more messages to send, so log this and stop
-			logTerminate();
-			getContext().stop(getSelf());
-		}
-		else {	// Get next requests, record them, and send request messages.
-			try {
-				currentPendingRequests = script.firstStep();
-				script = script.rest();
-			} catch (Exception e) {
-				e.printStackTrace();
+		boolean sent = true;
+		while (sent) {
+			while (lookahead.size() < window && !script.isDone()) {
+				try {
+					lookahead.add(script.firstStep());
+					script = script.rest();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+			if (lookahead.isEmpty() && stepsInFlight == 0) {  // No more messages to send, so log this and stop
+				logTerminate();
+				getContext().stop(getSelf());
+				return;
 			}
 			
-			// Send all messages corresponding to current requests.
-			long longestSleep = 0;
-			for (Object req : currentPendingRequests) {
-				
-				if (req instanceof SleepStep) {
-					if (((SleepStep) req).getDurationMs() > longestSleep)
-						longestSleep = ((SleepStep) req).getDurationMs();
-				} 
+			sent = false;
+			HashSet<String> waiting = null;		// Resources of earlier steps that cannot go yet
+			Iterator<ArrayList<Object>> it = lookahead.iterator();
+			while (it.hasNext() && stepsInFlight < window) {
+				ArrayList<Object> step = it.next();
+				ArrayList<String> resources = resourcesOf(step);
+				if (hasSleep(step)) {
+					if (stepsInFlight == 0 && waiting == null) {
+						it.remove();
+						sendStep(step, resources);
+						sent = true;
+					}
+					break;
+				}
+				if (!overlaps(resources, busyResources) && (waiting == null || !overlaps(resources, waiting))) {
+					it.remove();
+					sendStep(step, resources);
+					sent = true;
+				}
 				else {
-					// Create request message to send
-					Object msg = null;
-					if (req instanceof AccessRequest) {
-						msg = new AccessRequestMsg ((AccessRequest)req, getSelf());
+					if (waiting == null)
+						waiting = new HashSet<String>();
+					waiting.addAll(resources);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Send all messages of a step, recording the ones that need a response under their
+	 * IDs.  If any do, the step is in flight until they are all answered.
+	 * 
+	 * @param step		Requests of step
+	 * @param resources	Resources used by step
+	 * @throws Exception
+	 */
+	private void sendStep (ArrayList<Object> step, ArrayList<String> resources) throws Exception {
+		Step inFlight = new Step(resources);
+		LinkedHashMap<ActorRef,ArrayList<AccessRequestMsg>> batches = batched ? new LinkedHashMap<ActorRef,ArrayList<AccessRequestMsg>>() : null;
+		long longestSleep = 0;
+		for (Object req : step) {
+			
+			if (req instanceof SleepStep) {
+				if (((SleepStep) req).getDurationMs() > longestSleep)
+					longestSleep = ((SleepStep) req).getDurationMs();
+			} 
+			else {
+				// Create request message to send, and pick manager to send it to
+				Object msg = null;
+				ActorRef manager = localResourceManager;
+				if (req instanceof AccessRequest) {
+					long id = requestIds.next();
+					AccessRequestMsg aMsg = new AccessRequestMsg ((AccessRequest)req, getSelf(), RequestTimes.begin(), null, id);
+					ActorRef owner = ownerOf(((AccessRequest) req).getResourceName());
+					if (owner != null) {
+						aMsg = aMsg.asDirect();
+						manager = owner;
+					}
+					msg = aMsg;
+					currentPendingRequests.put(id, inFlight);
+					inFlight.pending++;
+					if (batches != null) {	// sent with the rest of the step below
+						batches.computeIfAbsent(manager, m -> new ArrayList<AccessRequestMsg>()).add(aMsg);
+						continue;
 					}
-					else if (req instanceof ManagementRequest) {
-						msg = new ManagementRequestMsg ((ManagementRequest)req, getSelf());
+				}
+				else if (req instanceof ManagementRequest) {
+					long id = requestIds.next();
+					msg = new ManagementRequestMsg ((ManagementRequest)req, getSelf(), RequestTimes.begin(), null, id);
+					currentPendingRequests.put(id, inFlight);
+					inFlight.pending++;
+				}
+				else if (req instanceof AccessRelease) {
+					AccessRelease release = (AccessRelease) req;
+					// a release naming the group of an any-of request releases the resource it was granted
+					ArrayDeque<String> granted = anyGranted.get(release.getResourceName());
+					if (granted != null) {
+						if (granted.size() == 1)
+							anyGranted.remove(release.getResourceName());
+						release = new AccessRelease(granted.poll(), release.getType());
 					}
-					else if (req instanceof AccessRelease) {
-						msg = new AccessReleaseMsg ((AccessRelease) req, getSelf());
+					msg = new AccessReleaseMsg (release, getSelf());
+					ActorRef owner = ownerOf(release.getResourceName());
+					if (owner != null) {
+						manager = owner;
 					}
-					else {
-						throw new Exception ("Bad access request in sendNextMsgs()");
+				}
+				else if (req instanceof LeaseRenewal) {
+					LeaseRenewal renewal = (LeaseRenewal) req;
+					msg = new LeaseRenewalMsg (renewal, getSelf());
+					ActorRef owner = ownerOf(renewal.getResourceName());
+					if (owner != null) {
+						manager = owner;
 					}
-					// send message
-					localResourceManager.tell(msg, getSelf());
 				}
+				else {
+					throw new Exception ("Bad access request in sendNextMsgs()");
+				}
+				// send message
+				manager.tell(msg, getSelf());
 			}
-			// Remove requests from current pending list that do not involve awaiting a
-			// response
-			removeResponselessRequests();
-			
-			// Sleep for the duration of the longest sleep statement in this step, if there was a sleep statement
-			if (longestSleep > 0)
-				Thread.sleep(longestSleep);
+		}
+		if (batches != null) {
+			for (Map.Entry<ActorRef,ArrayList<AccessRequestMsg>> e : batches.entrySet()) {
+				ArrayList<AccessRequestMsg> batch = e.getValue();
+				e.getKey().tell(batch.size() == 1 ? batch.get(0) : new AccessRequestBatchMsg(batch, getSelf()), getSelf());
+			}
+		}
+		inFlight.requests = inFlight.pending;
+		if (inFlight.pending > 0) {
+			stepsInFlight++;
+			busyResources.addAll(resources);
+		}
 		
-			// Send the next messages in the case that no requests warranted a response.
-			if (currentPendingRequests.isEmpty())
-				sendNextMsgs();
+		// Sleep for the duration of the longest sleep statement in this step, if there was a sleep statement
+		if (longestSleep > 0)
+			Thread.sleep(longestSleep);
+	}
+	
+	/**
+	 * @param resource	Name of resource
+	 * @return			Remote manager remembered as owning resource, or null if there is none
+	 */
+	private ActorRef ownerOf (String resource) {
+		return (owners == null) ? null : owners.get(resource);
+	}
+	
+	/**
+	 * Handle the response to an access request.  Unless the resource was not found, the
+	 * response came from the manager owning the resource, which is remembered if it is
+	 * remote and owners are cached.  A STALE_ROUTE denial is not an answer to the request:
+	 * the owner is forgotten and the request is sent again, via the local manager.
+	 * 
+	 * @param response	Granted or denied message
+	 * @param manager	Manager that sent the response
+	 * @throws Exception
+	 */
+	private void accessResponse (Object response, ActorRef manager) throws Exception {
+		AccessRequest req;
+		long requestId;
+		if (response instanceof AccessRequestGrantedMsg) {
+			req = ((AccessRequestGrantedMsg) response).getRequest();
+			requestId = ((AccessRequestGrantedMsg) response).getRequestId();
+			if (req instanceof AnyOfAccessRequest) {
+				AnyOfAccessRequest any = (AnyOfAccessRequest) req;
+				anyGranted.computeIfAbsent(any.getGroup(), g -> new ArrayDeque<String>()).add(any.getGranted());
+			}
 		}
+		else {
+			AccessRequestDeniedMsg aMsg = (AccessRequestDeniedMsg) response;
+			req = aMsg.getRequest();
+			requestId = aMsg.getRequestId();
+			if (aMsg.getReason() == AccessRequestDenialReason.STALE_ROUTE) {
+				owners.remove(req.getResourceName());
+				RequestTimes times = (aMsg.getTimes() == null) ? RequestTimes.begin() : aMsg.getTimes().resent();
+				localResourceManager.tell(new AccessRequestMsg (req, getSelf(), times, null, requestId), getSelf());
+				return;
+			}
+			if (aMsg.getReason() == AccessRequestDenialReason.RESOURCE_NOT_FOUND) {
+				manager = localResourceManager;
+			}
+		}
+		// a denied any-of request names a group, not a resource
+		if (owners != null && manager != localResourceManager && !(req instanceof AnyOfAccessRequest && ((AnyOfAccessRequest) req).getGranted() == null)) {
+			owners.put(req.getResourceName(), manager);
+		}
+		processPendingRequest (requestId);
 	}
 	
+	/**
+	 * Resources used by a step.  All blocking access requests count as using one extra
+	 * resource, so that they are made in script order and pipelining cannot create a
+	 * deadlock that running the script one step at a time would avoid.
+	 * 
+	 * @param step	Requests of step
+	 * @return		Names of resources used by step
+	 */
+	private static ArrayList<String> resourcesOf (ArrayList<Object> step) {
+		ArrayList<String> resources = new ArrayList<String>(step.size());
+		for (Object req : step) {
+			if (req instanceof MultiAccessRequest) {
+				for (AccessRequest part : ((MultiAccessRequest) req).getParts()) {
+					resources.add(part.getResourceName());
+				}
+				resources.add(BLOCKING);
+			}
+			else if (req instanceof AccessRequest) {
+				AccessRequestType type = ((AccessRequest) req).getType();
+				resources.add(((AccessRequest) req).getResourceName());
+				if (type == AccessRequestType.CONCURRENT_READ_BLOCKING || type == AccessRequestType.EXCLUSIVE_WRITE_BLOCKING
+						|| type == AccessRequestType.SLOT_BLOCKING)
+					resources.add(BLOCKING);
+			}
+			else if (req instanceof ManagementRequest) {
+				resources.add(((ManagementRequest) req).getResourceName());
+			}
+			else if (req instanceof AccessRelease) {
+				resources.add(((AccessRelease) req).getResourceName());
+			}
+			else if (req instanceof LeaseRenewal) {
+				resources.add(((LeaseRenewal) req).getResourceName());
+			}
+		}
+		return resources;
+	}
+	
+	private static boolean hasSleep (ArrayList<Object> step) {
+		for (Object req : step) {
+			if (req instanceof SleepStep)
+				return true;
+		}
+		return false;
+	}
 	
+	private static boolean overlaps (ArrayList<String> resources, HashSet<String> used) {
+		for (String r : resources) {
+			if (used.contains(r))
+				return true;
+		}
+		return false;
+	}
 	
 	/**
-	 * Process request from list of pending requests by removing.  Throw exception if message
-	 * is not in list.
+	 * Process request from list of pending requests by removing, and finish its step if it
+	 * was the last request of the step awaiting a response.  Throw exception if request
+	 * is not pending.
 	 * 
-	 * @param msg	Request to remove.
+	 * @param requestId	ID of request to remove.
 	 * @throws Exception 
 	 */
-	private void processPendingRequest (Object msg) throws Exception {
-		int i = currentPendingRequests.indexOf(msg);
-		if (i != -1) {
-			currentPendingRequests.remove(i);
-		}
-		else {
+	private void processPendingRequest (long requestId) throws Exception {
+		Step step = currentPendingRequests.remove(requestId);
+		if (step == null) {
 			throw (new Exception ("Message not found in pending message list"));
 		}
+		step.pending--;
+		if (step.pending == 0) {
+			stepsInFlight--;
+			busyResources.removeAll(step.resources);
+			UserStepEvent.emit(step.requests, System.nanoTime() - step.start);
+			sendNextMsgs();
+		}
 	}
 	
 	
@@ -202,27 +478,26 @@ public class UserActor extends AbstractActor {
 			sendNextMsgs();
 		}
 		
-		// Find correspond request in pending request list and delete it.		
-		else if (msg instanceof AccessRequestDeniedMsg) {
-			AccessRequestDeniedMsg aMsg = (AccessRequestDeniedMsg) msg;
-			processPendingRequest (aMsg.getRequest());
-		}
-		else if (msg instanceof AccessRequestGrantedMsg) {
-			AccessRequestGrantedMsg aMsg = (AccessRequestGrantedMsg) msg;
-			processPendingRequest (aMsg.getRequest());	
+		// Find correspond request in pending request list and delete it, moving on to
+		// next steps if its step is finished.
+		else if (msg instanceof AccessRequestDeniedMsg || msg instanceof AccessRequestGrantedMsg) {
+			accessResponse (msg, getSender());
 		}
 		else if (msg instanceof ManagementRequestDeniedMsg) {
 			ManagementRequestDeniedMsg mMsg = (ManagementRequestDeniedMsg) msg;
-			processPendingRequest (mMsg.getRequest());
+			processPendingRequest (mMsg.getRequestId());
 		}
 		else if (msg instanceof ManagementRequestGrantedMsg) {
 			ManagementRequestGrantedMsg mMsg = (ManagementRequestGrantedMsg) msg;
-			processPendingRequest (mMsg.getRequest());
+			processPendingRequest (mMsg.getRequestId());
 		}
-		
-		// Check to see if pending request list is empty, and if so, move on to next step.
-		if (currentPendingRequests.isEmpty()) {
-			sendNextMsgs();
+		else if (msg instanceof AccessRequestBatchResponseMsg) {
+			for (Object response : ((AccessRequestBatchResponseMsg) msg).getResponses()) {
+				accessResponse (response, getSender());
+			}
+		}
+		else if (msg instanceof AccessRevokedMsg) {
+			// not a response to a request: the script goes on, and its release of the access is ignored
 		}
 	} // end of onReceive
 }
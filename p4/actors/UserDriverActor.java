@@ -0,0 +1,259 @@
+package cmsc433.p4.actors;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestDeniedMsg;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.AccessRevokedMsg;
+import cmsc433.p4.messages.LeaseRenewalMsg;
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.ManagementRequestDeniedMsg;
+import cmsc433.p4.messages.ManagementRequestGrantedMsg;
+import cmsc433.p4.messages.ManagementRequestMsg;
+import cmsc433.p4.messages.UserStartMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.AnyOfAccessRequest;
+import cmsc433.p4.util.LeaseRenewal;
+import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.RequestIds;
+import cmsc433.p4.util.RequestTimes;
+import cmsc433.p4.util.SleepStep;
+import cmsc433.p4.util.UserScript;
+import cmsc433.p4.util.VirtualUser;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.AbstractActor;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Class of user drivers: actors that each run the scripts of many users, instead of
+ * one UserActor per script.
+ *
+ * Each user is a VirtualUser, and its state is just the rest of its script, the
+ * number of responses its current step is waiting for, and the resources its any-of
+ * requests were granted.  Requests name the virtual
+ * user making them, and managers echo it in their responses, so the driver can pass
+ * each response to the right user.  A user behaves as a UserActor would: it sends all
+ * requests of a step at once and waits for every response, and the user start and
+ * termination events are logged for each user.  A sleep in a step is a scheduled
+ * wake-up rather than Thread.sleep(), so that it does not hold up the other users.
+ *
+ * The driver stops when all its users have terminated.
+ */
+public class UserDriverActor extends AbstractActor {
+
+	/**
+	 * Message a driver sends itself when a user's sleep is over.
+	 */
+	private static final class Wake {
+		private final int user;
+
+		Wake(int user) {
+			this.user = user;
+		}
+	}
+
+	private final UserScript[] scripts;		// Rest of each user's script, or null once user has terminated
+	private final int[] pending;			// Responses (and wake-ups) each user's current step is waiting for
+	private final ActorRef localResourceManager;	// Local resource manager for users
+	private final ActorRef logger;			// Actor to send logging messages to
+	private final RequestIds requestIds = new RequestIds();	// Source of IDs for requests of all users
+	private final HashMap<Integer,HashMap<String,ArrayDeque<String>>> anyGranted =
+			new HashMap<Integer,HashMap<String,ArrayDeque<String>>>();	// Resources granted to any-of requests and not released,
+																		// by group, oldest first, for each user that has any
+	private int running;					// Users that have not terminated
+
+	/**
+	 * Props structure-generator for this class.
+	 *
+	 * @param scripts	Scripts of users, one per user
+	 * @param localResourceManager	Local resource manager for users
+	 * @param logger	Actor to send logging messages to
+	 * @return			Props structure
+	 */
+	static Props props(ArrayList<UserScript> scripts, ActorRef localResourceManager, ActorRef logger) {
+		return Props.create(UserDriverActor.class, scripts, localResourceManager, logger);
+	}
+
+	/**
+	 * Make a new user driver and install it in the given actor system
+	 * @param scripts	Scripts of users, one per user
+	 * @param localResourceManager	Local resource manager for users
+	 * @param logger	Actor to send logging messages to
+	 * @param system	Actor system
+	 * @return			Reference to new driver
+	 */
+	public static ActorRef makeDriver(ArrayList<UserScript> scripts, ActorRef localResourceManager, ActorRef logger, ActorSystem system) {
+		return system.actorOf(props(scripts, localResourceManager, logger));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param scripts	Scripts of users, one per user
+	 * @param localResourceManager	Local resource manager for users
+	 * @param logger	Actor to send logging messages to
+	 */
+	private UserDriverActor(ArrayList<UserScript> scripts, ActorRef localResourceManager, ActorRef logger) {
+		super();
+		this.scripts = scripts.toArray(new UserScript[scripts.size()]);
+		this.pending = new int[scripts.size()];
+		this.localResourceManager = localResourceManager;
+		this.logger = logger;
+	}
+
+	/**
+	 * @param i	User number
+	 * @return	Identity of user in requests and logs
+	 */
+	private VirtualUser user(int i) {
+		return new VirtualUser(getSelf(), i);
+	}
+
+	/**
+	 * Send the requests of the user's next step, and keep going until a step must wait
+	 * for responses.  If the user's script is finished, log this, and stop the driver
+	 * if it was the last user.
+	 *
+	 * @param i	User number
+	 * @throws Exception
+	 */
+	private void sendNextMsgs(int i) throws Exception {
+		while (pending[i] == 0) {
+			UserScript script = scripts[i];
+			if (script.isDone()) {	// No more messages to send, so log this
+				logger.tell(LogMsg.makeUserTerminateLogMsg(user(i)), getSelf());
+				scripts[i] = null;
+				anyGranted.remove(i);
+				running--;
+				if (running == 0) {
+					getContext().stop(getSelf());
+				}
+				return;
+			}
+			ArrayList<Object> step = script.firstStep();
+			scripts[i] = script.rest();
+
+			VirtualUser user = user(i);
+			long longestSleep = 0;
+			int expected = 0;
+			for (Object req : step) {
+				if (req instanceof SleepStep) {
+					longestSleep = Math.max(longestSleep, ((SleepStep) req).getDurationMs());
+				}
+				else if (req instanceof AccessRequest) {
+					localResourceManager.tell(new AccessRequestMsg((AccessRequest) req, getSelf(), RequestTimes.begin(), user, requestIds.next()), getSelf());
+					expected++;
+				}
+				else if (req instanceof ManagementRequest) {
+					localResourceManager.tell(new ManagementRequestMsg((ManagementRequest) req, getSelf(), RequestTimes.begin(), user, requestIds.next()), getSelf());
+					expected++;
+				}
+				else if (req instanceof AccessRelease) {
+					AccessRelease release = (AccessRelease) req;
+					// a release naming the group of an any-of request releases the resource it was granted
+					HashMap<String,ArrayDeque<String>> groups = anyGranted.get(i);
+					ArrayDeque<String> granted = (groups == null) ? null : groups.get(release.getResourceName());
+					if (granted != null) {
+						if (granted.size() == 1) {
+							groups.remove(release.getResourceName());
+							if (groups.isEmpty()) {
+								anyGranted.remove(i);
+							}
+						}
+						release = new AccessRelease(granted.poll(), release.getType());
+					}
+					localResourceManager.tell(new AccessReleaseMsg(release, getSelf(), user), getSelf());
+				}
+				else if (req instanceof LeaseRenewal) {
+					localResourceManager.tell(new LeaseRenewalMsg((LeaseRenewal) req, getSelf(), user), getSelf());
+				}
+				else {
+					throw new Exception ("Bad access request in sendNextMsgs()");
+				}
+			}
+			// The end of a sleep counts as one more response to wait for
+			if (longestSleep > 0) {
+				getContext().getSystem().scheduler().scheduleOnce(Duration.create(longestSleep, TimeUnit.MILLISECONDS),
+						getSelf(), new Wake(i), getContext().dispatcher(), getSelf());
+				expected++;
+			}
+			pending[i] = expected;
+		}
+	}
+
+	/**
+	 * Count a response for a user, and move the user on to its next step if it was the
+	 * last one the step was waiting for.
+	 *
+	 * @param i	User the response is for
+	 * @throws Exception
+	 */
+	private void responded(int i) throws Exception {
+		if (i < 0 || i >= scripts.length || scripts[i] == null || pending[i] == 0) {
+			throw new Exception ("Unexpected response for user " + i);
+		}
+		pending[i]--;
+		if (pending[i] == 0) {
+			sendNextMsgs(i);
+		}
+	}
+
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				.match(Object.class, this::onReceive)
+				.build();
+	}
+
+	public void onReceive(Object msg) throws Exception {
+		// Start up users and send their first round of messages.
+		if (msg instanceof UserStartMsg) {
+			if (running > 0) {
+				return;
+			}
+			running = scripts.length;
+			for (int i = 0; i < scripts.length; i++) {
+				logger.tell(LogMsg.makeUserStartLogMsg(user(i)), getSelf());
+			}
+			if (running == 0) {
+				getContext().stop(getSelf());
+			}
+			for (int i = 0; i < scripts.length; i++) {
+				sendNextMsgs(i);
+			}
+		}
+		else if (msg instanceof AccessRequestGrantedMsg) {
+			AccessRequestGrantedMsg granted = (AccessRequestGrantedMsg) msg;
+			int i = granted.getVirtualUser().getIndex();
+			if (granted.getRequest() instanceof AnyOfAccessRequest) {
+				AnyOfAccessRequest any = (AnyOfAccessRequest) granted.getRequest();
+				anyGranted.computeIfAbsent(i, u -> new HashMap<String,ArrayDeque<String>>())
+						.computeIfAbsent(any.getGroup(), g -> new ArrayDeque<String>()).add(any.getGranted());
+			}
+			responded(i);
+		}
+		else if (msg instanceof AccessRequestDeniedMsg) {
+			responded(((AccessRequestDeniedMsg) msg).getVirtualUser().getIndex());
+		}
+		else if (msg instanceof ManagementRequestGrantedMsg) {
+			responded(((ManagementRequestGrantedMsg) msg).getVirtualUser().getIndex());
+		}
+		else if (msg instanceof ManagementRequestDeniedMsg) {
+			responded(((ManagementRequestDeniedMsg) msg).getVirtualUser().getIndex());
+		}
+		else if (msg instanceof Wake) {
+			responded(((Wake) msg).user);
+		}
+		else if (msg instanceof AccessRevokedMsg) {
+			// not a response: the user's steps go on, and its release of the access is ignored
+		}
+	}
+}
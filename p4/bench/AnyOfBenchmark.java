@@ -0,0 +1,154 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.AnyOfAccessRequest;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of a printer farm, resources Printer_0 .. Printer_(printers-1), that
+ * clients acquire any free printer of, either by probing them one by one with
+ * nonblocking write requests, starting at a random one, until one is granted and
+ * counting every denial, or with one any-of request for Printer_*, which is denied only
+ * when every printer is busy, and is then retried.  Each client releases the printer
+ * as soon as it is granted and acquires again.  Throughput is in acquisitions per
+ * second, and after the runs the requests sent per acquisition are printed, over all
+ * measured iterations.
+ *
+ * Usage: AnyOfBenchmark [warmup=3] [iterations=5] [clients=256] [printers=64]
+ *        [ops=500] [mode=probe,any-of]
+ *
+ * ops is the number of acquisitions made by each client.
+ */
+public class AnyOfBenchmark {
+
+	/**
+	 * @param anyOf		Whether to make any-of requests rather than probe
+	 * @param printers	Printers in farm
+	 * @return			Requests of one client: an any-of request for Printer_*, retried
+	 * 					when denied, or a write request for a random printer, and after a
+	 * 					denial for the next one
+	 */
+	static BenchClientActor.RequestChoice choice(boolean anyOf, int printers) {
+		if (anyOf) {
+			return new BenchClientActor.RequestChoice() {
+				@Override
+				public AccessRequest first() {
+					return new AnyOfAccessRequest("Printer_*", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+				}
+
+				@Override
+				public AccessRequest retry(AccessRequest denied) {
+					return first();
+				}
+			};
+		}
+		return new BenchClientActor.RequestChoice() {
+			private int probe;					// Printer probed last
+
+			@Override
+			public AccessRequest first() {
+				probe = ThreadLocalRandom.current().nextInt(printers);
+				return new AccessRequest("Printer_" + probe, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+			}
+
+			@Override
+			public AccessRequest retry(AccessRequest denied) {
+				probe = (probe + 1) % printers;
+				return new AccessRequest("Printer_" + probe, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+			}
+		};
+	}
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int clients = Integer.parseInt(h.get("clients", "256"));
+		int printers = Integer.parseInt(h.get("printers", "64"));
+		int ops = Integer.parseInt(h.get("ops", "500"));
+		int warmup = Integer.parseInt(h.get("warmup", "3"));
+		ArrayList<String> summaries = new ArrayList<String>();
+		Harness.printHeader();
+		for (String mode : h.values("mode", "probe,any-of")) {
+			long[] requests = new long[1];
+			h.run("farm mode=" + mode + " printers=" + printers, farm(mode.equals("any-of"), clients, printers, ops, warmup, requests));
+			int iterations = Integer.parseInt(h.get("iterations", "5"));
+			summaries.add(String.format("%-40s %14.2f", "farm mode=" + mode + " printers=" + printers,
+					(double) requests[0] / ((long) clients * ops * iterations)));
+		}
+		System.out.println();
+		System.out.println(String.format("%-40s %14s", "Requests per acquisition", "requests"));
+		for (String s : summaries) {
+			System.out.println(s);
+		}
+	}
+
+	/**
+	 * @param requests	Element 0 has the requests sent in measured iterations added to it
+	 */
+	static Harness.Case farm(boolean anyOf, int clientCount, int printers, int ops, int warmup, long[] requests) {
+		return new Harness.Case() {
+			ActorSystem system;
+			CountDownLatch done;
+			ArrayList<ActorRef> clients;
+			ArrayList<BenchClientActor.RequestChoice> choices;
+			int iteration;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("AnyOf");
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(1);
+				nodes.add(new NodeSpecification(Systems.makeResources("Printer", printers), new ArrayList<UserScript>()));
+				SystemActors actors = Systems.makeSystem(nodes, BenchClientActor.makeSink(system), system);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+				ActorRef manager = actors.getResourceManagers().get(0);
+				done = new CountDownLatch(clientCount);
+				clients = new ArrayList<ActorRef>(clientCount);
+				choices = new ArrayList<BenchClientActor.RequestChoice>(clientCount);
+				for (int i = 0; i < clientCount; i++) {
+					BenchClientActor.RequestChoice choice = choice(anyOf, printers);
+					choices.add(choice);
+					clients.add(BenchClientActor.makeAcquireClient(system, manager, choice, ops, null, done));
+				}
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				for (ActorRef c : clients) {
+					c.tell(new BenchClientActor.Start(), ActorRef.noSender());
+				}
+				done.await();
+				if (++iteration > warmup) {
+					for (BenchClientActor.RequestChoice c : choices) {
+						requests[0] += c.getSent();
+					}
+				}
+				return (long) clientCount * ops;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
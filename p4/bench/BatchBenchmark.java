@@ -0,0 +1,142 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.messages.UserStartMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.SystemOptions;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of wide steps, with and without batching of the access requests of a step.
+ * Every user repeatedly reads width resources in one step and releases them in the
+ * next; half the resources of a step are local and half belong to the next node, so
+ * a batched step becomes one local batch and one forwarded batch.  Reads never
+ * conflict, so every request is granted at once and the cost measured is that of the
+ * messages.  The logger only counts user terminations, so that it is not the
+ * bottleneck.  Throughput is in access requests per second.
+ *
+ * Usage: BatchBenchmark [warmup=3] [iterations=5] [nodes=2] [users=4] [steps=200]
+ *        [width=1,8,32] [batch=false,true]
+ *
+ * users is per node, and steps is the number of read steps per user.
+ */
+public class BatchBenchmark {
+
+	/**
+	 * Logger that ignores every event except user terminations, and opens a latch once
+	 * the expected number of users have terminated.
+	 */
+	public static class TerminationCounter extends AbstractActor {
+		private final int users;
+		private final CountDownLatch done;
+		private int terminated;
+
+		public TerminationCounter(Integer users, CountDownLatch done) {
+			this.users = users;
+			this.done = done;
+		}
+
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder()
+					.match(LogMsg.class, m -> {
+						if (m.getType() == LogMsg.EventType.USER_TERMINATE && ++terminated == users) {
+							done.countDown();
+						}
+					})
+					.matchAny(msg -> {})
+					.build();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int nodes = Integer.parseInt(h.get("nodes", "2"));
+		int users = Integer.parseInt(h.get("users", "4"));
+		int steps = Integer.parseInt(h.get("steps", "200"));
+		Harness.printHeader();
+		for (int width : h.ints("width", "1,8,32"))
+			for (String batch : h.values("batch", "false,true"))
+				h.run("wide width=" + width + " batch=" + batch,
+						wide(nodes, users, steps, width, SystemOptions.defaults().withBatchedRequests(Boolean.parseBoolean(batch))));
+	}
+
+	/**
+	 * @param node		Node of user
+	 * @param nodes		Number of nodes
+	 * @param steps		Read steps
+	 * @param width		Resources read in each step
+	 * @return			Script reading width resources, half of them on the next node, steps times
+	 */
+	static UserScript wideScript(int node, int nodes, int steps, int width) {
+		StringBuilder read = new StringBuilder();
+		StringBuilder release = new StringBuilder();
+		for (int j = 0; j < width; j++) {
+			String name = "Wide" + ((j % 2 == 0) ? node : (node + 1) % nodes) + "_" + j;
+			String sep = (j == 0) ? "" : " | ";
+			read.append(sep).append("Read-Request-n ").append(name);
+			release.append(sep).append("Read-Release ").append(name);
+		}
+		return UserScript.fromString("repeat " + steps + " {\n" + read + "\n" + release + "\n}\n");
+	}
+
+	static Harness.Case wide(int nodeCount, int users, int steps, int width, SystemOptions options) {
+		return new Harness.Case() {
+			ActorSystem system;
+			CountDownLatch done;
+			SystemActors actors;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("Batch");
+				done = new CountDownLatch(1);
+				ActorRef logger = system.actorOf(Props.create(TerminationCounter.class, nodeCount * users, done));
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(nodeCount);
+				for (int i = 0; i < nodeCount; i++) {
+					ArrayList<UserScript> scripts = new ArrayList<UserScript>(users);
+					for (int u = 0; u < users; u++) {
+						scripts.add(wideScript(i, nodeCount, steps, width));
+					}
+					nodes.add(new NodeSpecification(Systems.makeResources("Wide" + i, width), scripts));
+				}
+				actors = Systems.makeSystem(nodes, logger, system, options);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				UserStartMsg sMsg = new UserStartMsg();
+				for (ActorRef u : actors.getUsers()) {
+					u.tell(sMsg, ActorRef.noSender());
+				}
+				done.await();
+				return (long) actors.getUserCount() * steps * width;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
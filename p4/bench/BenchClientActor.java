@@ -0,0 +1,258 @@
+package cmsc433.p4.bench;
+
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestDeniedMsg;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.AccessRevokedMsg;
+import cmsc433.p4.messages.ManagementRequestDeniedMsg;
+import cmsc433.p4.messages.ManagementRequestGrantedMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.AnyOfAccessRequest;
+import cmsc433.p4.util.LatencyHistogram;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+/**
+ * Actor standing in for a user in benchmarks.  The benchmark thread sends requests
+ * on its behalf; the client counts the responses, and revocations of access, and opens a
+ * latch once the expected number has arrived, optionally releasing every access it is
+ * granted.  An AcquireClient instead drives itself through a number of acquisitions.
+ */
+public class BenchClientActor extends AbstractActor {
+
+	/**
+	 * Message telling a client how many responses to wait for.
+	 */
+	public static final class Expect {
+		private final int responses;
+		private final CountDownLatch done;
+		private final boolean releaseOnGrant;
+
+		/**
+		 * @param responses			Number of responses to wait for
+		 * @param done				Latch to count down once they have arrived
+		 * @param releaseOnGrant	Whether to release access as soon as it is granted
+		 */
+		public Expect(int responses, CountDownLatch done, boolean releaseOnGrant) {
+			this.responses = responses;
+			this.done = done;
+			this.releaseOnGrant = releaseOnGrant;
+		}
+	}
+
+	/**
+	 * Actor that ignores every message, for use as a logger.
+	 */
+	public static class Sink extends AbstractActor {
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder()
+					.matchAny(msg -> {})
+					.build();
+		}
+	}
+
+	/**
+	 * Message starting an AcquireClient.
+	 */
+	public static final class Start {
+	}
+
+	/**
+	 * Requests an AcquireClient makes: the one starting each acquisition, and the one
+	 * following a denial.  Each client has its own, called only by the client, so it may
+	 * keep state such as the resource probed last.
+	 */
+	public static abstract class RequestChoice {
+		private long sent;		// Requests made; read by the benchmark only after the latch has opened
+
+		/**
+		 * @return	Request starting an acquisition
+		 */
+		public abstract AccessRequest first();
+
+		/**
+		 * @param denied	Request just denied
+		 * @return			Request to retry the acquisition with, or null to count it as done
+		 */
+		public AccessRequest retry(AccessRequest denied) {
+			return null;
+		}
+
+		/**
+		 * @return	Requests made
+		 */
+		public long getSent() {
+			return sent;
+		}
+	}
+
+	/**
+	 * Client acquiring access ops times: it makes requests until one is granted, or its
+	 * choice gives up, and releases the access as soon as it is granted.  It optionally
+	 * records the time from the first request of each acquisition to its grant, and
+	 * counts down the latch once all are done.
+	 */
+	public static class AcquireClient extends AbstractActor {
+		private final ActorRef manager;
+		private final RequestChoice choice;
+		private final LatencyHistogram latencies;	// Waits for grant, or null if not recorded
+		private final CountDownLatch done;
+		private int remaining;
+		private long started;						// When the acquisition in progress began
+
+		public AcquireClient(ActorRef manager, RequestChoice choice, Integer ops, LatencyHistogram latencies, CountDownLatch done) {
+			this.manager = manager;
+			this.choice = choice;
+			this.remaining = ops;
+			this.latencies = latencies;
+			this.done = done;
+		}
+
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder()
+					.match(Start.class, s -> acquire())
+					.match(AccessRequestGrantedMsg.class, g -> {
+						if (latencies != null) {
+							latencies.record(System.nanoTime() - started);
+						}
+						AccessRequest r = g.getRequest();
+						manager.tell(new AccessReleaseMsg(new AccessRelease(r.getResourceName(), releaseType(r)), getSelf()), getSelf());
+						next();
+					})
+					.match(AccessRequestDeniedMsg.class, d -> {
+						AccessRequest retry = choice.retry(d.getRequest());
+						if (retry != null) {
+							request(retry);
+						}
+						else {
+							next();
+						}
+					})
+					.build();
+		}
+
+		private void acquire() {
+			started = System.nanoTime();
+			request(choice.first());
+		}
+
+		private void request(AccessRequest request) {
+			choice.sent++;
+			manager.tell(new AccessRequestMsg(request, getSelf()), getSelf());
+		}
+
+		private void next() {
+			if (--remaining > 0) {
+				acquire();
+			}
+			else {
+				done.countDown();
+			}
+		}
+	}
+
+	private int remaining;			// Responses still expected
+	private CountDownLatch done;	// Latch to count down when remaining reaches 0
+	private boolean releaseOnGrant;
+
+	/**
+	 * @param system	Actor system
+	 * @return			New client
+	 */
+	public static ActorRef makeClient(ActorSystem system) {
+		return system.actorOf(Props.create(BenchClientActor.class));
+	}
+
+	/**
+	 * @param system	Actor system
+	 * @return			New actor ignoring all messages
+	 */
+	public static ActorRef makeSink(ActorSystem system) {
+		return system.actorOf(Props.create(Sink.class));
+	}
+
+	/**
+	 * @param system		Actor system
+	 * @param manager		Manager to send requests to
+	 * @param choice		Requests to make, not shared with another client
+	 * @param ops			Acquisitions to make
+	 * @param latencies		Histogram to record the waits for grant in, or null
+	 * @param done			Latch to count down once all acquisitions are done
+	 * @return				New client, started by sending it a Start
+	 */
+	public static ActorRef makeAcquireClient(ActorSystem system, ActorRef manager, RequestChoice choice, int ops,
+			LatencyHistogram latencies, CountDownLatch done) {
+		return system.actorOf(Props.create(AcquireClient.class, manager, choice, ops, latencies, done));
+	}
+
+	/**
+	 * @param r	Request granted
+	 * @return	Type of access the grant gave
+	 */
+	static AccessType releaseType(AccessRequest r) {
+		AccessRequestType type = (r instanceof AnyOfAccessRequest) ? ((AnyOfAccessRequest) r).getMode() : r.getType();
+		switch (type) {
+		case CONCURRENT_READ_BLOCKING:
+		case CONCURRENT_READ_NONBLOCKING:
+			return AccessType.CONCURRENT_READ;
+		case SLOT_BLOCKING:
+		case SLOT_NONBLOCKING:
+			return AccessType.SLOT;
+		default:
+			return AccessType.EXCLUSIVE_WRITE;
+		}
+	}
+
+	/**
+	 * Make client expect responses, and return latch that opens when they have arrived.
+	 *
+	 * @param client			Client
+	 * @param responses			Number of responses
+	 * @param releaseOnGrant	Whether client releases access as soon as it is granted
+	 * @return					Latch
+	 */
+	public static CountDownLatch expect(ActorRef client, int responses, boolean releaseOnGrant) {
+		CountDownLatch latch = new CountDownLatch(1);
+		client.tell(new Expect(responses, latch, releaseOnGrant), ActorRef.noSender());
+		return latch;
+	}
+
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				.match(Expect.class, e -> {
+					remaining = e.responses;
+					done = e.done;
+					releaseOnGrant = e.releaseOnGrant;
+				})
+				.match(AccessRequestGrantedMsg.class, g -> {
+					if (releaseOnGrant) {
+						AccessRequest r = g.getRequest();
+						getSender().tell(new AccessReleaseMsg(new AccessRelease(r.getResourceName(), releaseType(r)), getSelf()), getSelf());
+					}
+					responded();
+				})
+				.match(AccessRequestDeniedMsg.class, d -> responded())
+				.match(ManagementRequestGrantedMsg.class, g -> responded())
+				.match(ManagementRequestDeniedMsg.class, d -> responded())
+				.match(AccessRevokedMsg.class, r -> responded())
+				.build();
+	}
+
+	private void responded() {
+		remaining--;
+		if (remaining == 0 && done != null) {
+			done.countDown();
+		}
+	}
+}
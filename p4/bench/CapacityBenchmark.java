@@ -0,0 +1,159 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of a pool of identical resources, modelled either as slots separate
+ * resources GPU_0 .. GPU_(slots-1) that clients probe one by one with nonblocking
+ * write requests, starting at a random one, until one is granted, or as one capacity
+ * resource GPU with that many slots that clients make one blocking slot request for.
+ * Each client releases its access as soon as it is granted and acquires again.
+ * Throughput is in acquisitions per second, and after the runs the requests sent per
+ * acquisition are printed, over all measured iterations.
+ *
+ * Usage: CapacityBenchmark [warmup=3] [iterations=5] [clients=256] [slots=64]
+ *        [ops=500] [mode=probe,capacity]
+ *
+ * ops is the number of acquisitions made by each client.
+ */
+public class CapacityBenchmark {
+
+	/**
+	 * @param capacity	Whether the pool is one capacity resource rather than separate ones
+	 * @param slots		Slots in pool
+	 * @return			Requests of one client: a blocking slot request for GPU, or a
+	 * 					write request for a random GPU_i, and after a denial for the next one
+	 */
+	static BenchClientActor.RequestChoice choice(boolean capacity, int slots) {
+		if (capacity) {
+			return new BenchClientActor.RequestChoice() {
+				@Override
+				public AccessRequest first() {
+					return new AccessRequest("GPU", AccessRequestType.SLOT_BLOCKING);
+				}
+
+				@Override
+				public AccessRequest retry(AccessRequest denied) {
+					return first();
+				}
+			};
+		}
+		return new BenchClientActor.RequestChoice() {
+			private int probe;					// Resource probed last
+
+			@Override
+			public AccessRequest first() {
+				probe = ThreadLocalRandom.current().nextInt(slots);
+				return new AccessRequest("GPU_" + probe, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+			}
+
+			@Override
+			public AccessRequest retry(AccessRequest denied) {
+				probe = (probe + 1) % slots;
+				return new AccessRequest("GPU_" + probe, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+			}
+		};
+	}
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int clients = Integer.parseInt(h.get("clients", "256"));
+		int slots = Integer.parseInt(h.get("slots", "64"));
+		int ops = Integer.parseInt(h.get("ops", "500"));
+		int warmup = Integer.parseInt(h.get("warmup", "3"));
+		ArrayList<String> summaries = new ArrayList<String>();
+		Harness.printHeader();
+		for (String mode : h.values("mode", "probe,capacity")) {
+			long[] requests = new long[1];
+			h.run("pool mode=" + mode + " slots=" + slots, pool(mode.equals("capacity"), clients, slots, ops, warmup, requests));
+			int iterations = Integer.parseInt(h.get("iterations", "5"));
+			summaries.add(String.format("%-40s %14.2f", "pool mode=" + mode + " slots=" + slots,
+					(double) requests[0] / ((long) clients * ops * iterations)));
+		}
+		System.out.println();
+		System.out.println(String.format("%-40s %14s", "Requests per acquisition", "requests"));
+		for (String s : summaries) {
+			System.out.println(s);
+		}
+	}
+
+	/**
+	 * @param requests	Element 0 has the requests sent in measured iterations added to it
+	 */
+	static Harness.Case pool(boolean capacity, int clientCount, int slots, int ops, int warmup, long[] requests) {
+		return new Harness.Case() {
+			ActorSystem system;
+			CountDownLatch done;
+			ArrayList<ActorRef> clients;
+			ArrayList<BenchClientActor.RequestChoice> choices;
+			int iteration;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("Capacity");
+				ArrayList<Resource> resources = new ArrayList<Resource>();
+				if (capacity) {
+					resources.add(Systems.makeCapacityResource("GPU", slots));
+				}
+				else {
+					resources.addAll(Systems.makeResources("GPU", slots));
+				}
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(1);
+				nodes.add(new NodeSpecification(resources, new ArrayList<UserScript>()));
+				SystemActors actors = Systems.makeSystem(nodes, BenchClientActor.makeSink(system), system);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+				ActorRef manager = actors.getResourceManagers().get(0);
+				done = new CountDownLatch(clientCount);
+				clients = new ArrayList<ActorRef>(clientCount);
+				choices = new ArrayList<BenchClientActor.RequestChoice>(clientCount);
+				for (int i = 0; i < clientCount; i++) {
+					BenchClientActor.RequestChoice choice = choice(capacity, slots);
+					choices.add(choice);
+					clients.add(BenchClientActor.makeAcquireClient(system, manager, choice, ops, null, done));
+				}
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				for (ActorRef c : clients) {
+					c.tell(new BenchClientActor.Start(), ActorRef.noSender());
+				}
+				done.await();
+				if (++iteration > warmup) {
+					for (BenchClientActor.RequestChoice c : choices) {
+						requests[0] += c.getSent();
+					}
+				}
+				return (long) clientCount * ops;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
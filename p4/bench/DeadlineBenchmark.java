@@ -0,0 +1,257 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.TimerWheel;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+/**
+ * Benchmark of request deadlines with n (by default a million) pending at once.
+ *
+ * wheel-expire schedules n deadlines spread evenly over spread milliseconds in a
+ * timer wheel, then advances it tick by tick until all have expired; wheel-cancel
+ * schedules them and cancels them all, as happens when requests are granted before
+ * their deadlines.  Both use a simulated clock, so they measure only the wheel.
+ * akka-cancel does the same as wheel-cancel with one Akka scheduler timer per
+ * deadline, which is what a manager would otherwise need.  manager sends n blocking
+ * requests with timeouts spread over spread milliseconds for resources held by
+ * another client, and waits until every one has been denied with reason TIMEOUT, so
+ * its time includes the longest timeout.
+ *
+ * After the throughput table, the heap retained by n pending deadlines is printed
+ * for the wheel and for Akka timers.
+ *
+ * Usage: DeadlineBenchmark [warmup=2] [iterations=5] [n=1000000] [spread=1000]
+ *        [resources=1000] [bench=wheel-expire,wheel-cancel,akka-cancel,manager]
+ */
+public class DeadlineBenchmark {
+
+	private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int n = Integer.parseInt(h.get("n", "1000000"));
+		long spread = Long.parseLong(h.get("spread", "1000"));
+		int resources = Integer.parseInt(h.get("resources", "1000"));
+		long[] deadlines = deadlines(n, TimeUnit.MILLISECONDS.toNanos(spread));
+		Harness.printHeader();
+		if (h.selected("wheel-expire"))
+			h.run("wheel-expire n=" + n, wheelExpire(deadlines));
+		if (h.selected("wheel-cancel"))
+			h.run("wheel-cancel n=" + n, wheelCancel(deadlines));
+		if (h.selected("akka-cancel"))
+			h.run("akka-cancel n=" + n, akkaCancel(deadlines));
+		if (h.selected("manager"))
+			h.run("manager n=" + n + " resources=" + resources, manager(n, resources, spread));
+		System.out.println();
+		System.out.println(String.format("%-40s %14s", "Retained by pending deadlines", "B/deadline"));
+		System.out.println(String.format("%-40s %14.1f", "wheel n=" + n, wheelRetained(deadlines)));
+		System.out.println(String.format("%-40s %14.1f", "akka n=" + n, akkaRetained(deadlines)));
+	}
+
+	/**
+	 * @param n			Number of deadlines
+	 * @param spread	Latest deadline, in nanoseconds
+	 * @return			Deadlines in random order, evenly spread from 0 to spread
+	 */
+	static long[] deadlines(int n, long spread) {
+		long[] result = new long[n];
+		Random random = new Random(42);
+		for (int i = 0; i < n; i++) {
+			result[i] = (long) ((double) spread * i / n);
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			long t = result[i];
+			result[i] = result[j];
+			result[j] = t;
+		}
+		return result;
+	}
+
+	static Harness.Case wheelExpire(long[] deadlines) {
+		return new Harness.Case() {
+			long expired;
+
+			@Override
+			public long runIteration() {
+				TimerWheel<Integer> wheel = new TimerWheel<Integer>(TICK_NANOS, 0);
+				Integer item = 0;
+				for (long d : deadlines) {
+					wheel.schedule(item, d);
+				}
+				expired = 0;
+				for (long now = 0; !wheel.isEmpty(); now += TICK_NANOS) {
+					wheel.advance(now, i -> expired++);
+				}
+				if (expired != deadlines.length)
+					throw new IllegalStateException("Expired " + expired + " of " + deadlines.length);
+				return deadlines.length;
+			}
+		};
+	}
+
+	static Harness.Case wheelCancel(long[] deadlines) {
+		return new Harness.Case() {
+			@Override
+			public long runIteration() {
+				TimerWheel<Integer> wheel = new TimerWheel<Integer>(TICK_NANOS, 0);
+				ArrayList<TimerWheel.Timer<Integer>> timers = new ArrayList<TimerWheel.Timer<Integer>>(deadlines.length);
+				Integer item = 0;
+				for (long d : deadlines) {
+					timers.add(wheel.schedule(item, d));
+				}
+				for (TimerWheel.Timer<Integer> t : timers) {
+					wheel.cancel(t);
+				}
+				return deadlines.length;
+			}
+		};
+	}
+
+	static Harness.Case akkaCancel(long[] deadlines) {
+		return new Harness.Case() {
+			ActorSystem system;
+			ActorRef sink;
+
+			@Override
+			public void setupIteration() {
+				if (system == null) {
+					system = ActorSystem.create("Deadline");
+					sink = BenchClientActor.makeSink(system);
+				}
+			}
+
+			@Override
+			public long runIteration() {
+				ArrayList<Cancellable> timers = new ArrayList<Cancellable>(deadlines.length);
+				Integer item = 0;
+				for (long d : deadlines) {
+					// offset so that no timer fires before it is cancelled
+					timers.add(system.scheduler().scheduleOnce(FiniteDuration.create(60000 + d / 1000000, TimeUnit.MILLISECONDS),
+							sink, item, system.dispatcher(), ActorRef.noSender()));
+				}
+				for (Cancellable t : timers) {
+					t.cancel();
+				}
+				return deadlines.length;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+				}
+			}
+		};
+	}
+
+	static Harness.Case manager(int n, int resources, long spread) {
+		return new Harness.Case() {
+			ActorSystem system;
+			ActorRef manager;
+			ActorRef client;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("Deadline");
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(1);
+				nodes.add(new NodeSpecification(Systems.makeResources("Res", resources), new ArrayList<UserScript>()));
+				SystemActors actors = Systems.makeSystem(nodes, BenchClientActor.makeSink(system), system);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+				manager = actors.getResourceManagers().get(0);
+				ActorRef holder = BenchClientActor.makeClient(system);
+				CountDownLatch held = BenchClientActor.expect(holder, resources, false);
+				for (int i = 0; i < resources; i++) {
+					manager.tell(new AccessRequestMsg(new AccessRequest("Res_" + i, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING), holder), holder);
+				}
+				held.await();
+				client = BenchClientActor.makeClient(system);
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				CountDownLatch done = BenchClientActor.expect(client, n, false);
+				for (int i = 0; i < n; i++) {
+					long timeoutMs = 1 + spread * i / n;
+					manager.tell(new AccessRequestMsg(new AccessRequest("Res_" + (i % resources),
+							AccessRequestType.EXCLUSIVE_WRITE_BLOCKING, timeoutMs), client), client);
+				}
+				done.await();
+				return n;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return	Bytes of heap per deadline retained while all are pending in a wheel
+	 */
+	static double wheelRetained(long[] deadlines) {
+		long before = Harness.usedHeap();
+		TimerWheel<Integer> wheel = new TimerWheel<Integer>(TICK_NANOS, 0);
+		ArrayList<TimerWheel.Timer<Integer>> timers = new ArrayList<TimerWheel.Timer<Integer>>(deadlines.length);
+		Integer item = 0;
+		for (long d : deadlines) {
+			timers.add(wheel.schedule(item, d));
+		}
+		long after = Harness.usedHeap();
+		if (wheel.size() != timers.size())
+			throw new IllegalStateException();
+		// the list of handles is needed to cancel the timers, so it is counted
+		return (double) (after - before) / deadlines.length;
+	}
+
+	/**
+	 * @return	Bytes of heap per deadline retained while all are pending as Akka timers
+	 */
+	static double akkaRetained(long[] deadlines) throws Exception {
+		ActorSystem system = ActorSystem.create("Deadline");
+		try {
+			ActorRef sink = BenchClientActor.makeSink(system);
+			Integer item = 0;
+			long before = Harness.usedHeap();
+			ArrayList<Cancellable> timers = new ArrayList<Cancellable>(deadlines.length);
+			for (long d : deadlines) {
+				timers.add(system.scheduler().scheduleOnce(FiniteDuration.create(60000 + d / 1000000, TimeUnit.MILLISECONDS),
+						sink, item, system.dispatcher(), ActorRef.noSender()));
+			}
+			long after = Harness.usedHeap();
+			for (Cancellable t : timers) {
+				t.cancel();
+			}
+			return (double) (after - before) / deadlines.length;
+		}
+		finally {
+			Await.result(system.terminate(), Duration.Inf());
+		}
+	}
+}
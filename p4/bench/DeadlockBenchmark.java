@@ -0,0 +1,166 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.messages.DeadlockStatsRequestMsg;
+import cmsc433.p4.messages.DeadlockStatsResponseMsg;
+import cmsc433.p4.messages.UserStartMsg;
+import cmsc433.p4.util.LatencyHistogram;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.SystemOptions;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of deadlock detection.  Pairs of users, one on each of two nodes, each
+ * repeatedly write both resources of their pair, A(p)_0 on the first node and B(p)_0 on
+ * the second, with one blocking request per step, then release both.  With
+ * order=opposite the two users of a pair take the resources in opposite orders and
+ * deadlock often, and every deadlock must be broken by the detector; with order=same
+ * they never deadlock, which measures what detection costs when there is nothing to
+ * find.  Throughput is in pairs acquired (or denied) per second.  Requests are
+ * timestamped, so detection latency is measured from the moment the last request of
+ * a cycle started waiting.
+ *
+ * After the throughput table, for each case the detector's counters are printed, over
+ * all measured iterations: deadlocks broken, detection latency, and the messages and
+ * wait-for edges per round.
+ *
+ * Usage: DeadlockBenchmark [warmup=2] [iterations=5] [pairs=8] [steps=100]
+ *        [interval=5,20,100] [order=opposite,same]
+ *
+ * interval is the time between detection rounds in milliseconds; 0 runs without a
+ * detector, which is only done for order=same, since opposite orders would hang.
+ */
+public class DeadlockBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("cmsc433.p4.timestamps", "true");
+		Harness h = new Harness(args);
+		int pairs = Integer.parseInt(h.get("pairs", "8"));
+		int steps = Integer.parseInt(h.get("steps", "100"));
+		int warmup = Integer.parseInt(h.get("warmup", "2"));
+		ArrayList<String> summaries = new ArrayList<String>();
+		Harness.printHeader();
+		for (String order : h.values("order", "opposite,same")) {
+			for (int interval : h.ints("interval", "5,20,100")) {
+				if (interval == 0 && order.equals("opposite"))
+					continue;
+				String label = "order=" + order + " interval=" + interval;
+				Stats stats = new Stats();
+				h.run("pairs " + label, pairs(pairs, steps, order.equals("opposite"), interval, warmup, stats));
+				summaries.add(stats.summary(label));
+			}
+		}
+		System.out.println();
+		System.out.println(String.format("%-32s %9s %10s %10s %10s %8s %10s %10s", "Detection", "deadlocks",
+				"p50 ms", "p99 ms", "max ms", "rounds", "msgs/round", "edges/round"));
+		for (String s : summaries) {
+			System.out.println(s);
+		}
+	}
+
+	/**
+	 * Detector counters added up over measured iterations.
+	 */
+	static final class Stats {
+		long rounds;
+		long messages;
+		long edges;
+		long victims;
+		final LatencyHistogram latency = new LatencyHistogram();
+
+		void add(DeadlockStatsResponseMsg m) {
+			rounds += m.getRounds();
+			messages += m.getMessages();
+			edges += m.getEdges();
+			victims += m.getVictims();
+			latency.add(m.getDetectionLatency());
+		}
+
+		String summary(String label) {
+			long r = Math.max(1, rounds);
+			return String.format("%-32s %9d %10.2f %10.2f %10.2f %8d %10.2f %10.2f", label, victims,
+					latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6, latency.getMax() / 1e6,
+					rounds, (double) messages / r, (double) edges / r);
+		}
+	}
+
+	/**
+	 * @param first		Resource to take first
+	 * @param second	Resource to take second
+	 * @param steps		Acquisitions
+	 * @return			Script taking both resources, one step each, and releasing them steps times
+	 */
+	static UserScript pairScript(String first, String second, int steps) {
+		return UserScript.fromString("repeat " + steps + " {\nWrite-Request-b " + first + "\nWrite-Request-b " + second
+				+ "\nWrite-Release " + first + " | Write-Release " + second + "\n}\n");
+	}
+
+	static Harness.Case pairs(int pairs, int steps, boolean opposite, int intervalMs, int warmup, Stats stats) {
+		return new Harness.Case() {
+			ActorSystem system;
+			CountDownLatch done;
+			SystemActors actors;
+			int iteration;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("Deadlock");
+				done = new CountDownLatch(1);
+				ActorRef logger = system.actorOf(Props.create(BatchBenchmark.TerminationCounter.class, 2 * pairs, done));
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(2);
+				for (int i = 0; i < 2; i++) {
+					ArrayList<UserScript> scripts = new ArrayList<UserScript>(pairs);
+					ArrayList<Resource> resources = new ArrayList<Resource>(pairs);
+					for (int p = 0; p < pairs; p++) {
+						String a = "A" + p + "_0";
+						String b = "B" + p + "_0";
+						scripts.add((i == 1 && opposite) ? pairScript(b, a, steps) : pairScript(a, b, steps));
+						resources.add(Systems.makeResource((i == 0) ? a : b));
+					}
+					nodes.add(new NodeSpecification(resources, scripts));
+				}
+				actors = Systems.makeSystem(nodes, logger, system, SystemOptions.defaults().withDeadlockDetectionMs(intervalMs));
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				UserStartMsg sMsg = new UserStartMsg();
+				for (ActorRef u : actors.getUsers()) {
+					u.tell(sMsg, ActorRef.noSender());
+				}
+				done.await();
+				if (++iteration > warmup && actors.getDeadlockDetector() != null) {
+					stats.add((DeadlockStatsResponseMsg) Await.result(
+							Patterns.ask(actors.getDeadlockDetector(), new DeadlockStatsRequestMsg(), 60000L), Duration.Inf()));
+				}
+				return (long) actors.getUserCount() * steps;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
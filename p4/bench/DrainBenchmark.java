@@ -0,0 +1,129 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.LatencyStage;
+import cmsc433.p4.enums.ManagementRequestType;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.ManagementRequestMsg;
+import cmsc433.p4.messages.ManagerStatsRequestMsg;
+import cmsc433.p4.messages.ManagerStatsResponseMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.LatencyHistogram;
+import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of disables draining resources.  Each of resources resources is held by a
+ * client, and another client disables them all at once.  With mode=release the holders
+ * release their access hold milliseconds later, and the disables wait for them; with
+ * mode=deadline the holders never release, and the disables have a deadline of hold
+ * milliseconds, at which the manager revokes their access.  Throughput is in resources
+ * disabled per second, from sending the disables until all are granted.
+ *
+ * After the throughput table, percentiles of the drain time the manager measured, from
+ * each disable until its resource was disabled, are printed over all measured
+ * iterations.
+ *
+ * Usage: DrainBenchmark [warmup=3] [iterations=5] [resources=10000] [hold=100]
+ *        [mode=release,deadline]
+ */
+public class DrainBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int resources = Integer.parseInt(h.get("resources", "10000"));
+		long hold = Long.parseLong(h.get("hold", "100"));
+		int warmup = Integer.parseInt(h.get("warmup", "3"));
+		ArrayList<String> summaries = new ArrayList<String>();
+		Harness.printHeader();
+		for (String mode : h.values("mode", "release,deadline")) {
+			LatencyHistogram drains = new LatencyHistogram();
+			String label = "mode=" + mode + " resources=" + resources;
+			h.run(label, drain(mode.equals("deadline"), resources, hold, warmup, drains));
+			summaries.add(String.format("%-40s %10.2f %10.2f %10.2f", label, drains.getValueAtPercentile(50) / 1e6,
+					drains.getValueAtPercentile(99) / 1e6, drains.getMax() / 1e6));
+		}
+		System.out.println();
+		System.out.println(String.format("%-40s %10s %10s %10s", "Drain time", "p50 ms", "p99 ms", "max ms"));
+		for (String s : summaries) {
+			System.out.println(s);
+		}
+	}
+
+	static Harness.Case drain(boolean deadline, int resources, long hold, int warmup, LatencyHistogram drains) {
+		return new Harness.Case() {
+			ActorSystem system;
+			ActorRef manager;
+			ActorRef holder;
+			ActorRef admin;
+			int iteration;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("Drain");
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(1);
+				nodes.add(new NodeSpecification(Systems.makeResources("Res", resources), new ArrayList<UserScript>()));
+				SystemActors actors = Systems.makeSystem(nodes, BenchClientActor.makeSink(system), system);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+				manager = actors.getResourceManagers().get(0);
+				holder = BenchClientActor.makeClient(system);
+				admin = BenchClientActor.makeClient(system);
+				CountDownLatch held = BenchClientActor.expect(holder, resources, false);
+				for (int i = 0; i < resources; i++) {
+					manager.tell(new AccessRequestMsg(new AccessRequest("Res_" + i, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING), holder), holder);
+				}
+				held.await();
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				CountDownLatch done = BenchClientActor.expect(admin, resources, false);
+				for (int i = 0; i < resources; i++) {
+					manager.tell(new ManagementRequestMsg(new ManagementRequest("Res_" + i, ManagementRequestType.DISABLE,
+							deadline ? hold : 0), admin), admin);
+				}
+				if (!deadline) {
+					Thread.sleep(hold);
+					for (int i = 0; i < resources; i++) {
+						manager.tell(new AccessReleaseMsg(new AccessRelease("Res_" + i, AccessType.EXCLUSIVE_WRITE), holder), holder);
+					}
+				}
+				done.await();
+				if (++iteration > warmup) {
+					ManagerStatsResponseMsg m = (ManagerStatsResponseMsg) Await.result(
+							Patterns.ask(manager, new ManagerStatsRequestMsg(), 60000L), Duration.Inf());
+					drains.add(m.getLatencies().get(LatencyStage.DRAIN));
+				}
+				return resources;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
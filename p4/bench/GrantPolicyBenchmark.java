@@ -0,0 +1,146 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.GrantPolicy;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.LatencyHistogram;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.SystemOptions;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of the grant policies under mixed load on one hot resource.  Readers and
+ * writers each repeatedly make a blocking request, release the access as soon as it is
+ * granted, and make the next request; a steady stream of overlapping readers is what
+ * starves writers under the reader-preferring policy.  Throughput is in grants per
+ * second, and after each run the time from request to grant is printed separately
+ * for reads and writes, over all measured iterations.
+ *
+ * Usage: GrantPolicyBenchmark [warmup=3] [iterations=5] [readers=16] [writers=2]
+ *        [ops=2000] [policy=READER_PREFERRING,WRITER_PREFERRING,FIFO,PHASE_FAIR]
+ *
+ * ops is the number of requests made by each reader and each writer.
+ */
+public class GrantPolicyBenchmark {
+
+	private static final String RESOURCE = "Hot_0";
+
+	/**
+	 * @param write	Whether the client is a writer
+	 * @return		Requests of one client: a blocking request for the hot resource, not
+	 * 				retried if denied
+	 */
+	static BenchClientActor.RequestChoice choice(boolean write) {
+		return new BenchClientActor.RequestChoice() {
+			@Override
+			public AccessRequest first() {
+				return new AccessRequest(RESOURCE,
+						write ? AccessRequestType.EXCLUSIVE_WRITE_BLOCKING : AccessRequestType.CONCURRENT_READ_BLOCKING);
+			}
+		};
+	}
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int readers = Integer.parseInt(h.get("readers", "16"));
+		int writers = Integer.parseInt(h.get("writers", "2"));
+		int ops = Integer.parseInt(h.get("ops", "2000"));
+		int warmup = Integer.parseInt(h.get("warmup", "3"));
+		ArrayList<String> summaries = new ArrayList<String>();
+		Harness.printHeader();
+		for (String policy : h.values("policy", "READER_PREFERRING,WRITER_PREFERRING,FIFO,PHASE_FAIR")) {
+			LatencyHistogram reads = new LatencyHistogram();
+			LatencyHistogram writes = new LatencyHistogram();
+			h.run("mixed policy=" + policy, mixed(GrantPolicy.valueOf(policy), readers, writers, ops, warmup, reads, writes));
+			summaries.add(summary(policy, "read", reads));
+			summaries.add(summary(policy, "write", writes));
+		}
+		System.out.println();
+		System.out.println(String.format("%-40s %10s %12s %12s %12s %12s", "Wait for grant (us)", "count", "p50", "p99", "p99.9", "max"));
+		for (String s : summaries) {
+			System.out.println(s);
+		}
+	}
+
+	private static String summary(String policy, String type, LatencyHistogram h) {
+		return String.format("%-40s %10d %12.1f %12.1f %12.1f %12.1f", policy + " " + type, h.getCount(),
+				h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3, h.getValueAtPercentile(99.9) / 1e3, h.getMax() / 1e3);
+	}
+
+	/**
+	 * @param reads		Histogram to add the read latencies of measured iterations to
+	 * @param writes	Histogram to add the write latencies of measured iterations to
+	 */
+	static Harness.Case mixed(GrantPolicy policy, int readers, int writers, int ops, int warmup,
+			LatencyHistogram reads, LatencyHistogram writes) {
+		return new Harness.Case() {
+			ActorSystem system;
+			CountDownLatch done;
+			ArrayList<ActorRef> clients;
+			ArrayList<LatencyHistogram> readLatencies;
+			ArrayList<LatencyHistogram> writeLatencies;
+			int iteration;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("GrantPolicy");
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(1);
+				nodes.add(new NodeSpecification(Systems.makeResources("Hot", 1), new ArrayList<UserScript>()));
+				SystemActors actors = Systems.makeSystem(nodes, BenchClientActor.makeSink(system), system,
+						SystemOptions.defaults().withGrantPolicy(policy));
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+				ActorRef manager = actors.getResourceManagers().get(0);
+				done = new CountDownLatch(readers + writers);
+				clients = new ArrayList<ActorRef>(readers + writers);
+				readLatencies = new ArrayList<LatencyHistogram>(readers);
+				writeLatencies = new ArrayList<LatencyHistogram>(writers);
+				for (int i = 0; i < readers + writers; i++) {
+					boolean write = i >= readers;
+					LatencyHistogram latencies = new LatencyHistogram();
+					(write ? writeLatencies : readLatencies).add(latencies);
+					clients.add(BenchClientActor.makeAcquireClient(system, manager, choice(write), ops, latencies, done));
+				}
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				for (ActorRef c : clients) {
+					c.tell(new BenchClientActor.Start(), ActorRef.noSender());
+				}
+				done.await();
+				if (++iteration > warmup) {
+					for (LatencyHistogram l : readLatencies) {
+						reads.add(l);
+					}
+					for (LatencyHistogram l : writeLatencies) {
+						writes.add(l);
+					}
+				}
+				return (long) (readers + writers) * ops;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,174 @@
+package cmsc433.p4.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal benchmark harness in the style of JMH: each benchmark runs a number of
+ * warmup iterations, then measured iterations, and reports throughput and the
+ * bytes allocated per operation by all threads of the JVM (so allocations made by
+ * actors on dispatcher threads are included).
+ *
+ * Benchmarks take their parameters from "key=value" command-line arguments; a value
+ * may be a comma-separated list, in which case the benchmark is run once for each
+ * value.
+ */
+public class Harness {
+
+	/**
+	 * A benchmark.  Only runIteration() is timed.
+	 */
+	public static interface Case {
+		/**
+		 * Prepare state for the next iteration.
+		 */
+		default void setupIteration() throws Exception {}
+
+		/**
+		 * Run one iteration.
+		 *
+		 * @return	Number of operations performed
+		 */
+		long runIteration() throws Exception;
+
+		/**
+		 * Release resources held by the benchmark.
+		 */
+		default void teardown() throws Exception {}
+	}
+
+	private final Map<String,String> params = new LinkedHashMap<String,String>();
+
+	/**
+	 * @param args	Command-line arguments of the form key=value
+	 */
+	public Harness(String[] args) {
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq <= 0)
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			params.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+	}
+
+	/**
+	 * @param key	Parameter name
+	 * @param def	Default value
+	 * @return		Values of the parameter
+	 */
+	public List<String> values(String key, String def) {
+		return Arrays.asList(params.getOrDefault(key, def).split(","));
+	}
+
+	/**
+	 * @param key	Parameter name
+	 * @param def	Default value
+	 * @return		Values of the parameter as integers
+	 */
+	public List<Integer> ints(String key, String def) {
+		ArrayList<Integer> result = new ArrayList<Integer>();
+		for (String v : values(key, def)) {
+			result.add(Integer.parseInt(v.trim()));
+		}
+		return result;
+	}
+
+	/**
+	 * @param key	Parameter name
+	 * @param def	Default value
+	 * @return		Single value of the parameter
+	 */
+	public String get(String key, String def) {
+		return params.getOrDefault(key, def);
+	}
+
+	/**
+	 * @param name	Benchmark name
+	 * @return		Whether the benchmark was selected with bench=..., or no selection was made
+	 */
+	public boolean selected(String name) {
+		return !params.containsKey("bench") || values("bench", "").contains(name);
+	}
+
+	/**
+	 * @return	Bytes of heap in use after garbage collection
+	 */
+	public static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/**
+	 * Print the header of the result table.
+	 */
+	public static void printHeader() {
+		System.out.println(String.format("%-40s %14s %10s %12s %12s", "Benchmark", "ops/s", "+-", "B/op", "MB/s alloc"));
+	}
+
+	/**
+	 * Run a benchmark and print its result.
+	 *
+	 * @param label	Benchmark name and parameters
+	 * @param c		Benchmark
+	 * @throws Exception
+	 */
+	public void run(String label, Case c) throws Exception {
+		int warmup = Integer.parseInt(get("warmup", "3"));
+		int iterations = Integer.parseInt(get("iterations", "5"));
+		double[] rates = new double[iterations];
+		long totalOps = 0;
+		long totalBytes = 0;
+		long totalNanos = 0;
+		try {
+			for (int i = 0; i < warmup + iterations; i++) {
+				c.setupIteration();
+				long bytes = allocatedBytes();
+				long start = System.nanoTime();
+				long ops = c.runIteration();
+				long nanos = System.nanoTime() - start;
+				bytes = allocatedBytes() - bytes;
+				if (i >= warmup) {
+					rates[i - warmup] = ops * 1e9 / nanos;
+					totalOps += ops;
+					totalBytes += bytes;
+					totalNanos += nanos;
+				}
+			}
+		}
+		finally {
+			c.teardown();
+		}
+		double mean = 0;
+		for (double r : rates) {
+			mean += r / iterations;
+		}
+		double variance = 0;
+		for (double r : rates) {
+			variance += (r - mean) * (r - mean) / Math.max(1, iterations - 1);
+		}
+		System.out.println(String.format("%-40s %14.1f %10.1f %12.1f %12.1f", label, mean, Math.sqrt(variance),
+				(double) totalBytes / Math.max(1, totalOps), totalBytes * 1e3 / Math.max(1, totalNanos)));
+	}
+
+	/**
+	 * @return	Bytes allocated so far by all live threads, or 0 if the JVM cannot tell
+	 */
+	static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return 0;
+		long total = 0;
+		for (long b : ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(bean.getAllThreadIds())) {
+			if (b > 0)
+				total += b;
+		}
+		return total;
+	}
+}
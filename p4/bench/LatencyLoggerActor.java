@@ -0,0 +1,190 @@
+package cmsc433.p4.bench;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.messages.LogMsg;
+import cmsc433.p4.util.LatencyHistogram;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+/**
+ * Logger for load benchmarks.  Instead of keeping the log, it measures the latency of
+ * every request from the time the user sent it to the time a manager logs granting or
+ * denying it, and signals when the expected number of users have terminated.  The send
+ * time comes from the request's timestamps (see RequestTimes), which the first manager
+ * to receive it logs; for a request without timestamps, the latency starts at that
+ * receipt instead, and leaves out the time the request waited in the manager's mailbox.
+ */
+public class LatencyLoggerActor extends AbstractActor {
+
+	/**
+	 * Message telling the logger how many users to wait for.
+	 */
+	public static final class Expect {
+		private final int users;
+		private final CountDownLatch done;
+
+		public Expect(int users, CountDownLatch done) {
+			this.users = users;
+			this.done = done;
+		}
+	}
+
+	/**
+	 * Message asking the logger for its results, which are sent back as a Results message.
+	 */
+	public static final class ResultsRequest {
+	}
+
+	/**
+	 * Latencies and counts collected by the logger.
+	 */
+	public static final class Results {
+		private final LinkedHashMap<String,LatencyHistogram> latencies;
+		private final LinkedHashMap<String,long[]> outcomes;
+		private final long forwarded;
+		private final long events;
+
+		Results(LinkedHashMap<String,LatencyHistogram> latencies, LinkedHashMap<String,long[]> outcomes, long forwarded, long events) {
+			this.latencies = latencies;
+			this.outcomes = outcomes;
+			this.forwarded = forwarded;
+			this.events = events;
+		}
+
+		/**
+		 * @return	Latency in nanoseconds by request type (MANAGEMENT for management requests)
+		 */
+		public LinkedHashMap<String,LatencyHistogram> getLatencies() {
+			return latencies;
+		}
+
+		/**
+		 * @return	Number of grants and denials, in that order, by request type
+		 */
+		public LinkedHashMap<String,long[]> getOutcomes() {
+			return outcomes;
+		}
+
+		/**
+		 * @return	Number of requests and releases forwarded between managers
+		 */
+		public long getForwarded() {
+			return forwarded;
+		}
+
+		/**
+		 * @return	Number of log events received
+		 */
+		public long getEvents() {
+			return events;
+		}
+	}
+
+	public static final String MANAGEMENT = "MANAGEMENT";
+
+	private final IdentityHashMap<Object,Long> received = new IdentityHashMap<Object,Long>();	// Send (or first receipt) of pending requests
+	private final LinkedHashMap<String,LatencyHistogram> latencies = new LinkedHashMap<String,LatencyHistogram>();
+	private final LinkedHashMap<String,long[]> outcomes = new LinkedHashMap<String,long[]>();
+	private long forwarded;
+	private long events;
+	private int terminated;
+	private Expect expect;
+
+	/**
+	 * @param system	Actor system
+	 * @return			New logger
+	 */
+	public static ActorRef makeLogger(ActorSystem system) {
+		return system.actorOf(Props.create(LatencyLoggerActor.class));
+	}
+
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+				.match(LogMsg.class, this::onLog)
+				.match(Expect.class, e -> {
+					expect = e;
+					checkDone();
+				})
+				.match(ResultsRequest.class, r -> {
+					LinkedHashMap<String,LatencyHistogram> copies = new LinkedHashMap<String,LatencyHistogram>();
+					for (String type : latencies.keySet()) {
+						copies.put(type, latencies.get(type).copy());
+					}
+					LinkedHashMap<String,long[]> counts = new LinkedHashMap<String,long[]>();
+					for (String type : outcomes.keySet()) {
+						counts.put(type, outcomes.get(type).clone());
+					}
+					getSender().tell(new Results(copies, counts, forwarded, events), getSelf());
+				})
+				.build();
+	}
+
+	private void onLog(LogMsg msg) {
+		events++;
+		switch (msg.getType()) {
+		case ACCESS_REQUEST_RECEIVED:
+			received.putIfAbsent(msg.getAccessRequest(), msg.getSent() != 0 ? msg.getSent() : msg.getTimestamp());
+			break;
+		case MANAGEMENT_REQUEST_RECEIVED:
+			received.putIfAbsent(msg.getManagementRequest(), msg.getSent() != 0 ? msg.getSent() : msg.getTimestamp());
+			break;
+		case ACCESS_REQUEST_GRANTED:
+			complete(msg.getAccessRequest(), msg.getAccessRequest().getType().toString(), msg.getTimestamp(), 0);
+			break;
+		case ACCESS_REQUEST_DENIED:
+			complete(msg.getAccessRequest(), msg.getAccessRequest().getType().toString(), msg.getTimestamp(), 1);
+			break;
+		case MANAGEMENT_REQUEST_GRANTED:
+			complete(msg.getManagementRequest(), MANAGEMENT, msg.getTimestamp(), 0);
+			break;
+		case MANAGEMENT_REQUEST_DENIED:
+			complete(msg.getManagementRequest(), MANAGEMENT, msg.getTimestamp(), 1);
+			break;
+		case ACCESS_REQUEST_FORWARDED:
+		case ACCESS_RELEASE_FORWARDED:
+		case MANAGEMENT_REQUEST_FORWARDED:
+			forwarded++;
+			break;
+		case USER_TERMINATE:
+			terminated++;
+			checkDone();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Record latency of a request that has been answered.
+	 *
+	 * @param request	Request object
+	 * @param type		Request type
+	 * @param time		Time of answer
+	 * @param outcome	0 if granted, 1 if denied
+	 */
+	private void complete(Object request, String type, long time, int outcome) {
+		Long start = received.remove(request);
+		LatencyHistogram h = latencies.get(type);
+		if (h == null) {
+			h = new LatencyHistogram();
+			latencies.put(type, h);
+			outcomes.put(type, new long[2]);
+		}
+		if (start != null)
+			h.record(time - start);
+		outcomes.get(type)[outcome]++;
+	}
+
+	private void checkDone() {
+		if (expect != null && terminated >= expect.users) {
+			expect.done.countDown();
+			expect = null;
+		}
+	}
+}
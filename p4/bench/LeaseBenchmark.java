@@ -0,0 +1,223 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.LeaseRenewalMsg;
+import cmsc433.p4.messages.ManagerStatsRequestMsg;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.LeaseRenewal;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import cmsc433.p4.util.VirtualUser;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of leases with n (by default a million) holders at once.  Each holder is a
+ * multiplexed user of one client, holding read access to one of resources resources.
+ *
+ * grant sends the n read requests without leases, and grant-lease with leases long
+ * enough not to run out, and both wait until all are granted, so the difference is the
+ * cost of starting a lease.  renew has the n holders hold leases and renews them all;
+ * a stats request sent after the renewals marks when the manager has handled them.
+ * expire grants leases spread evenly over spread milliseconds and waits until every
+ * one has been revoked, so its time includes the longest lease.
+ *
+ * After the throughput table, the heap retained by each holder with and without a
+ * lease is printed, and for comparison the heap one Akka scheduler timer retains,
+ * which is what each lease would otherwise need.
+ *
+ * Usage: LeaseBenchmark [warmup=3] [iterations=5] [n=1000000] [resources=100000]
+ *        [spread=1000] [bench=grant,grant-lease,renew,expire]
+ */
+public class LeaseBenchmark {
+
+	private static final long LONG_LEASE_MS = 600000;	// Outlasts any run
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int n = Integer.parseInt(h.get("n", "1000000"));
+		int resources = Integer.parseInt(h.get("resources", "100000"));
+		long spread = Long.parseLong(h.get("spread", "1000"));
+		Harness.printHeader();
+		if (h.selected("grant"))
+			h.run("grant n=" + n, grant(n, resources, false));
+		if (h.selected("grant-lease"))
+			h.run("grant-lease n=" + n, grant(n, resources, true));
+		if (h.selected("renew"))
+			h.run("renew n=" + n, renew(n, resources));
+		if (h.selected("expire"))
+			h.run("expire n=" + n + " spread=" + spread, expire(n, resources, spread));
+		System.out.println();
+		System.out.println(String.format("%-40s %14s", "Retained per holder", "B/holder"));
+		System.out.println(String.format("%-40s %14.1f", "no lease n=" + n, retained(n, resources, false)));
+		System.out.println(String.format("%-40s %14.1f", "lease n=" + n, retained(n, resources, true)));
+		System.out.println(String.format("%-40s %14.1f", "akka timer n=" + n,
+				DeadlineBenchmark.akkaRetained(DeadlineBenchmark.deadlines(n, TimeUnit.MILLISECONDS.toNanos(spread)))));
+	}
+
+	/**
+	 * A system with one manager owning the resources, and a client to stand in for the
+	 * holders.
+	 */
+	static final class Setup {
+		final ActorSystem system;
+		final ActorRef manager;
+		final ActorRef client;
+
+		Setup(int resources) {
+			system = ActorSystem.create("Lease");
+			ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(1);
+			nodes.add(new NodeSpecification(Systems.makeResources("Res", resources), new ArrayList<UserScript>()));
+			SystemActors actors = Systems.makeSystem(nodes, BenchClientActor.makeSink(system), system);
+			if (actors == null)
+				throw new IllegalStateException("Setup failed");
+			manager = actors.getResourceManagers().get(0);
+			client = BenchClientActor.makeClient(system);
+		}
+
+		/**
+		 * Send a read request for each holder, the ith with a lease of leaseMs(i)
+		 * milliseconds, or none if it is 0.
+		 */
+		void request(int n, int resources, java.util.function.IntToLongFunction leaseMs) {
+			for (int i = 0; i < n; i++) {
+				AccessRequest r = new AccessRequest("Res_" + (i % resources), AccessRequestType.CONCURRENT_READ_BLOCKING, 0, leaseMs.applyAsLong(i));
+				manager.tell(new AccessRequestMsg(r, client, null, new VirtualUser(client, i)), client);
+			}
+		}
+
+		/**
+		 * Grant every holder a read, and wait until all have been granted.
+		 */
+		void hold(int n, int resources, long leaseMs) throws Exception {
+			CountDownLatch held = BenchClientActor.expect(client, n, false);
+			request(n, resources, i -> leaseMs);
+			held.await();
+		}
+
+		void terminate() throws Exception {
+			Await.result(system.terminate(), Duration.Inf());
+		}
+	}
+
+	static Harness.Case grant(int n, int resources, boolean lease) {
+		return new Harness.Case() {
+			Setup setup;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				setup = new Setup(resources);
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				setup.hold(n, resources, lease ? LONG_LEASE_MS : 0);
+				return n;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (setup != null) {
+					setup.terminate();
+					setup = null;
+				}
+			}
+		};
+	}
+
+	static Harness.Case renew(int n, int resources) {
+		return new Harness.Case() {
+			Setup setup;
+
+			@Override
+			public void setupIteration() throws Exception {
+				if (setup == null) {
+					setup = new Setup(resources);
+					setup.hold(n, resources, LONG_LEASE_MS);
+				}
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				for (int i = 0; i < n; i++) {
+					setup.manager.tell(new LeaseRenewalMsg(new LeaseRenewal("Res_" + (i % resources), 0), setup.client,
+							new VirtualUser(setup.client, i)), setup.client);
+				}
+				Await.result(Patterns.ask(setup.manager, new ManagerStatsRequestMsg(), 600000L), Duration.Inf());
+				return n;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				if (setup != null) {
+					setup.terminate();
+				}
+			}
+		};
+	}
+
+	static Harness.Case expire(int n, int resources, long spread) {
+		return new Harness.Case() {
+			Setup setup;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				setup = new Setup(resources);
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				// a grant and a revocation for each holder
+				CountDownLatch done = BenchClientActor.expect(setup.client, 2 * n, false);
+				setup.request(n, resources, i -> 1 + spread * i / n);
+				done.await();
+				return n;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (setup != null) {
+					setup.terminate();
+					setup = null;
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return	Bytes of heap per holder retained by the system while n hold reads, with
+	 * 			or without leases
+	 */
+	static double retained(int n, int resources, boolean lease) throws Exception {
+		Setup setup = new Setup(resources);
+		try {
+			long before = Harness.usedHeap();
+			setup.hold(n, resources, lease ? LONG_LEASE_MS : 0);
+			long after = Harness.usedHeap();
+			return (double) (after - before) / n;
+		}
+		finally {
+			setup.terminate();
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package cmsc433.p4.bench;
+
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.enums.LatencyStage;
+import cmsc433.p4.messages.ManagerStatsRequestMsg;
+import cmsc433.p4.messages.ManagerStatsResponseMsg;
+import cmsc433.p4.messages.ResourceStatsRequestMsg;
+import cmsc433.p4.messages.ResourceStatsResponseMsg;
+import cmsc433.p4.messages.UserStartMsg;
+import cmsc433.p4.util.LatencyHistogram;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.ResourceStats;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.SystemOptions;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.WorkloadGenerator;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * End-to-end load benchmark.  Builds a system with Systems.makeSystem from a generated
+ * workload, runs it to completion, and reports request throughput and latency
+ * percentiles per access-request type and for management requests as JSON.
+ *
+ * Latency is measured from the time a user sends a request to the time a manager grants
+ * or denies it, using the timestamps requests carry (see RequestTimes) and those of the
+ * log events; the latency of each stage of request processing, merged over all
+ * managers, is reported as well.  With timestamps=false, requests are not timestamped,
+ * and latency starts when a manager first takes the request from its mailbox.
+ * The top most contended resources of the whole system are listed with their counters.
+ *
+ * Usage: LoadBenchmark [nodes=4] [users=10] [resources=10] [ops=100] [zipf=1.0]
+ *        [read=0.5] [blocking=0.5] [local=0.5] [churn=0.0] [think=0] [seed=1]
+ *        [timestamps=true] [top=5] [ranges=false] [multiplex=false]
+ *        [window=1] [batch=false] [ownerCache=false]
+ *        [out=file]
+ *
+ * users and resources are per node, and ops is per user.  With ranges=true, each node
+ * declares its resources as a range.  With multiplex=true, each node's users are run by
+ * one UserDriverActor, and with window=W > 1, users pipeline up to W steps.  With batch=true, users
+ * batch the access requests of each step, and with ownerCache=true, they send requests
+ * for remote resources straight to owners they have learned.  forwardsPerRequest is
+ * the number of requests and releases forwarded between managers per request answered.
+ * Without out=, the JSON result is printed on standard output.
+ */
+public class LoadBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		// Must be set before RequestTimes is loaded
+		System.setProperty("cmsc433.p4.timestamps", h.get("timestamps", "true"));
+		WorkloadGenerator workload = new WorkloadGenerator()
+				.setNodes(Integer.parseInt(h.get("nodes", "4")))
+				.setUsersPerNode(Integer.parseInt(h.get("users", "10")))
+				.setResourcesPerNode(Integer.parseInt(h.get("resources", "10")))
+				.setOperationsPerUser(Long.parseLong(h.get("ops", "100")))
+				.setZipfExponent(Double.parseDouble(h.get("zipf", "1.0")))
+				.setReadRatio(Double.parseDouble(h.get("read", "0.5")))
+				.setBlockingRatio(Double.parseDouble(h.get("blocking", "0.5")))
+				.setLocalRatio(Double.parseDouble(h.get("local", "0.5")))
+				.setChurnRatio(Double.parseDouble(h.get("churn", "0.0")))
+				.setThinkTimeMeanMs(Double.parseDouble(h.get("think", "0")))
+				.setSeed(Long.parseLong(h.get("seed", "1")))
+				.setResourceRanges(Boolean.parseBoolean(h.get("ranges", "false")));
+
+		ActorSystem system = ActorSystem.create("LoadBenchmark");
+		StringBuilder json = new StringBuilder();
+		try {
+			ActorRef logger = LatencyLoggerActor.makeLogger(system);
+			long setupStart = System.nanoTime();
+			ArrayList<NodeSpecification> nodes = workload.makeNodes();
+			SystemOptions options = SystemOptions.defaults()
+					.withMultiplexedUsers(Boolean.parseBoolean(h.get("multiplex", "false")))
+					.withPipelineWindow(Integer.parseInt(h.get("window", "1")))
+					.withBatchedRequests(Boolean.parseBoolean(h.get("batch", "false")))
+					.withOwnerCache(Boolean.parseBoolean(h.get("ownerCache", "false")));
+			SystemActors actors = Systems.makeSystem(nodes, logger, system, options);
+			long setupNanos = System.nanoTime() - setupStart;
+
+			ArrayList<ActorRef> users = actors.getUsers();
+			CountDownLatch done = new CountDownLatch(1);
+			logger.tell(new LatencyLoggerActor.Expect(actors.getUserCount(), done), ActorRef.noSender());
+			long start = System.nanoTime();
+			UserStartMsg sMsg = new UserStartMsg();
+			for (ActorRef u : users) {
+				u.tell(sMsg, ActorRef.noSender());
+			}
+			done.await();
+			long elapsed = System.nanoTime() - start;
+
+			LatencyLoggerActor.Results results = (LatencyLoggerActor.Results) Await.result(
+					Patterns.ask(logger, new LatencyLoggerActor.ResultsRequest(), 60000L), Duration.Inf());
+
+			long answered = 0;
+			for (long[] outcome : results.getOutcomes().values()) {
+				answered += outcome[0] + outcome[1];
+			}
+			json.append("{\n  \"benchmark\": \"load\",\n  \"params\": {");
+			appendParams(json, args);
+			json.append("},\n");
+			json.append("  \"setupMs\": ").append(setupNanos / 1e6).append(",\n");
+			json.append("  \"elapsedMs\": ").append(elapsed / 1e6).append(",\n");
+			json.append("  \"requests\": ").append(answered).append(",\n");
+			json.append("  \"throughput\": ").append(answered * 1e9 / elapsed).append(",\n");
+			json.append("  \"forwarded\": ").append(results.getForwarded()).append(",\n");
+			json.append("  \"forwardsPerRequest\": ").append((double) results.getForwarded() / answered).append(",\n");
+			json.append("  \"logEvents\": ").append(results.getEvents()).append(",\n");
+			json.append("  \"latencyUs\": {");
+			String sep = "\n";
+			for (Map.Entry<String,LatencyHistogram> e : results.getLatencies().entrySet()) {
+				long[] outcome = results.getOutcomes().get(e.getKey());
+				json.append(sep).append("    \"").append(e.getKey()).append("\": ");
+				appendHistogram(json, e.getValue(), outcome[0], outcome[1]);
+				sep = ",\n";
+			}
+			json.append("\n  },\n");
+
+			EnumMap<LatencyStage,LatencyHistogram> stages = new EnumMap<LatencyStage,LatencyHistogram>(LatencyStage.class);
+			long duplicates = 0;
+			for (ActorRef m : actors.getResourceManagers()) {
+				ManagerStatsResponseMsg stats = (ManagerStatsResponseMsg) Await.result(
+						Patterns.ask(m, new ManagerStatsRequestMsg(), 60000L), Duration.Inf());
+				for (Map.Entry<LatencyStage,LatencyHistogram> e : stats.getLatencies().entrySet()) {
+					stages.computeIfAbsent(e.getKey(), k -> new LatencyHistogram()).add(e.getValue());
+				}
+				duplicates += stats.getDuplicatesDropped();
+			}
+			json.append("  \"duplicatesDropped\": ").append(duplicates).append(",\n");
+			json.append("  \"stagesUs\": {");
+			sep = "\n";
+			for (Map.Entry<LatencyStage,LatencyHistogram> e : stages.entrySet()) {
+				json.append(sep).append("    \"").append(e.getKey()).append("\": ");
+				appendHistogram(json, e.getValue());
+				sep = ",\n";
+			}
+			json.append("\n  },\n");
+
+			int top = Integer.parseInt(h.get("top", "5"));
+			ArrayList<ResourceStats> hot = new ArrayList<ResourceStats>();
+			for (ActorRef m : actors.getResourceManagers()) {
+				ResourceStatsResponseMsg stats = (ResourceStatsResponseMsg) Await.result(
+						Patterns.ask(m, new ResourceStatsRequestMsg(top), 60000L), Duration.Inf());
+				hot.addAll(stats.getStats());
+			}
+			hot.sort((a, b) -> Long.compare(b.getWaitNanos(), a.getWaitNanos()));
+			json.append("  \"hotResources\": [");
+			sep = "\n";
+			for (ResourceStats r : hot.subList(0, Math.min(top, hot.size()))) {
+				json.append(sep).append("    {\"name\": \"").append(r.getName())
+					.append("\", \"grants\": ").append(r.getTotalGrants())
+					.append(", \"denials\": ").append(r.getTotalDenials())
+					.append(", \"peakQueue\": ").append(r.getPeakQueueDepth())
+					.append(", \"waitMs\": ").append(r.getWaitNanos() / 1e6)
+					.append(", \"holdMs\": ").append(r.getHoldNanos() / 1e6)
+					.append(", \"drains\": ").append(r.getDrains())
+					.append(", \"drainMs\": ").append(r.getDrainNanos() / 1e6)
+					.append('}');
+				sep = ",\n";
+			}
+			json.append("\n  ]\n}\n");
+		}
+		finally {
+			system.terminate();
+		}
+
+		String out = h.get("out", null);
+		if (out == null) {
+			System.out.print(json);
+		}
+		else {
+			try (Writer w = new FileWriter(out)) {
+				w.write(json.toString());
+			}
+		}
+	}
+
+	private static void appendParams(StringBuilder json, String[] args) {
+		String sep = "";
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			json.append(sep).append('"').append(arg, 0, eq).append("\": \"").append(arg.substring(eq + 1)).append('"');
+			sep = ", ";
+		}
+	}
+
+	/**
+	 * Append histogram of nanosecond values of requests as JSON object in microseconds.
+	 */
+	static void appendHistogram(StringBuilder json, LatencyHistogram h, long granted, long denied) {
+		json.append("{\"granted\": ").append(granted)
+			.append(", \"denied\": ").append(denied)
+			.append(", ");
+		appendPercentiles(json, h);
+		json.append('}');
+	}
+
+	/**
+	 * Append histogram of nanosecond values as JSON object in microseconds.
+	 */
+	static void appendHistogram(StringBuilder json, LatencyHistogram h) {
+		json.append('{');
+		appendPercentiles(json, h);
+		json.append('}');
+	}
+
+	private static void appendPercentiles(StringBuilder json, LatencyHistogram h) {
+		json.append("\"count\": ").append(h.getCount())
+			.append(", \"mean\": ").append(h.getMean() / 1e3)
+			.append(", \"p50\": ").append(h.getValueAtPercentile(50) / 1e3)
+			.append(", \"p99\": ").append(h.getValueAtPercentile(99) / 1e3)
+			.append(", \"p99.9\": ").append(h.getValueAtPercentile(99.9) / 1e3)
+			.append(", \"max\": ").append(h.getMax() / 1e3);
+	}
+}
@@ -0,0 +1,340 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.ManagementRequestType;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.ManagementRequestMsg;
+import cmsc433.p4.messages.WhoHasResourceRequestMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.PoisonPill;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Microbenchmarks of the resource-manager hot paths and of script handling.
+ *
+ * Managers are driven directly by benchmark clients, with logging sent to an actor
+ * that drops it, so the numbers reflect the manager's own work plus mailbox passes.
+ *
+ * Usage: ManagerBenchmarks [bench=name,...] [warmup=3] [iterations=5] [ops=N]
+ *        [resources=N,...] [readers=N,...] [waiters=N,...] [managers=N,...] [lines=N,...]
+ *
+ * Benchmarks:
+ *   grant-release		non-blocking write granted, then released, round-robin over resources
+ *   deny				non-blocking write denied because the resource is held
+ *   process-blocking	readers release a resource with queued writers, which are then
+ *   					granted and release one at a time (processBlocking on every release)
+ *   disable-cycle		readers are granted, a disable waits for them to release
+ *   					(checkDisabled on every release), then the resource is enabled again
+ *   discovery			first access to a remote resource, found by asking every manager
+ *   script-parse		parsing script text
+ *   script-iterate		stepping through a script with a repeat block
+ */
+public class ManagerBenchmarks {
+
+	private static ActorSystem system;
+	private static ActorRef logger;
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		system = ActorSystem.create("Benchmarks");
+		logger = BenchClientActor.makeSink(system);
+		int ops = Integer.parseInt(h.get("ops", "10000"));
+		Harness.printHeader();
+		try {
+			if (h.selected("grant-release"))
+				for (int resources : h.ints("resources", "1,100"))
+					h.run("grant-release resources=" + resources, grantRelease(resources, ops));
+			if (h.selected("deny"))
+				for (int resources : h.ints("resources", "1,100"))
+					h.run("deny resources=" + resources, deny(resources, ops));
+			if (h.selected("process-blocking"))
+				for (int readers : h.ints("readers", "1,16"))
+					for (int waiters : h.ints("waiters", "10,100,1000"))
+						h.run("process-blocking readers=" + readers + " waiters=" + waiters, processBlocking(readers, waiters));
+			if (h.selected("disable-cycle"))
+				for (int readers : h.ints("readers", "1,16"))
+					h.run("disable-cycle readers=" + readers, disableCycle(readers, Math.max(1, ops / 10)));
+			if (h.selected("discovery"))
+				for (int managers : h.ints("managers", "2,16"))
+					h.run("discovery managers=" + managers, discovery(managers, Math.max(1, ops / 10)));
+			if (h.selected("script-parse"))
+				for (int lines : h.ints("lines", "10,1000"))
+					h.run("script-parse lines=" + lines, scriptParse(lines, ops));
+			if (h.selected("script-iterate"))
+				h.run("script-iterate", scriptIterate(ops));
+		}
+		finally {
+			system.terminate();
+		}
+	}
+
+	/**
+	 * Create managers, the last of which owns the given number of resources Res_0 ...
+	 */
+	private static ArrayList<ActorRef> makeManagers(int managers, int resources) {
+		ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>();
+		for (int i = 0; i < managers; i++) {
+			ArrayList<Resource> local = (i == managers - 1) ? Systems.makeResources("Res", resources) : new ArrayList<Resource>();
+			nodes.add(new NodeSpecification(local, new ArrayList<UserScript>()));
+		}
+		SystemActors actors = Systems.makeSystem(nodes, logger, system);
+		return actors.getResourceManagers();
+	}
+
+	private static void stopAll(ArrayList<ActorRef> actors) {
+		for (ActorRef a : actors) {
+			a.tell(PoisonPill.getInstance(), ActorRef.noSender());
+		}
+	}
+
+	/**
+	 * Wait until manager has processed every message sent to it so far by this thread.
+	 */
+	private static void sync(ActorRef manager) throws Exception {
+		Await.result(Patterns.ask(manager, new WhoHasResourceRequestMsg("sync"), 60000L), Duration.Inf());
+	}
+
+	private static void await(CountDownLatch latch) throws InterruptedException {
+		latch.await();
+	}
+
+	private static void request(ActorRef manager, ActorRef client, String name, AccessRequestType type) {
+		manager.tell(new AccessRequestMsg(new AccessRequest(name, type), client), client);
+	}
+
+	private static void release(ActorRef manager, ActorRef client, String name, AccessType type) {
+		manager.tell(new AccessReleaseMsg(new AccessRelease(name, type), client), client);
+	}
+
+	private static Harness.Case grantRelease(final int resources, final int ops) {
+		final ArrayList<ActorRef> managers = makeManagers(1, resources);
+		final ActorRef manager = managers.get(0);
+		final ActorRef client = BenchClientActor.makeClient(system);
+		return new Harness.Case() {
+			@Override
+			public long runIteration() throws Exception {
+				int rounds = Math.max(1, ops / resources);
+				for (int r = 0; r < rounds; r++) {
+					CountDownLatch done = BenchClientActor.expect(client, resources, true);
+					for (int i = 0; i < resources; i++) {
+						request(manager, client, "Res_" + i, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+					}
+					await(done);
+				}
+				return (long) rounds * resources;
+			}
+
+			@Override
+			public void teardown() {
+				stopAll(managers);
+				client.tell(PoisonPill.getInstance(), ActorRef.noSender());
+			}
+		};
+	}
+
+	private static Harness.Case deny(final int resources, final int ops) throws Exception {
+		final ArrayList<ActorRef> managers = makeManagers(1, resources);
+		final ActorRef manager = managers.get(0);
+		final ActorRef holder = BenchClientActor.makeClient(system);
+		final ActorRef client = BenchClientActor.makeClient(system);
+		CountDownLatch held = BenchClientActor.expect(holder, resources, false);
+		for (int i = 0; i < resources; i++) {
+			request(manager, holder, "Res_" + i, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+		}
+		await(held);
+		return new Harness.Case() {
+			@Override
+			public long runIteration() throws Exception {
+				CountDownLatch done = BenchClientActor.expect(client, ops, false);
+				for (int i = 0; i < ops; i++) {
+					request(manager, client, "Res_" + (i % resources), AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING);
+				}
+				await(done);
+				return ops;
+			}
+
+			@Override
+			public void teardown() {
+				stopAll(managers);
+				holder.tell(PoisonPill.getInstance(), ActorRef.noSender());
+				client.tell(PoisonPill.getInstance(), ActorRef.noSender());
+			}
+		};
+	}
+
+	private static Harness.Case processBlocking(final int readers, final int waiters) {
+		final ArrayList<ActorRef> managers = makeManagers(1, 1);
+		final ActorRef manager = managers.get(0);
+		final ArrayList<ActorRef> readerClients = new ArrayList<ActorRef>();
+		final ArrayList<ActorRef> waiterClients = new ArrayList<ActorRef>();
+		for (int i = 0; i < readers; i++) {
+			readerClients.add(BenchClientActor.makeClient(system));
+		}
+		for (int i = 0; i < waiters; i++) {
+			waiterClients.add(BenchClientActor.makeClient(system));
+		}
+		return new Harness.Case() {
+			private CountDownLatch granted;
+
+			@Override
+			public void setupIteration() throws Exception {
+				// Readers take the resource, then writers queue up behind them
+				for (ActorRef r : readerClients) {
+					CountDownLatch done = BenchClientActor.expect(r, 1, false);
+					request(manager, r, "Res_0", AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+					await(done);
+				}
+				granted = new CountDownLatch(waiters);
+				for (ActorRef w : waiterClients) {
+					w.tell(new BenchClientActor.Expect(1, granted, true), ActorRef.noSender());
+					request(manager, w, "Res_0", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+				}
+				sync(manager);
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				for (ActorRef r : readerClients) {
+					release(manager, r, "Res_0", AccessType.CONCURRENT_READ);
+				}
+				granted.await();
+				return waiters;
+			}
+
+			@Override
+			public void teardown() {
+				stopAll(managers);
+				stopAll(readerClients);
+				stopAll(waiterClients);
+			}
+		};
+	}
+
+	private static Harness.Case disableCycle(final int readers, final int cycles) {
+		final ArrayList<ActorRef> managers = makeManagers(1, 1);
+		final ActorRef manager = managers.get(0);
+		final ActorRef admin = BenchClientActor.makeClient(system);
+		final ArrayList<ActorRef> readerClients = new ArrayList<ActorRef>();
+		for (int i = 0; i < readers; i++) {
+			readerClients.add(BenchClientActor.makeClient(system));
+		}
+		return new Harness.Case() {
+			@Override
+			public long runIteration() throws Exception {
+				for (int c = 0; c < cycles; c++) {
+					CountDownLatch held = new CountDownLatch(readers);
+					for (ActorRef r : readerClients) {
+						r.tell(new BenchClientActor.Expect(1, held, false), ActorRef.noSender());
+						request(manager, r, "Res_0", AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+					}
+					await(held);
+					CountDownLatch disabled = BenchClientActor.expect(admin, 1, false);
+					manager.tell(new ManagementRequestMsg(new ManagementRequest("Res_0", ManagementRequestType.DISABLE), admin), admin);
+					for (ActorRef r : readerClients) {
+						release(manager, r, "Res_0", AccessType.CONCURRENT_READ);
+					}
+					await(disabled);
+					CountDownLatch enabled = BenchClientActor.expect(admin, 1, false);
+					manager.tell(new ManagementRequestMsg(new ManagementRequest("Res_0", ManagementRequestType.ENABLE), admin), admin);
+					await(enabled);
+				}
+				return cycles;
+			}
+
+			@Override
+			public void teardown() {
+				stopAll(managers);
+				stopAll(readerClients);
+				admin.tell(PoisonPill.getInstance(), ActorRef.noSender());
+			}
+		};
+	}
+
+	private static Harness.Case discovery(final int managerCount, final int resources) {
+		final ActorRef client = BenchClientActor.makeClient(system);
+		return new Harness.Case() {
+			private ArrayList<ActorRef> managers;
+
+			@Override
+			public void setupIteration() {
+				// Fresh managers, so that no resource has been discovered yet
+				if (managers != null)
+					stopAll(managers);
+				managers = makeManagers(managerCount, resources);
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				ActorRef first = managers.get(0);
+				CountDownLatch done = BenchClientActor.expect(client, resources, false);
+				for (int i = 0; i < resources; i++) {
+					request(first, client, "Res_" + i, AccessRequestType.CONCURRENT_READ_NONBLOCKING);
+				}
+				await(done);
+				return resources;
+			}
+
+			@Override
+			public void teardown() {
+				if (managers != null)
+					stopAll(managers);
+				client.tell(PoisonPill.getInstance(), ActorRef.noSender());
+			}
+		};
+	}
+
+	private static Harness.Case scriptParse(final int lines, final int ops) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			switch (i % 4) {
+			case 0: text.append("write-request-b Printer_").append(i).append(" | read-request-n Scanner_0\n"); break;
+			case 1: text.append("sleep 0\n"); break;
+			case 2: text.append("write-release Printer_").append(i - 2).append(" | read-release Scanner_0\n"); break;
+			default: text.append("disable Printer_").append(i).append('\n'); break;
+			}
+		}
+		final String script = text.toString();
+		return new Harness.Case() {
+			@Override
+			public long runIteration() {
+				int rounds = Math.max(1, ops / lines);
+				for (int r = 0; r < rounds; r++) {
+					UserScript.fromString(script);
+				}
+				return (long) rounds * lines;
+			}
+		};
+	}
+
+	private static Harness.Case scriptIterate(final int ops) {
+		final UserScript script = UserScript.fromString("repeat 1000000000 {\nwrite-request-b Printer_[0..99] | read-request-n Scanner_0\nwrite-release Printer_[0..99]\n}\n");
+		return new Harness.Case() {
+			@Override
+			public long runIteration() throws Exception {
+				UserScript s = script;
+				long sink = 0;
+				for (int i = 0; i < ops; i++) {
+					sink += s.firstStep().size();
+					s = s.rest();
+				}
+				return sink > 0 ? ops : 0;
+			}
+		};
+	}
+}
@@ -0,0 +1,110 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.messages.UserStartMsg;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of acquiring two resources on different nodes, either with two blocking
+ * requests in consecutive steps (holding the first while waiting for the second) or
+ * with one all-of request.  Every user on node i repeatedly writes Printer(i)_0 and
+ * Scanner(i+1)_0, then releases both, so each resource is contended by the users of
+ * two nodes.  The sequential users take the resources in name order, which is the
+ * only way they avoid deadlock; the all-of request takes them in that order for
+ * them.  Throughput is in pairs acquired per second.
+ *
+ * Usage: MultiResourceBenchmark [warmup=3] [iterations=5] [nodes=4] [users=4]
+ *        [steps=200] [mode=sequential,all-of]
+ *
+ * users is per node, and steps is the number of acquisitions per user.
+ */
+public class MultiResourceBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int nodes = Integer.parseInt(h.get("nodes", "4"));
+		int users = Integer.parseInt(h.get("users", "4"));
+		int steps = Integer.parseInt(h.get("steps", "200"));
+		Harness.printHeader();
+		for (String mode : h.values("mode", "sequential,all-of"))
+			h.run("pair mode=" + mode, pairs(nodes, users, steps, mode.equals("all-of")));
+	}
+
+	/**
+	 * @param node		Node of user
+	 * @param nodes		Number of nodes
+	 * @param steps		Acquisitions
+	 * @param allOf		Whether to acquire both resources with one request
+	 * @return			Script acquiring and releasing a printer and a scanner steps times
+	 */
+	static UserScript pairScript(int node, int nodes, int steps, boolean allOf) {
+		String printer = "Printer" + node + "_0";
+		String scanner = "Scanner" + ((node + 1) % nodes) + "_0";
+		String acquire = allOf ? "Write-Request-b " + printer + " & Write-Request-b " + scanner + "\n"
+				: "Write-Request-b " + printer + "\nWrite-Request-b " + scanner + "\n";
+		return UserScript.fromString("repeat " + steps + " {\n" + acquire
+				+ "Write-Release " + printer + " | Write-Release " + scanner + "\n}\n");
+	}
+
+	static Harness.Case pairs(int nodeCount, int users, int steps, boolean allOf) {
+		return new Harness.Case() {
+			ActorSystem system;
+			CountDownLatch done;
+			SystemActors actors;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("MultiResource");
+				done = new CountDownLatch(1);
+				ActorRef logger = system.actorOf(Props.create(BatchBenchmark.TerminationCounter.class, nodeCount * users, done));
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(nodeCount);
+				for (int i = 0; i < nodeCount; i++) {
+					ArrayList<UserScript> scripts = new ArrayList<UserScript>(users);
+					for (int u = 0; u < users; u++) {
+						scripts.add(pairScript(i, nodeCount, steps, allOf));
+					}
+					ArrayList<Resource> resources = Systems.makeResources("Printer" + i, 1);
+					resources.addAll(Systems.makeResources("Scanner" + i, 1));
+					nodes.add(new NodeSpecification(resources, scripts));
+				}
+				actors = Systems.makeSystem(nodes, logger, system);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				UserStartMsg sMsg = new UserStartMsg();
+				for (ActorRef u : actors.getUsers()) {
+					u.tell(sMsg, ActorRef.noSender());
+				}
+				done.await();
+				return (long) actors.getUserCount() * steps;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
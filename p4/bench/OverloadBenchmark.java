@@ -0,0 +1,238 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestDeniedMsg;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.messages.ManagerStatsRequestMsg;
+import cmsc433.p4.messages.ManagerStatsResponseMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.LatencyHistogram;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.SystemOptions;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.pattern.Patterns;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of admission control.  A manager owns a hot resource Hot_0, held by one
+ * client for the whole run, and cold resources Cold_0 .. Cold_(cold-1).  A thread
+ * floods the manager with up to flood blocking write requests for Hot_0, faster than it
+ * can handle them, and once a tenth are sent, a prober makes probes nonblocking write requests for the cold
+ * resources one after another, releasing each as it is granted, and retrying any
+ * denied OVERLOADED.  Throughput is in probes per second.
+ *
+ * mode=unbounded has no limits, so the flood queues in the manager's mailbox and then
+ * in the wait queue of Hot_0, and each probe waits behind it.  mode=queue limits the
+ * wait queue of each resource to limit requests, and mode=mailbox also bounds the
+ * manager's mailbox to limit messages, so that the flood is denied as it arrives.
+ *
+ * After the throughput table, the probe latency and the requests denied OVERLOADED by
+ * the manager and by its mailbox are printed, over all measured iterations.
+ *
+ * Usage: OverloadBenchmark [warmup=3] [iterations=5] [flood=200000] [probes=200]
+ *        [cold=64] [limit=1000] [mode=unbounded,queue,mailbox]
+ */
+public class OverloadBenchmark {
+
+	/**
+	 * Message starting the prober.
+	 */
+	static final class Start {
+	}
+
+	/**
+	 * Client timing probes of the cold resources.  The benchmark reads the histogram and
+	 * retry count only after the latch has opened.
+	 */
+	public static class Prober extends AbstractActor {
+		private final ActorRef manager;
+		private final int cold;
+		private final LatencyHistogram latency;
+		private final long[] retries;
+		private final CountDownLatch done;
+		private int remaining;
+		private long started;
+
+		public Prober(ActorRef manager, Integer cold, Integer probes, LatencyHistogram latency, long[] retries, CountDownLatch done) {
+			this.manager = manager;
+			this.cold = cold;
+			this.remaining = probes;
+			this.latency = latency;
+			this.retries = retries;
+			this.done = done;
+		}
+
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder()
+					.match(Start.class, s -> probe())
+					.match(AccessRequestGrantedMsg.class, g -> {
+						latency.record(System.nanoTime() - started);
+						manager.tell(new AccessReleaseMsg(new AccessRelease(g.getRequest().getResourceName(),
+								AccessType.EXCLUSIVE_WRITE), getSelf()), getSelf());
+						if (--remaining > 0) {
+							probe();
+						}
+						else {
+							done.countDown();
+						}
+					})
+					.match(AccessRequestDeniedMsg.class, d -> {
+						if (d.getReason() != AccessRequestDenialReason.OVERLOADED)
+							throw new IllegalStateException("Probe denied: " + d);
+						retries[0]++;
+						request(d.getRequest().getResourceName());
+					})
+					.build();
+		}
+
+		private void probe() {
+			started = System.nanoTime();
+			request("Cold_" + (remaining % cold));
+		}
+
+		private void request(String name) {
+			manager.tell(new AccessRequestMsg(new AccessRequest(name, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING), getSelf()), getSelf());
+		}
+	}
+
+	/**
+	 * Counters added up over measured iterations.
+	 */
+	static final class Stats {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final long[] retries = new long[1];
+		long overloaded;
+		long mailboxRejected;
+
+		String summary(String label) {
+			return String.format("%-32s %10.2f %10.2f %10.2f %10d %12d %12d", label, latency.getValueAtPercentile(50) / 1e6,
+					latency.getValueAtPercentile(99) / 1e6, latency.getMax() / 1e6, retries[0], overloaded, mailboxRejected);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int flood = Integer.parseInt(h.get("flood", "200000"));
+		int probes = Integer.parseInt(h.get("probes", "200"));
+		int cold = Integer.parseInt(h.get("cold", "64"));
+		int limit = Integer.parseInt(h.get("limit", "1000"));
+		int warmup = Integer.parseInt(h.get("warmup", "3"));
+		ArrayList<String> summaries = new ArrayList<String>();
+		Harness.printHeader();
+		for (String mode : h.values("mode", "unbounded,queue,mailbox")) {
+			SystemOptions options = SystemOptions.defaults();
+			if (!mode.equals("unbounded")) {
+				options = options.withMaxQueuedPerResource(limit);
+			}
+			if (mode.equals("mailbox")) {
+				options = options.withManagerMailboxCapacity(limit);
+			}
+			Stats stats = new Stats();
+			String label = "mode=" + mode + " flood=" + flood;
+			h.run(label, overload(options, flood, probes, cold, warmup, stats));
+			summaries.add(stats.summary(label));
+		}
+		System.out.println();
+		System.out.println(String.format("%-32s %10s %10s %10s %10s %12s %12s", "Probes", "p50 ms", "p99 ms", "max ms",
+				"retries", "overloaded", "mailbox"));
+		for (String s : summaries) {
+			System.out.println(s);
+		}
+	}
+
+	static Harness.Case overload(SystemOptions options, int flood, int probes, int cold, int warmup, Stats stats) {
+		return new Harness.Case() {
+			ActorSystem system;
+			ActorRef manager;
+			ActorRef sink;
+			ActorRef prober;
+			CountDownLatch done;
+			LatencyHistogram latency;
+			long[] retries;
+			int iteration;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = Systems.makeActorSystem("Overload", options);
+				ArrayList<Resource> resources = Systems.makeResources("Cold", cold);
+				resources.add(Systems.makeResource("Hot_0"));
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(1);
+				nodes.add(new NodeSpecification(resources, new ArrayList<UserScript>()));
+				sink = BenchClientActor.makeSink(system);
+				SystemActors actors = Systems.makeSystem(nodes, sink, system, options);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+				manager = actors.getResourceManagers().get(0);
+				ActorRef holder = BenchClientActor.makeClient(system);
+				CountDownLatch held = BenchClientActor.expect(holder, 1, false);
+				manager.tell(new AccessRequestMsg(new AccessRequest("Hot_0", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING), holder), holder);
+				held.await();
+				done = new CountDownLatch(1);
+				latency = new LatencyHistogram();
+				retries = new long[1];
+				prober = system.actorOf(Props.create(Prober.class, manager, cold, probes, latency, retries, done));
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				CountDownLatch flooding = new CountDownLatch(1);
+				Thread flooder = new Thread(() -> {
+					AccessRequest hot = new AccessRequest("Hot_0", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
+					for (int i = 0; i < flood && done.getCount() > 0; i++) {
+						// a message each, since a manager queues a message only once
+						manager.tell(new AccessRequestMsg(hot, sink), sink);
+						if (i == flood / 10) {
+							flooding.countDown();
+						}
+					}
+					flooding.countDown();
+				});
+				flooder.start();
+				// probe once the flood is under way, while it goes on
+				flooding.await();
+				prober.tell(new Start(), ActorRef.noSender());
+				done.await();
+				flooder.join();
+				if (++iteration > warmup) {
+					ManagerStatsResponseMsg m = (ManagerStatsResponseMsg) Await.result(
+							Patterns.ask(manager, new ManagerStatsRequestMsg(), 60000L), Duration.Inf());
+					stats.latency.add(latency);
+					stats.retries[0] += retries[0];
+					stats.overloaded += m.getOverloaded();
+					stats.mailboxRejected += m.getMailboxRejected();
+				}
+				return probes;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
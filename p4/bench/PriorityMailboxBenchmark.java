@@ -0,0 +1,202 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.messages.AccessReleaseMsg;
+import cmsc433.p4.messages.AccessRequestGrantedMsg;
+import cmsc433.p4.messages.AccessRequestMsg;
+import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.LatencyHistogram;
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.SystemOptions;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of manager mailbox priority under overload.  A holder writes Hot_0, and
+ * waiters clients queue blocking read requests for it.  Then flood nonblocking write
+ * requests for cold resources Cold_0 .. Cold_(cold-1) are sent to the manager at once,
+ * and right after them the holder's release, which unblocks every waiter.  With
+ * mode=fifo the manager takes its messages in arrival order, so the release waits
+ * behind the flood; with mode=priority its mailbox gives releases priority over new
+ * requests.  Throughput is in waiters granted per second, from the start of the flood
+ * until the last waiter is granted.
+ *
+ * After the throughput table, percentiles of the waiters' wait time, from sending their
+ * requests until they were granted, and of the time from sending the release until
+ * each waiter was granted, are printed over all measured iterations.
+ *
+ * Usage: PriorityMailboxBenchmark [warmup=3] [iterations=5] [waiters=100]
+ *        [flood=200000] [cold=64] [mode=fifo,priority]
+ */
+public class PriorityMailboxBenchmark {
+
+	/**
+	 * Message starting a waiter.
+	 */
+	static final class Start {
+	}
+
+	/**
+	 * Client waiting to read Hot_0.  It records when it sent its request and when it was
+	 * granted, which the benchmark reads only after the latch has opened.
+	 */
+	public static class Waiter extends AbstractActor {
+		private final ActorRef manager;
+		private final long[] sent;
+		private final long[] granted;
+		private final int index;
+		private final CountDownLatch started;	// Counted down once the request is sent
+		private final CountDownLatch done;
+
+		public Waiter(ActorRef manager, long[] sent, long[] granted, Integer index, CountDownLatch started, CountDownLatch done) {
+			this.manager = manager;
+			this.sent = sent;
+			this.granted = granted;
+			this.index = index;
+			this.started = started;
+			this.done = done;
+		}
+
+		@Override
+		public Receive createReceive() {
+			return receiveBuilder()
+					.match(Start.class, s -> {
+						sent[index] = System.nanoTime();
+						manager.tell(new AccessRequestMsg(new AccessRequest("Hot_0", AccessRequestType.CONCURRENT_READ_BLOCKING),
+								getSelf()), getSelf());
+						started.countDown();
+					})
+					.match(AccessRequestGrantedMsg.class, g -> {
+						granted[index] = System.nanoTime();
+						done.countDown();
+					})
+					.build();
+		}
+	}
+
+	/**
+	 * Latencies added up over measured iterations.
+	 */
+	static final class Stats {
+		final LatencyHistogram wait = new LatencyHistogram();
+		final LatencyHistogram afterRelease = new LatencyHistogram();
+
+		String summary(String label) {
+			return String.format("%-32s %10.2f %10.2f %10.2f %12.2f %12.2f", label, wait.getValueAtPercentile(50) / 1e6,
+					wait.getValueAtPercentile(99) / 1e6, wait.getMax() / 1e6,
+					afterRelease.getValueAtPercentile(50) / 1e6, afterRelease.getValueAtPercentile(99) / 1e6);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int waiters = Integer.parseInt(h.get("waiters", "100"));
+		int flood = Integer.parseInt(h.get("flood", "200000"));
+		int cold = Integer.parseInt(h.get("cold", "64"));
+		int warmup = Integer.parseInt(h.get("warmup", "3"));
+		ArrayList<String> summaries = new ArrayList<String>();
+		Harness.printHeader();
+		for (String mode : h.values("mode", "fifo,priority")) {
+			SystemOptions options = SystemOptions.defaults().withPriorityManagerMailbox(mode.equals("priority"));
+			Stats stats = new Stats();
+			String label = "mode=" + mode + " flood=" + flood;
+			h.run(label, handoff(options, waiters, flood, cold, warmup, stats));
+			summaries.add(stats.summary(label));
+		}
+		System.out.println();
+		System.out.println(String.format("%-32s %10s %10s %10s %12s %12s", "Waiters", "wait p50", "wait p99", "wait max",
+				"release p50", "release p99"));
+		for (String s : summaries) {
+			System.out.println(s);
+		}
+		System.out.println("(milliseconds)");
+	}
+
+	static Harness.Case handoff(SystemOptions options, int waiterCount, int flood, int cold, int warmup, Stats stats) {
+		return new Harness.Case() {
+			ActorSystem system;
+			ActorRef manager;
+			ActorRef sink;
+			ActorRef holder;
+			CountDownLatch done;
+			long[] sent;
+			long[] granted;
+			long released;
+			int iteration;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = Systems.makeActorSystem("Priority", options);
+				ArrayList<Resource> resources = Systems.makeResources("Cold", cold);
+				resources.add(Systems.makeResource("Hot_0"));
+				ArrayList<NodeSpecification> nodes = new ArrayList<NodeSpecification>(1);
+				nodes.add(new NodeSpecification(resources, new ArrayList<UserScript>()));
+				sink = BenchClientActor.makeSink(system);
+				SystemActors actors = Systems.makeSystem(nodes, sink, system, options);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+				manager = actors.getResourceManagers().get(0);
+				holder = BenchClientActor.makeClient(system);
+				CountDownLatch held = BenchClientActor.expect(holder, 1, false);
+				manager.tell(new AccessRequestMsg(new AccessRequest("Hot_0", AccessRequestType.EXCLUSIVE_WRITE_BLOCKING), holder), holder);
+				held.await();
+				done = new CountDownLatch(waiterCount);
+				sent = new long[waiterCount];
+				granted = new long[waiterCount];
+				CountDownLatch started = new CountDownLatch(waiterCount);
+				for (int i = 0; i < waiterCount; i++) {
+					system.actorOf(Props.create(Waiter.class, manager, sent, granted, i, started, done)).tell(new Start(), ActorRef.noSender());
+				}
+				started.await();
+				// a request sent after the waiters' is answered only once they are all queued
+				ActorRef probe = BenchClientActor.makeClient(system);
+				CountDownLatch answered = BenchClientActor.expect(probe, 1, true);
+				manager.tell(new AccessRequestMsg(new AccessRequest("Cold_0", AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING), probe), probe);
+				answered.await();
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				for (int i = 0; i < flood; i++) {
+					manager.tell(new AccessRequestMsg(new AccessRequest("Cold_" + (i % cold), AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING), sink), sink);
+				}
+				released = System.nanoTime();
+				manager.tell(new AccessReleaseMsg(new AccessRelease("Hot_0", AccessType.EXCLUSIVE_WRITE), holder), holder);
+				done.await();
+				if (++iteration > warmup) {
+					for (int i = 0; i < waiterCount; i++) {
+						stats.wait.record(granted[i] - sent[i]);
+						stats.afterRelease.record(granted[i] - released);
+					}
+				}
+				return waiterCount;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,98 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.ResourceRange;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.SystemOptions;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.UserScript;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of system startup: the time Systems.makeSystem takes to create and set up
+ * all managers and users.  Each iteration builds the system in a fresh actor system,
+ * with logging sent to an actor that drops it; users are created but never started.
+ * Throughput is in nodes set up per second.
+ *
+ * Usage: StartupBenchmark [warmup=3] [iterations=5] [nodes=N,...] [resources=N,...]
+ *        [users=N] [chunk=N,...] [ranges=false,true]
+ *
+ * nodes defaults to 10,100,1000, resources (per node) to 10,10000, users (per node)
+ * to 4, and chunk (resources per registration message) to 10000.  With ranges=true,
+ * each node declares its resources as one range instead.  After each benchmark, the
+ * heap used by the last system built is printed.
+ */
+public class StartupBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int users = Integer.parseInt(h.get("users", "4"));
+		Harness.printHeader();
+		for (String ranges : h.values("ranges", "false"))
+			for (int nodes : h.ints("nodes", "10,100,1000"))
+				for (int resources : h.ints("resources", "10,10000"))
+					for (int chunk : h.ints("chunk", "10000"))
+						h.run("startup nodes=" + nodes + " resources=" + resources + " chunk=" + chunk + " ranges=" + ranges,
+								startup(nodes, resources, users, Boolean.parseBoolean(ranges), SystemOptions.defaults().withResourceChunkSize(chunk)));
+	}
+
+	static Harness.Case startup(int nodeCount, int resources, int users, boolean ranges, SystemOptions options) {
+		return new Harness.Case() {
+			ActorSystem system;
+			ArrayList<NodeSpecification> nodes;
+			ActorRef logger;
+
+			@Override
+			public void setupIteration() throws Exception {
+				terminate();
+				system = ActorSystem.create("Startup");
+				logger = BenchClientActor.makeSink(system);
+				// Resources are registered once, so each iteration needs fresh ones
+				nodes = new ArrayList<NodeSpecification>(nodeCount);
+				for (int i = 0; i < nodeCount; i++) {
+					ArrayList<UserScript> scripts = new ArrayList<UserScript>(users);
+					for (int u = 0; u < users; u++) {
+						scripts.add(new UserScript());
+					}
+					if (ranges) {
+						ArrayList<ResourceRange> range = new ArrayList<ResourceRange>(1);
+						range.add(Systems.makeResourceRange("Node" + i, resources));
+						nodes.add(new NodeSpecification(new ArrayList<Resource>(), range, scripts));
+					}
+					else {
+						nodes.add(new NodeSpecification(Systems.makeResources("Node" + i, resources), scripts));
+					}
+				}
+			}
+
+			@Override
+			public long runIteration() throws Exception {
+				SystemActors actors = Systems.makeSystem(nodes, logger, system, options);
+				if (actors == null)
+					throw new IllegalStateException("Setup failed");
+				return nodeCount;
+			}
+
+			@Override
+			public void teardown() throws Exception {
+				// Drop the node specs, so that only the managers' state is measured
+				nodes = null;
+				System.out.println(String.format("  heap used after setup: %.1f MB", Harness.usedHeap() / 1e6));
+				terminate();
+			}
+
+			void terminate() throws Exception {
+				if (system != null) {
+					Await.result(system.terminate(), Duration.Inf());
+					system = null;
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,60 @@
+package cmsc433.p4.bench;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.util.NodeSpecification;
+import cmsc433.p4.util.SystemActors;
+import cmsc433.p4.util.SystemOptions;
+import cmsc433.p4.util.Systems;
+import cmsc433.p4.util.WorkloadGenerator;
+import akka.actor.ActorSystem;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Benchmark of the memory each user costs: builds a system from a generated workload,
+ * once with a UserActor per user and once with each node's users multiplexed onto a
+ * UserDriverActor, and prints the heap taken by Systems.makeSystem per user.  The
+ * scripts themselves are built beforehand and are not counted.  Users are created but
+ * never started.
+ *
+ * Usage: UserMemoryBenchmark [users=10000,100000] [nodes=4] [ops=10]
+ *        [multiplex=false,true]
+ *
+ * users is the total over all nodes, and ops is per user.
+ */
+public class UserMemoryBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		Harness h = new Harness(args);
+		int nodeCount = Integer.parseInt(h.get("nodes", "4"));
+		long ops = Long.parseLong(h.get("ops", "10"));
+		System.out.println(String.format("%-40s %12s %12s %12s", "Benchmark", "setup ms", "heap MB", "B/user"));
+		for (int users : h.ints("users", "10000,100000"))
+			for (String multiplex : h.values("multiplex", "false,true")) {
+				ArrayList<NodeSpecification> nodes = new WorkloadGenerator()
+						.setNodes(nodeCount)
+						.setUsersPerNode(users / nodeCount)
+						.setOperationsPerUser(ops)
+						.makeNodes();
+				SystemOptions options = SystemOptions.defaults()
+						.withMultiplexedUsers(Boolean.parseBoolean(multiplex))
+						.withSetupTimeoutMs(600000);
+				ActorSystem system = ActorSystem.create("UserMemory");
+				try {
+					long before = Harness.usedHeap();
+					long start = System.nanoTime();
+					SystemActors actors = Systems.makeSystem(nodes, BenchClientActor.makeSink(system), system, options);
+					long setupNanos = System.nanoTime() - start;
+					if (actors == null)
+						throw new IllegalStateException("Setup failed");
+					long heap = Harness.usedHeap() - before;
+					System.out.println(String.format("%-40s %12.1f %12.1f %12d", "users=" + users + " multiplex=" + multiplex,
+							setupNanos / 1e6, heap / 1e6, heap / actors.getUserCount()));
+				}
+				finally {
+					Await.result(system.terminate(), Duration.Inf());
+				}
+			}
+	}
+}
@@ -9,5 +9,13 @@ package cmsc433.p4.enums;
 public enum AccessRequestDenialReason {
 	RESOURCE_BUSY,		// Used for responses to non-blocking requests
 	RESOURCE_DISABLED,	// Used if resource is present but disabled
-	RESOURCE_NOT_FOUND	// Used if resource is not present
+	RESOURCE_NOT_FOUND,	// Used if resource is not present
+	STALE_ROUTE,		// Used if a request sent directly to a manager is not for one of its resources;
+						// the user should send it to its local manager instead
+	DEADLOCK,			// Used if a blocking request was chosen to break a cycle of waiting users
+	TIMEOUT,			// Used if a blocking request with a timeout waited that long without being granted
+	WRONG_REQUEST_TYPE,	// Used for slot requests for ordinary resources, and read or write requests for
+						// capacity resources
+	OVERLOADED			// Used if the wait queue of the resource, the requests waiting in its manager, or
+						// the manager's mailbox are at their limit; the user should back off and retry
 }
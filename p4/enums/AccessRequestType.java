@@ -11,4 +11,8 @@ public enum AccessRequestType {
 	CONCURRENT_READ_NONBLOCKING,	// Concurrent read access, nonblocking request
 	EXCLUSIVE_WRITE_BLOCKING,		// Exclusive write access, blocking request
 	EXCLUSIVE_WRITE_NONBLOCKING,	// Exclusive write access, nonblocking request
+	ALL_OF_BLOCKING,				// Access to several resources at once, all or nothing (see MultiAccessRequest)
+	SLOT_BLOCKING,					// One slot of a capacity resource, blocking request
+	SLOT_NONBLOCKING,				// One slot of a capacity resource, nonblocking request
+	ANY_OF,							// Access to whichever resource of a group is free (see AnyOfAccessRequest)
 }
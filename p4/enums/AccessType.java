@@ -2,5 +2,6 @@ package cmsc433.p4.enums;
 
 public enum AccessType {
 	CONCURRENT_READ,
-	EXCLUSIVE_WRITE
+	EXCLUSIVE_WRITE,
+	SLOT			// One slot of a capacity resource
 }
@@ -0,0 +1,14 @@
+package cmsc433.p4.enums;
+
+/**
+ * Enum type for the policies a resource manager can use to decide which blocking
+ * requests for a resource are granted, and in what order.  Whatever the policy, a user
+ * already holding access to a resource is granted further compatible access at once,
+ * so that it never waits for a request that waits for it.
+ */
+public enum GrantPolicy {
+	READER_PREFERRING,	// Grant any compatible request; readers can starve writers
+	WRITER_PREFERRING,	// Readers wait while a writer is waiting; writers can starve readers
+	FIFO,				// Grant in arrival order, adjacent readers together
+	PHASE_FAIR			// Alternate reader and writer phases while both are waiting
+}
@@ -0,0 +1,17 @@
+package cmsc433.p4.enums;
+
+/**
+ * Stages of request processing whose latency resource managers measure.  All but
+ * DISCOVERY and DRAIN are only measured when requests carry timestamps (see RequestTimes).
+ * 
+ */
+public enum LatencyStage {
+	LOCAL_MAILBOX,		// Creation by user until arrival at user's local manager
+	FORWARDING,			// Arrival at local manager until arrival at owner, including discovery
+	DISCOVERY,			// Asking other managers who has a resource until the answer is known
+	WAIT_QUEUE,			// Time spent among the blocked requests of a resource
+	OWNER_SERVICE,		// Arrival at owner until response to an access request
+	ACCESS_TOTAL,		// Creation until response to an access request
+	MANAGEMENT_TOTAL,	// Creation until response to a management request
+	DRAIN				// First disable request waiting for holders until the resource is disabled
+}
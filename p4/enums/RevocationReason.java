@@ -0,0 +1,10 @@
+package cmsc433.p4.enums;
+
+/**
+ * Enum type for reasons that a manager might revoke access it has granted.
+ */
+public enum RevocationReason {
+	LEASE_EXPIRED,		// Used if the lease on the access ran out without being renewed
+	DRAIN_DEADLINE		// Used if a disable with a deadline was still waiting for holders to release
+						// when the deadline passed
+}
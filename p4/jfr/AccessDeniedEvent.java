@@ -0,0 +1,38 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Access request denied.
+ */
+@Name("cmsc433.p4.AccessDenied")
+@Label("Access Denied")
+@Category({"Resource Management", "Access"})
+@Description("Access request denied.")
+public class AccessDeniedEvent extends Event {
+	@Label("Resource")
+	String resource;
+
+	@Label("Request Type")
+	String requestType;
+
+	@Label("Reason")
+	String reason;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(String resource, String requestType, String reason) {
+		AccessDeniedEvent e = new AccessDeniedEvent();
+		if (e.shouldCommit()) {
+			e.resource = resource;
+			e.requestType = requestType;
+			e.reason = reason;
+			e.commit();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Access request granted by the manager owning the resource.
+ */
+@Name("cmsc433.p4.AccessGranted")
+@Label("Access Granted")
+@Category({"Resource Management", "Access"})
+@Description("Access request granted by the manager owning the resource.")
+public class AccessGrantedEvent extends Event {
+	@Label("Resource")
+	String resource;
+
+	@Label("Request Type")
+	String requestType;
+
+	@Label("Wait Time")
+	@Description("Time spent in the wait queue, if the request was timestamped and queued")
+	@Timespan
+	long waitTime;
+
+	@Label("Holders")
+	@Description("Accesses held after the grant")
+	int holders;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(String resource, String requestType, long waitTime, int holders) {
+		AccessGrantedEvent e = new AccessGrantedEvent();
+		if (e.shouldCommit()) {
+			e.resource = resource;
+			e.requestType = requestType;
+			e.waitTime = waitTime;
+			e.holders = holders;
+			e.commit();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Blocking access request queued because the resource is held.
+ */
+@Name("cmsc433.p4.AccessQueued")
+@Label("Access Queued")
+@Category({"Resource Management", "Access"})
+@Description("Blocking access request queued because the resource is held.")
+public class AccessQueuedEvent extends Event {
+	@Label("Resource")
+	String resource;
+
+	@Label("Request Type")
+	String requestType;
+
+	@Label("Queue Depth")
+	@Description("Requests waiting, including this one")
+	int queueDepth;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(String resource, String requestType, int queueDepth) {
+		AccessQueuedEvent e = new AccessQueuedEvent();
+		if (e.shouldCommit()) {
+			e.resource = resource;
+			e.requestType = requestType;
+			e.queueDepth = queueDepth;
+			e.commit();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Access released at the manager owning the resource.
+ */
+@Name("cmsc433.p4.AccessReleased")
+@Label("Access Released")
+@Category({"Resource Management", "Access"})
+@Description("Access released at the manager owning the resource.")
+public class AccessReleasedEvent extends Event {
+	@Label("Resource")
+	String resource;
+
+	@Label("Access Type")
+	String accessType;
+
+	@Label("Holders")
+	@Description("Accesses still held after the release")
+	int holders;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(String resource, String accessType, int holders) {
+		AccessReleasedEvent e = new AccessReleasedEvent();
+		if (e.shouldCommit()) {
+			e.resource = resource;
+			e.accessType = accessType;
+			e.holders = holders;
+			e.commit();
+		}
+	}
+}
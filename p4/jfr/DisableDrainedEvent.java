@@ -0,0 +1,41 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Resource disabled once all access was released.
+ */
+@Name("cmsc433.p4.DisableDrained")
+@Label("Disable Drained")
+@Category({"Resource Management", "Management"})
+@Description("Resource disabled once all access was released.")
+public class DisableDrainedEvent extends Event {
+	@Label("Resource")
+	String resource;
+
+	@Label("Drain Time")
+	@Description("Time from the first disable request to disabling")
+	@Timespan
+	long drainTime;
+
+	@Label("Disable Requests")
+	int requests;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(String resource, long drainTime, int requests) {
+		DisableDrainedEvent e = new DisableDrainedEvent();
+		if (e.shouldCommit()) {
+			e.resource = resource;
+			e.drainTime = drainTime;
+			e.requests = requests;
+			e.commit();
+		}
+	}
+}
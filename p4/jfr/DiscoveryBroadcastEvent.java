@@ -0,0 +1,40 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Manager asked every other manager who owns a resource.
+ */
+@Name("cmsc433.p4.DiscoveryBroadcast")
+@Label("Discovery Broadcast")
+@Category({"Resource Management", "Routing"})
+@Description("Manager asked every other manager who owns a resource.")
+public class DiscoveryBroadcastEvent extends Event {
+	@Label("Resource")
+	String resource;
+
+	@Label("Managers")
+	@Description("Managers asked")
+	int managers;
+
+	@Label("Waiting")
+	@Description("Requests waiting on the discovery, including the one that started it")
+	int waiting;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(String resource, int managers, int waiting) {
+		DiscoveryBroadcastEvent e = new DiscoveryBroadcastEvent();
+		if (e.shouldCommit()) {
+			e.resource = resource;
+			e.managers = managers;
+			e.waiting = waiting;
+			e.commit();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Discovery of the owner of a resource finished.
+ */
+@Name("cmsc433.p4.DiscoveryResolved")
+@Label("Discovery Resolved")
+@Category({"Resource Management", "Routing"})
+@Description("Discovery of the owner of a resource finished.")
+public class DiscoveryResolvedEvent extends Event {
+	@Label("Resource")
+	String resource;
+
+	@Label("Found")
+	boolean found;
+
+	@Label("Discovery Time")
+	@Timespan
+	long discoveryTime;
+
+	@Label("Waiting")
+	@Description("Requests that waited on the discovery")
+	int waiting;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(String resource, boolean found, long discoveryTime, int waiting) {
+		DiscoveryResolvedEvent e = new DiscoveryResolvedEvent();
+		if (e.shouldCommit()) {
+			e.resource = resource;
+			e.found = found;
+			e.discoveryTime = discoveryTime;
+			e.waiting = waiting;
+			e.commit();
+		}
+	}
+}
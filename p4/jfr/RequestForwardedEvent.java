@@ -0,0 +1,41 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import akka.actor.ActorRef;
+
+/**
+ * Request or release forwarded to the manager owning the resource, one event per hop.
+ */
+@Name("cmsc433.p4.RequestForwarded")
+@Label("Request Forwarded")
+@Category({"Resource Management", "Routing"})
+@Description("Request or release forwarded to the manager owning the resource, one event per hop.")
+public class RequestForwardedEvent extends Event {
+	@Label("Resource")
+	String resource;
+
+	@Label("Message")
+	@Description("Access request, access release or management request")
+	String message;
+
+	@Label("Target")
+	@Description("Path of the manager forwarded to")
+	String target;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(String resource, String message, ActorRef target) {
+		RequestForwardedEvent e = new RequestForwardedEvent();
+		if (e.shouldCommit()) {
+			e.resource = resource;
+			e.message = message;
+			e.target = target.path().toString();
+			e.commit();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package cmsc433.p4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * User sent the requests of a script step and received every response.
+ */
+@Name("cmsc433.p4.UserStep")
+@Label("User Step")
+@Category({"Resource Management", "User"})
+@Description("User sent the requests of a script step and received every response.")
+public class UserStepEvent extends Event {
+	@Label("Requests")
+	@Description("Requests in the step that needed a response")
+	int requests;
+
+	@Label("Step Time")
+	@Description("Time from sending the requests to the last response")
+	@Timespan
+	long stepTime;
+
+	/**
+	 * Commit an event, if the event type is enabled.
+	 */
+	public static void emit(int requests, long stepTime) {
+		UserStepEvent e = new UserStepEvent();
+		if (e.shouldCommit()) {
+			e.requests = requests;
+			e.stepTime = stepTime;
+			e.commit();
+		}
+	}
+}
@@ -0,0 +1,14 @@
+/**
+ * Java Flight Recorder events for resource managers and users, so that contention can
+ * be correlated with GC and CPU activity in a single recording.  Enable them with, for
+ * example, -XX:StartFlightRecording:filename=p4.jfr; they are in the
+ * "Resource Management" category.
+ *
+ * Each event class has a static emit() method that allocates the event and fills it in
+ * only if shouldCommit() is true.  When the event type is disabled, the check is
+ * constant-folded and the allocation removed by escape analysis, so instrumentation
+ * costs next to nothing.  Durations are passed in as fields, computed from timestamps
+ * the managers already keep, rather than by keeping event objects alive across
+ * messages.
+ */
+package cmsc433.p4.jfr;
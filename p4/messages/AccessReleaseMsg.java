@@ -1,6 +1,7 @@
 package cmsc433.p4.messages;
 
 import cmsc433.p4.util.AccessRelease;
+import cmsc433.p4.util.VirtualUser;
 import akka.actor.ActorRef;
 
 /**
@@ -12,10 +13,16 @@ import akka.actor.ActorRef;
 public class AccessReleaseMsg {
 	private final AccessRelease access_release;
 	private final ActorRef sender;
+	private final VirtualUser virtualUser;	// User releasing access, or null if sender is the user
 
 	public AccessReleaseMsg(AccessRelease access_release, ActorRef sender) {
+		this(access_release, sender, null);
+	}
+
+	public AccessReleaseMsg(AccessRelease access_release, ActorRef sender, VirtualUser virtualUser) {
 		this.access_release = access_release;
 		this.sender = sender;
+		this.virtualUser = virtualUser;
 	}
 	
 	public AccessRelease getAccessRelease() {
@@ -26,6 +33,17 @@ public class AccessReleaseMsg {
 		return sender;
 	}
 	
+	public VirtualUser getVirtualUser() {
+		return virtualUser;
+	}
+	
+	/**
+	 * @return User releasing access: the virtual user if there is one, and otherwise the sender
+	 */
+	public Object getPrincipal() {
+		return virtualUser != null ? virtualUser : sender;
+	}
+	
 	@Override 
 	public String toString () {
 		return "Releasing " + access_release.getType().toString() + " on " + access_release.getResourceName();
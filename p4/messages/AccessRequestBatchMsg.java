@@ -0,0 +1,40 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages carrying several access requests at once, all from the same user,
+ * such as the access requests of one script step.  A manager handles each request as
+ * if it had arrived on its own, except that the responses it can give right away are
+ * sent together in one AccessRequestBatchResponseMsg, and the requests for resources
+ * of another manager are forwarded together in one batch per manager.  Requests that
+ * have to wait are answered individually when they are granted or denied.
+ */
+public class AccessRequestBatchMsg {
+	private final ArrayList<AccessRequestMsg> requests;	// Not modified after construction
+	private final ActorRef replyTo;
+	
+	/**
+	 * @param requests	Requests, all with the given reply-to actor; the list is not copied
+	 * @param replyTo	Actor to send responses to
+	 */
+	public AccessRequestBatchMsg (ArrayList<AccessRequestMsg> requests, ActorRef replyTo) {
+		this.requests = requests;
+		this.replyTo = replyTo;
+	}
+
+	public ArrayList<AccessRequestMsg> getRequests() {
+		return requests;
+	}
+
+	public ActorRef getReplyTo() {
+		return replyTo;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Batch of " + requests.size() + " access requests";
+	}
+}
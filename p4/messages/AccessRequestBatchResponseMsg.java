@@ -0,0 +1,25 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+/**
+ * Class of messages resource managers send in response to an AccessRequestBatchMsg,
+ * carrying the responses to the requests of the batch that could be answered right
+ * away.  Each response is an AccessRequestGrantedMsg or an AccessRequestDeniedMsg.
+ */
+public class AccessRequestBatchResponseMsg {
+	private final ArrayList<Object> responses;	// Not modified after construction
+	
+	public AccessRequestBatchResponseMsg (ArrayList<Object> responses) {
+		this.responses = responses;
+	}
+
+	public ArrayList<Object> getResponses() {
+		return responses;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Batch of " + responses.size() + " access responses";
+	}
+}
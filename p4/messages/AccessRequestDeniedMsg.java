@@ -2,6 +2,8 @@ package cmsc433.p4.messages;
 
 import cmsc433.p4.enums.AccessRequestDenialReason;
 import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.RequestTimes;
+import cmsc433.p4.util.VirtualUser;
 
 /**
  * Class of messages resource managers send in response to access requests that
@@ -13,10 +15,16 @@ import cmsc433.p4.util.AccessRequest;
 public class AccessRequestDeniedMsg {
 	private final AccessRequest request;			// Message being replied to
 	private final AccessRequestDenialReason reason;	// Why request was denied
+	private final RequestTimes times;				// Timestamps of request, or null if not timestamped
+	private final VirtualUser virtualUser;	// Virtual user that made request, or null
+	private final long requestId;			// ID of request, or 0 if it has none
 	
 	public AccessRequestDeniedMsg (AccessRequest request, AccessRequestDenialReason reason) {
 		this.request = request;
 		this.reason = reason;
+		this.times = null;
+		this.virtualUser = null;
+		this.requestId = 0;
 	}
 	
 	/**
@@ -28,6 +36,9 @@ public class AccessRequestDeniedMsg {
 	public AccessRequestDeniedMsg (AccessRequestMsg msg, AccessRequestDenialReason reason) {
 		this.request = msg.getAccessRequest();
 		this.reason = reason;
+		this.times = (msg.getTimes() == null) ? null : msg.getTimes().atResponse();
+		this.virtualUser = msg.getVirtualUser();
+		this.requestId = msg.getRequestId();
 	}
 
 	/**
@@ -44,6 +55,27 @@ public class AccessRequestDeniedMsg {
 		return reason;
 	}
 	
+	/**
+	 * @return Timestamps of request, with response set, or null if request is not timestamped
+	 */
+	public RequestTimes getTimes() {
+		return times;
+	}
+	
+	/**
+	 * @return Virtual user that made the request, or null if the request came from a user actor
+	 */
+	public VirtualUser getVirtualUser() {
+		return virtualUser;
+	}
+	
+	/**
+	 * @return ID of the request, or 0 if the request has none
+	 */
+	public long getRequestId() {
+		return requestId;
+	}
+	
 	@Override 
 	public String toString() {
 		return request.getType() + " for " + request.getResourceName() + " denied because " + reason.toString();
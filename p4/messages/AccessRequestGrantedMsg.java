@@ -1,6 +1,8 @@
 package cmsc433.p4.messages;
 
 import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.RequestTimes;
+import cmsc433.p4.util.VirtualUser;
 
 /**
  * Class of messages resource managers send in response to access requests that
@@ -11,9 +13,15 @@ import cmsc433.p4.util.AccessRequest;
  */
 public class AccessRequestGrantedMsg {
 	private final AccessRequest request;	// Access request being replied to
+	private final RequestTimes times;		// Timestamps of request, or null if not timestamped
+	private final VirtualUser virtualUser;	// Virtual user that made request, or null
+	private final long requestId;			// ID of request, or 0 if it has none
 	
 	public AccessRequestGrantedMsg (AccessRequest request) {
 		this.request = request;
+		this.times = null;
+		this.virtualUser = null;
+		this.requestId = 0;
 	}
 	
 	/**
@@ -23,12 +31,36 @@ public class AccessRequestGrantedMsg {
 	 */
 	public AccessRequestGrantedMsg (AccessRequestMsg msg) {
 		this.request = msg.getAccessRequest();
+		this.times = (msg.getTimes() == null) ? null : msg.getTimes().atResponse();
+		this.virtualUser = msg.getVirtualUser();
+		this.requestId = msg.getRequestId();
 	}
 
 	public AccessRequest getRequest() {
 		return request;
 	}
 	
+	/**
+	 * @return Timestamps of request, with response set, or null if request is not timestamped
+	 */
+	public RequestTimes getTimes() {
+		return times;
+	}
+	
+	/**
+	 * @return Virtual user that made the request, or null if the request came from a user actor
+	 */
+	public VirtualUser getVirtualUser() {
+		return virtualUser;
+	}
+	
+	/**
+	 * @return ID of the request, or 0 if the request has none
+	 */
+	public long getRequestId() {
+		return requestId;
+	}
+	
 	@Override 
 	public String toString () {
 		return request.getType().toString() + " for " + request.getResourceName() + " granted";
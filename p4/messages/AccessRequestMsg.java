@@ -1,6 +1,8 @@
 package cmsc433.p4.messages;
 
 import cmsc433.p4.util.AccessRequest;
+import cmsc433.p4.util.RequestTimes;
+import cmsc433.p4.util.VirtualUser;
 import akka.actor.ActorRef;
 
 /**
@@ -13,10 +15,79 @@ public class AccessRequestMsg {
 	
 	private final AccessRequest request;
 	private final ActorRef replyTo;
+	private final RequestTimes times;	// Timestamps of request, or null if not timestamped
+	private final VirtualUser virtualUser;	// User making request, or null if replyTo is the user
+	private final long requestId;		// Unique ID of request, or 0 if it has none
+	private final boolean direct;		// Whether sent straight to the presumed owner of the resource
 	
 	public AccessRequestMsg (AccessRequest request, ActorRef user) {
+		this(request, user, null);
+	}
+	
+	public AccessRequestMsg (AccessRequest request, ActorRef user, RequestTimes times) {
+		this(request, user, times, null);
+	}
+	
+	/**
+	 * Version of constructor for requests made by virtual users.
+	 * 
+	 * @param request		Request
+	 * @param replyTo		Actor to send response to
+	 * @param times			Timestamps of request, or null
+	 * @param virtualUser	User making request, or null if replyTo is the user
+	 */
+	public AccessRequestMsg (AccessRequest request, ActorRef replyTo, RequestTimes times, VirtualUser virtualUser) {
+		this(request, replyTo, times, virtualUser, 0);
+	}
+	
+	/**
+	 * Version of constructor for requests with IDs.  Every response to the request
+	 * carries its ID, and managers drop requests whose ID they have recently seen, so a
+	 * client may retry a request without it being served twice.
+	 * 
+	 * @param request		Request
+	 * @param replyTo		Actor to send response to
+	 * @param times			Timestamps of request, or null
+	 * @param virtualUser	User making request, or null if replyTo is the user
+	 * @param requestId		Unique ID of request (see RequestIds), or 0 for none
+	 */
+	public AccessRequestMsg (AccessRequest request, ActorRef replyTo, RequestTimes times, VirtualUser virtualUser, long requestId) {
+		this(request, replyTo, times, virtualUser, requestId, false);
+	}
+	
+	private AccessRequestMsg (AccessRequest request, ActorRef replyTo, RequestTimes times, VirtualUser virtualUser, long requestId, boolean direct) {
 		this.request = request;
-		this.replyTo = user;
+		this.replyTo = replyTo;
+		this.times = times;
+		this.virtualUser = virtualUser;
+		this.requestId = requestId;
+		this.direct = direct;
+	}
+	
+	/**
+	 * @return	Copy of this message marked as sent directly to the manager the user believes
+	 * 			owns the resource.  A manager receiving a direct request for a resource it
+	 * 			does not own denies it with STALE_ROUTE rather than forwarding it.
+	 */
+	public AccessRequestMsg asDirect () {
+		return new AccessRequestMsg(request, replyTo, times, virtualUser, requestId, true);
+	}
+	
+	/**
+	 * @param request	New request
+	 * @return			Copy of this message with the given request, not marked direct.  Used
+	 * 					to pass a multi-resource request on to the owner of its next part.
+	 */
+	public AccessRequestMsg withRequest (AccessRequest request) {
+		return new AccessRequestMsg(request, replyTo, times, virtualUser, requestId, false);
+	}
+	
+	/**
+	 * @param times	New timestamps
+	 * @return		Copy of this message with the given timestamps
+	 */
+	public AccessRequestMsg withTimes (RequestTimes times) {
+		return new AccessRequestMsg(request, replyTo, times, virtualUser, requestId, direct);
 	}
 	
 	public AccessRequest getAccessRequest() {
@@ -27,6 +98,42 @@ public class AccessRequestMsg {
 		return replyTo;
 	}
 	
+	/**
+	 * @return Virtual user making request, or null if the reply-to actor is the user
+	 */
+	public VirtualUser getVirtualUser() {
+		return virtualUser;
+	}
+	
+	/**
+	 * @return User access is granted to: the virtual user if there is one, and otherwise
+	 * the reply-to actor
+	 */
+	public Object getPrincipal() {
+		return virtualUser != null ? virtualUser : replyTo;
+	}
+	
+	/**
+	 * @return Unique ID of request, or 0 if it has none
+	 */
+	public long getRequestId() {
+		return requestId;
+	}
+	
+	/**
+	 * @return Whether request was sent directly to the presumed owner of the resource
+	 */
+	public boolean isDirect() {
+		return direct;
+	}
+	
+	/**
+	 * @return Timestamps of request, or null if request is not timestamped
+	 */
+	public RequestTimes getTimes() {
+		return times;
+	}
+	
 	@Override 
 	public String toString () {
 		return request.getType() + " request for " + request.getResourceName();
@@ -0,0 +1,38 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.enums.RevocationReason;
+import cmsc433.p4.util.VirtualUser;
+
+/**
+ * Class of messages telling a user that the manager owning a resource has taken back all
+ * the access the user held to it.  The user need not release that access, and a release
+ * it sends anyway is ignored.
+ */
+public class AccessRevokedMsg {
+	private final String resourceName;
+	private final RevocationReason reason;
+	private final VirtualUser virtualUser;	// User whose access was revoked, or null if the recipient is the user
+
+	public AccessRevokedMsg(String resourceName, RevocationReason reason, VirtualUser virtualUser) {
+		this.resourceName = resourceName;
+		this.reason = reason;
+		this.virtualUser = virtualUser;
+	}
+	
+	public String getResourceName() {
+		return resourceName;
+	}
+	
+	public RevocationReason getReason() {
+		return reason;
+	}
+	
+	public VirtualUser getVirtualUser() {
+		return virtualUser;
+	}
+	
+	@Override 
+	public String toString () {
+		return "Access to " + resourceName + " revoked: " + reason;
+	}
+}
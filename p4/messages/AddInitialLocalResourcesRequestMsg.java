@@ -2,7 +2,9 @@ package cmsc433.p4.messages;
 
 import java.util.ArrayList;
 
+import cmsc433.p4.enums.GrantPolicy;
 import cmsc433.p4.util.Resource;
+import cmsc433.p4.util.ResourceRange;
 
 /**
  * Class of messages asking resource manager to add given local resources.
@@ -16,15 +18,42 @@ import cmsc433.p4.util.Resource;
 public class AddInitialLocalResourcesRequestMsg {
 
 	private final ArrayList<Resource> localResources;
+	private final ArrayList<ResourceRange> localResourceRanges;
+	private final GrantPolicy grantPolicy;
 
 	public AddInitialLocalResourcesRequestMsg(ArrayList<Resource> localResources) {
+		this(localResources, new ArrayList<ResourceRange>());
+	}
+
+	public AddInitialLocalResourcesRequestMsg(ArrayList<Resource> localResources, ArrayList<ResourceRange> localResourceRanges) {
+		this(localResources, localResourceRanges, GrantPolicy.READER_PREFERRING);
+	}
+
+	public AddInitialLocalResourcesRequestMsg(ArrayList<Resource> localResources, ArrayList<ResourceRange> localResourceRanges,
+			GrantPolicy grantPolicy) {
 		super();
 		this.localResources = localResources;
+		this.localResourceRanges = localResourceRanges;
+		this.grantPolicy = grantPolicy;
 	}
 
 	public ArrayList<Resource> getLocalResources() {
 		return localResources;
 	}
+
+	/**
+	 * @return Ranges of resources whose state the manager creates only when they are used
+	 */
+	public ArrayList<ResourceRange> getLocalResourceRanges() {
+		return localResourceRanges;
+	}
+
+	/**
+	 * @return Policy for granting access to the resources and ranges that do not name their own
+	 */
+	public GrantPolicy getGrantPolicy() {
+		return grantPolicy;
+	}
 	
 	
 }
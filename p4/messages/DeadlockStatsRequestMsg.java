@@ -0,0 +1,7 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages asking the deadlock detector for its counters.
+ */
+public class DeadlockStatsRequestMsg {
+}
@@ -0,0 +1,60 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.util.LatencyHistogram;
+
+/**
+ * Class of messages the deadlock detector sends in response to statistics requests.
+ * The histogram is a copy owned by the receiver.
+ */
+public class DeadlockStatsResponseMsg {
+	private final long rounds;
+	private final long messages;
+	private final long edges;
+	private final long victims;
+	private final LatencyHistogram detectionLatency;
+
+	public DeadlockStatsResponseMsg (long rounds, long messages, long edges, long victims, LatencyHistogram detectionLatency) {
+		this.rounds = rounds;
+		this.messages = messages;
+		this.edges = edges;
+		this.victims = victims;
+		this.detectionLatency = detectionLatency;
+	}
+
+	/**
+	 * @return	Detection rounds completed
+	 */
+	public long getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * @return	Messages sent and received by the detector: requests for edges, responses
+	 * 			and victim messages
+	 */
+	public long getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return	Wait-for edges received, over all rounds
+	 */
+	public long getEdges() {
+		return edges;
+	}
+
+	/**
+	 * @return	Requests denied to break deadlocks
+	 */
+	public long getVictims() {
+		return victims;
+	}
+
+	/**
+	 * @return	Time from the last wait of each deadlock beginning to its victim being chosen,
+	 * 			in nanoseconds
+	 */
+	public LatencyHistogram getDetectionLatency() {
+		return detectionLatency;
+	}
+}
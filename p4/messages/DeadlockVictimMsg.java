@@ -0,0 +1,24 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages the deadlock detector sends to the owner of a resource to break a
+ * deadlock, by having it deny the first waiting request of the given user for the
+ * resource with reason DEADLOCK.  A manager with no such request ignores the message.
+ */
+public class DeadlockVictimMsg {
+	private final String resourceName;
+	private final Object principal;		// User actor or virtual user whose request is denied
+
+	public DeadlockVictimMsg (String resourceName, Object principal) {
+		this.resourceName = resourceName;
+		this.principal = principal;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	public Object getPrincipal() {
+		return principal;
+	}
+}
@@ -0,0 +1,9 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages asking a resource manager for the progress of the disables of its
+ * local resources that are waiting for holders to release.  The manager answers the
+ * sender with a DrainProgressResponseMsg.
+ */
+public class DrainProgressRequestMsg {
+}
@@ -0,0 +1,31 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.util.DrainProgress;
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages resource managers send in response to drain progress requests,
+ * with one entry for each local resource being drained, longest draining first.
+ */
+public class DrainProgressResponseMsg {
+	private final ArrayList<DrainProgress> drains;
+	private final ActorRef manager;		// Manager the resources belong to
+
+	public DrainProgressResponseMsg (ArrayList<DrainProgress> drains, ActorRef manager) {
+		this.drains = drains;
+		this.manager = manager;
+	}
+
+	/**
+	 * @return Progress of each resource being drained, longest draining first
+	 */
+	public ArrayList<DrainProgress> getDrains() {
+		return drains;
+	}
+
+	public ActorRef getManager() {
+		return manager;
+	}
+}
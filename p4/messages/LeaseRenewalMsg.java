@@ -0,0 +1,48 @@
+package cmsc433.p4.messages;
+
+import cmsc433.p4.util.LeaseRenewal;
+import cmsc433.p4.util.VirtualUser;
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages for renewing the lease on access to a resource.
+ */
+public class LeaseRenewalMsg {
+	private final LeaseRenewal renewal;
+	private final ActorRef sender;
+	private final VirtualUser virtualUser;	// User renewing, or null if sender is the user
+
+	public LeaseRenewalMsg(LeaseRenewal renewal, ActorRef sender) {
+		this(renewal, sender, null);
+	}
+
+	public LeaseRenewalMsg(LeaseRenewal renewal, ActorRef sender, VirtualUser virtualUser) {
+		this.renewal = renewal;
+		this.sender = sender;
+		this.virtualUser = virtualUser;
+	}
+	
+	public LeaseRenewal getRenewal() {
+		return renewal;
+	}
+	
+	public ActorRef getSender() {
+		return sender;
+	}
+	
+	public VirtualUser getVirtualUser() {
+		return virtualUser;
+	}
+	
+	/**
+	 * @return User renewing: the virtual user if there is one, and otherwise the sender
+	 */
+	public Object getPrincipal() {
+		return virtualUser != null ? virtualUser : sender;
+	}
+	
+	@Override 
+	public String toString () {
+		return renewal.toString();
+	}
+}
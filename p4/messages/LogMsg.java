@@ -6,6 +6,8 @@ import cmsc433.p4.enums.ResourceStatus;
 import cmsc433.p4.util.AccessRelease;
 import cmsc433.p4.util.AccessRequest;
 import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.RequestTimes;
+import cmsc433.p4.util.VirtualUser;
 import akka.actor.ActorRef;
 
 /**
@@ -102,6 +104,24 @@ public class LogMsg {
 		return new LogMsg(EventType.USER_TERMINATE, user, null, null, null, null, null, null, null, null, null);
 	}
 	
+	/**
+	 * 
+	 * @param user The virtual user that has started up.
+	 * @return A LogMsg indicating the user has started.
+	 */
+	public static LogMsg makeUserStartLogMsg (VirtualUser user) {
+		return new LogMsg(EventType.USER_START, user.getDriver(), null, null, null, null, null, null, null, null, null, user);
+	}
+	
+	/**
+	 * 
+	 * @param user The virtual user that is terminating.
+	 * @return A LogMsg indicating the user has terminated.
+	 */
+	public static LogMsg makeUserTerminateLogMsg (VirtualUser user) {
+		return new LogMsg(EventType.USER_TERMINATE, user.getDriver(), null, null, null, null, null, null, null, null, null, user);
+	}
+	
 	/**
 	 * 
 	 * @param local_resource_manager The resource manager actor who owns this new resource.
@@ -134,6 +154,19 @@ public class LogMsg {
 		return new LogMsg(EventType.ACCESS_REQUEST_RECEIVED, user, local_resource_manager, null, access_request.getResourceName(), access_request, null, null, null, null, null);
 	}
 	
+	/**
+	 * 
+	 * @param user The user actor that originally sent this request
+	 * @param local_resource_manager The resource manager that just received an access request
+	 * @param access_request The AccessRequest object was received (must pass the original object, NOT A COPY)
+	 * @param times Timestamps of the request, or null if it has none
+	 * @return A LogMsg indicating that an access request has been received, with the time the user sent it
+	 */
+	public static LogMsg makeAccessRequestReceivedLogMsg (ActorRef user, ActorRef local_resource_manager, AccessRequest access_request, RequestTimes times) {
+		return new LogMsg(EventType.ACCESS_REQUEST_RECEIVED, user, local_resource_manager, null, access_request.getResourceName(), access_request, null, null, null, null, null,
+				null, times == null ? 0 : times.getCreated());
+	}
+	
 	/**
 	 * 
 	 * @param local_resource_manager The resource manager that is forwarding this request
@@ -225,6 +258,19 @@ public class LogMsg {
 		return new LogMsg(EventType.MANAGEMENT_REQUEST_RECEIVED, user, local_resource_manager, null, management_request.getResourceName(), null, null, null, management_request, null, null);
 	}
 	
+	/**
+	 * 
+	 * @param user The user actor that originally sent this request
+	 * @param local_resource_manager The resource manager that just received a management request
+	 * @param management_request The ManagementRequest object corresponding to the request that was received (must pass the original object, NOT A COPY)
+	 * @param times Timestamps of the request, or null if it has none
+	 * @return A LogMsg indicating that a resource manager has received a management request, with the time the user sent it
+	 */
+	public static LogMsg makeManagementRequestReceivedLogMsg (ActorRef user, ActorRef local_resource_manager, ManagementRequest management_request, RequestTimes times) {
+		return new LogMsg(EventType.MANAGEMENT_REQUEST_RECEIVED, user, local_resource_manager, null, management_request.getResourceName(), null, null, null, management_request, null, null,
+				null, times == null ? 0 : times.getCreated());
+	}
+	
 	/**
 	 * 
 	 * @param local_resource_manager The resource manager that is forwarding a management request
@@ -282,6 +328,9 @@ public class LogMsg {
 	private final ManagementRequest management_request;
 	private final ManagementRequestDenialReason management_request_denial_reason;
 	private final ResourceStatus new_resource_status;
+	private final long timestamp;						// System.nanoTime() when event was logged
+	private final VirtualUser virtual_user;				// Virtual user run by user, or null
+	private final long sent;							// System.nanoTime() when the user sent the request received, or 0 if unknown
 	
 	
 	
@@ -290,6 +339,30 @@ public class LogMsg {
 			AccessRequestDenialReason access_request_denial_reason, AccessRelease access_release,
 			ManagementRequest management_request, 
 			ManagementRequestDenialReason management_request_denial_reason, ResourceStatus new_resource_status) {
+		this(type, user, local_resource_manager, remote_resource_manager, resource_name, access_request,
+				access_request_denial_reason, access_release, management_request, management_request_denial_reason,
+				new_resource_status, null);
+	}
+	
+	private LogMsg(EventType type, ActorRef user, ActorRef local_resource_manager, 
+			ActorRef remote_resource_manager, String resource_name, AccessRequest access_request,
+			AccessRequestDenialReason access_request_denial_reason, AccessRelease access_release,
+			ManagementRequest management_request, 
+			ManagementRequestDenialReason management_request_denial_reason, ResourceStatus new_resource_status,
+			VirtualUser virtual_user) {
+		this(type, user, local_resource_manager, remote_resource_manager, resource_name, access_request,
+				access_request_denial_reason, access_release, management_request, management_request_denial_reason,
+				new_resource_status, virtual_user, 0);
+	}
+	
+	private LogMsg(EventType type, ActorRef user, ActorRef local_resource_manager, 
+			ActorRef remote_resource_manager, String resource_name, AccessRequest access_request,
+			AccessRequestDenialReason access_request_denial_reason, AccessRelease access_release,
+			ManagementRequest management_request, 
+			ManagementRequestDenialReason management_request_denial_reason, ResourceStatus new_resource_status,
+			VirtualUser virtual_user, long sent) {
+		this.virtual_user = virtual_user;
+		this.sent = sent;
 		this.type = type;
 		this.user = user;
 		this.local_resource_manager = local_resource_manager;
@@ -301,6 +374,7 @@ public class LogMsg {
 		this.management_request = management_request;
 		this.management_request_denial_reason = management_request_denial_reason;
 		this.new_resource_status = new_resource_status;
+		this.timestamp = System.nanoTime();
 	}
 	
 	public EventType getType() {
@@ -311,6 +385,21 @@ public class LogMsg {
 		return user;
 	}
 	
+	/**
+	 * @return Virtual user involved in this event, or null if the user is an actor
+	 */
+	public VirtualUser getVirtualUser() {
+		return virtual_user;
+	}
+	
+	/**
+	 * @return User involved in this event: the virtual user if there is one, and otherwise
+	 * the user actor
+	 */
+	public Object getPrincipal() {
+		return virtual_user != null ? virtual_user : user;
+	}
+	
 	public ActorRef getLocalResourceManager () {
 		return local_resource_manager;
 	}
@@ -347,12 +436,27 @@ public class LogMsg {
 		return new_resource_status;
 	}
 	
+	/**
+	 * @return Value of System.nanoTime() when the event was logged, i.e. when this message was made
+	 */
+	public long getTimestamp () {
+		return timestamp;
+	}
+	
+	/**
+	 * @return Value of System.nanoTime() when the user sent the request received, or 0 if
+	 * the request carries no timestamps or this is not a receipt
+	 */
+	public long getSent () {
+		return sent;
+	}
+	
 	
 	@Override public String toString() {
 		if (type == EventType.USER_START) {
-			return "User Starting: " + actorRefToString(user);
+			return "User Starting: " + (virtual_user != null ? virtual_user.toString() : actorRefToString(user));
 		} else if (type == EventType.USER_TERMINATE) {
-			return "User Terminating: " + actorRefToString(user);
+			return "User Terminating: " + (virtual_user != null ? virtual_user.toString() : actorRefToString(user));
 		} else if (type == EventType.LOCAL_RESOURCE_CREATED) {
 			return resource_name + " was added to " + actorRefToString(local_resource_manager);
 		} else if (type == EventType.REMOTE_RESOURCE_DISCOVERED) {
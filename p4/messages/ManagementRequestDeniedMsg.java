@@ -2,6 +2,8 @@ package cmsc433.p4.messages;
 
 import cmsc433.p4.enums.ManagementRequestDenialReason;
 import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.RequestTimes;
+import cmsc433.p4.util.VirtualUser;
 
 /**
  * Class of messages resource managers send in response to management requests that
@@ -13,10 +15,16 @@ import cmsc433.p4.util.ManagementRequest;
 public class ManagementRequestDeniedMsg {
 	private final ManagementRequest request;			// Request being replied to
 	private final ManagementRequestDenialReason reason;	// Why request was denied
+	private final RequestTimes times;				// Timestamps of request, or null if not timestamped
+	private final VirtualUser virtualUser;	// Virtual user that made request, or null
+	private final long requestId;			// ID of request, or 0 if it has none
 	
 	public ManagementRequestDeniedMsg (ManagementRequest request, ManagementRequestDenialReason reason) {
 		this.request = request;
 		this.reason = reason;
+		this.times = null;
+		this.virtualUser = null;
+		this.requestId = 0;
 	}
 	
 	/**
@@ -28,6 +36,9 @@ public class ManagementRequestDeniedMsg {
 	public ManagementRequestDeniedMsg (ManagementRequestMsg msg, ManagementRequestDenialReason reason) {
 		this.request = msg.getRequest();
 		this.reason = reason;
+		this.times = (msg.getTimes() == null) ? null : msg.getTimes().atResponse();
+		this.virtualUser = msg.getVirtualUser();
+		this.requestId = msg.getRequestId();
 	}
 
 	/**
@@ -44,6 +55,27 @@ public class ManagementRequestDeniedMsg {
 		return reason;
 	}
 	
+	/**
+	 * @return Timestamps of request, with response set, or null if request is not timestamped
+	 */
+	public RequestTimes getTimes() {
+		return times;
+	}
+	
+	/**
+	 * @return Virtual user that made the request, or null if the request came from a user actor
+	 */
+	public VirtualUser getVirtualUser() {
+		return virtualUser;
+	}
+	
+	/**
+	 * @return ID of the request, or 0 if the request has none
+	 */
+	public long getRequestId() {
+		return requestId;
+	}
+	
 	@Override 
 	public String toString () {
 		return request.getType().toString() + " " + request.getResourceName() + " denied because " + reason.toString(); 
@@ -1,6 +1,8 @@
 package cmsc433.p4.messages;
 
 import cmsc433.p4.util.ManagementRequest;
+import cmsc433.p4.util.RequestTimes;
+import cmsc433.p4.util.VirtualUser;
 import akka.actor.ActorRef;
 
 /**
@@ -12,10 +14,55 @@ import akka.actor.ActorRef;
 public class ManagementRequestMsg {
 	private final ManagementRequest request;
 	private final ActorRef replyTo;
+	private final RequestTimes times;	// Timestamps of request, or null if not timestamped
+	private final VirtualUser virtualUser;	// User making request, or null if replyTo is the user
+	private final long requestId;		// Unique ID of request, or 0 if it has none
 	
 	public ManagementRequestMsg (ManagementRequest request, ActorRef user) {
+		this(request, user, null);
+	}
+	
+	public ManagementRequestMsg (ManagementRequest request, ActorRef user, RequestTimes times) {
+		this(request, user, times, null);
+	}
+	
+	/**
+	 * Version of constructor for requests made by virtual users.
+	 * 
+	 * @param request		Request
+	 * @param replyTo		Actor to send response to
+	 * @param times			Timestamps of request, or null
+	 * @param virtualUser	User making request, or null if replyTo is the user
+	 */
+	public ManagementRequestMsg (ManagementRequest request, ActorRef replyTo, RequestTimes times, VirtualUser virtualUser) {
+		this(request, replyTo, times, virtualUser, 0);
+	}
+	
+	/**
+	 * Version of constructor for requests with IDs.  Every response to the request
+	 * carries its ID, and managers drop requests whose ID they have recently seen, so a
+	 * client may retry a request without it being served twice.
+	 * 
+	 * @param request		Request
+	 * @param replyTo		Actor to send response to
+	 * @param times			Timestamps of request, or null
+	 * @param virtualUser	User making request, or null if replyTo is the user
+	 * @param requestId		Unique ID of request (see RequestIds), or 0 for none
+	 */
+	public ManagementRequestMsg (ManagementRequest request, ActorRef replyTo, RequestTimes times, VirtualUser virtualUser, long requestId) {
 		this.request = request;
-		this.replyTo = user;
+		this.replyTo = replyTo;
+		this.times = times;
+		this.virtualUser = virtualUser;
+		this.requestId = requestId;
+	}
+	
+	/**
+	 * @param times	New timestamps
+	 * @return		Copy of this message with the given timestamps
+	 */
+	public ManagementRequestMsg withTimes (RequestTimes times) {
+		return new ManagementRequestMsg(request, replyTo, times, virtualUser, requestId);
 	}
 
 	public ManagementRequest getRequest() {
@@ -26,6 +73,35 @@ public class ManagementRequestMsg {
 		return replyTo;
 	}
 	
+	/**
+	 * @return Virtual user making request, or null if the reply-to actor is the user
+	 */
+	public VirtualUser getVirtualUser() {
+		return virtualUser;
+	}
+	
+	/**
+	 * @return User making request: the virtual user if there is one, and otherwise the
+	 * reply-to actor
+	 */
+	public Object getPrincipal() {
+		return virtualUser != null ? virtualUser : replyTo;
+	}
+	
+	/**
+	 * @return Unique ID of request, or 0 if it has none
+	 */
+	public long getRequestId() {
+		return requestId;
+	}
+	
+	/**
+	 * @return Timestamps of request, or null if request is not timestamped
+	 */
+	public RequestTimes getTimes() {
+		return times;
+	}
+	
 	@Override 
 	public String toString () {
 		return request.getType() + " " + request.getResourceName();
@@ -0,0 +1,9 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages asking a resource manager for its statistics.  The manager
+ * answers the sender with a ManagerStatsResponseMsg.
+ */
+public class ManagerStatsRequestMsg {
+
+}
@@ -0,0 +1,63 @@
+package cmsc433.p4.messages;
+
+import java.util.EnumMap;
+
+import cmsc433.p4.enums.LatencyStage;
+import cmsc433.p4.util.LatencyHistogram;
+
+/**
+ * Class of messages resource managers send in response to statistics requests.  The
+ * histograms are copies owned by the receiver.
+ */
+public class ManagerStatsResponseMsg {
+	private final EnumMap<LatencyStage,LatencyHistogram> latencies;	// Latencies in nanoseconds
+	private final long duplicatesDropped;
+	private final long overloaded;
+	private final long mailboxRejected;
+
+	public ManagerStatsResponseMsg (EnumMap<LatencyStage,LatencyHistogram> latencies) {
+		this(latencies, 0);
+	}
+
+	public ManagerStatsResponseMsg (EnumMap<LatencyStage,LatencyHistogram> latencies, long duplicatesDropped) {
+		this(latencies, duplicatesDropped, 0, 0);
+	}
+
+	public ManagerStatsResponseMsg (EnumMap<LatencyStage,LatencyHistogram> latencies, long duplicatesDropped,
+			long overloaded, long mailboxRejected) {
+		this.latencies = latencies;
+		this.duplicatesDropped = duplicatesDropped;
+		this.overloaded = overloaded;
+		this.mailboxRejected = mailboxRejected;
+	}
+
+	/**
+	 * @return Latency of each stage of request processing, in nanoseconds
+	 */
+	public EnumMap<LatencyStage,LatencyHistogram> getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * @return Requests dropped because the manager had already seen their ID
+	 */
+	public long getDuplicatesDropped() {
+		return duplicatesDropped;
+	}
+
+	/**
+	 * @return Access requests the manager denied with reason OVERLOADED because a wait queue
+	 * 			or the manager itself was at its limit
+	 */
+	public long getOverloaded() {
+		return overloaded;
+	}
+
+	/**
+	 * @return Access requests denied with reason OVERLOADED by the manager's bounded mailbox,
+	 * 			without reaching the manager
+	 */
+	public long getMailboxRejected() {
+		return mailboxRejected;
+	}
+}
@@ -0,0 +1,24 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages asking a resource manager for contention statistics of its most
+ * contended local resources.  The manager answers the sender with a
+ * ResourceStatsResponseMsg.
+ */
+public class ResourceStatsRequestMsg {
+	private final int k;	// Number of resources wanted
+
+	/**
+	 * @param k	Number of resources to report; 0 or less for all
+	 */
+	public ResourceStatsRequestMsg (int k) {
+		this.k = k;
+	}
+
+	/**
+	 * @return Number of resources to report; 0 or less for all
+	 */
+	public int getK() {
+		return k;
+	}
+}
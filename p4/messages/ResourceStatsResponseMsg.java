@@ -0,0 +1,32 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.util.ResourceStats;
+import akka.actor.ActorRef;
+
+/**
+ * Class of messages resource managers send in response to resource statistics requests.
+ * The statistics are snapshots owned by the receiver, ordered from most to least
+ * contended: by total wait time, then by denials.
+ */
+public class ResourceStatsResponseMsg {
+	private final ArrayList<ResourceStats> stats;
+	private final ActorRef manager;		// Manager the resources belong to
+
+	public ResourceStatsResponseMsg (ArrayList<ResourceStats> stats, ActorRef manager) {
+		this.stats = stats;
+		this.manager = manager;
+	}
+
+	/**
+	 * @return Statistics of the most contended resources, most contended first
+	 */
+	public ArrayList<ResourceStats> getStats() {
+		return stats;
+	}
+
+	public ActorRef getManager() {
+		return manager;
+	}
+}
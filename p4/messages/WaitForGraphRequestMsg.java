@@ -0,0 +1,17 @@
+package cmsc433.p4.messages;
+
+/**
+ * Class of messages the deadlock detector sends to resource managers to ask for the
+ * wait-for edges of their resources.
+ */
+public class WaitForGraphRequestMsg {
+	private final long round;	// Number of detection round
+
+	public WaitForGraphRequestMsg (long round) {
+		this.round = round;
+	}
+
+	public long getRound() {
+		return round;
+	}
+}
@@ -0,0 +1,33 @@
+package cmsc433.p4.messages;
+
+import java.util.ArrayList;
+
+import cmsc433.p4.util.WaitForEdge;
+
+/**
+ * Class of messages resource managers send in response to wait-for graph requests.  The
+ * list of edges is owned by the receiver.
+ */
+public class WaitForGraphResponseMsg {
+	private final long round;
+	private final ArrayList<WaitForEdge> edges;
+
+	public WaitForGraphResponseMsg (long round, ArrayList<WaitForEdge> edges) {
+		this.round = round;
+		this.edges = edges;
+	}
+
+	/**
+	 * @return	Number of detection round the response is for
+	 */
+	public long getRound() {
+		return round;
+	}
+
+	/**
+	 * @return	Edges for every request waiting for a resource of the manager
+	 */
+	public ArrayList<WaitForEdge> getEdges() {
+		return edges;
+	}
+}
@@ -1,22 +1,31 @@
 package cmsc433.p4.messages;
 
+import cmsc433.p4.util.ResourceRange;
 import akka.actor.ActorRef;
 
 public class WhoHasResourceResponseMsg {
 	private final String resource_name;
 	private final boolean result;
 	private final ActorRef sender; // The actor who sends this response message.
+	private final ResourceRange range; // Declared range containing the resource, or null
 	
 	public WhoHasResourceResponseMsg (String resource_name, boolean result, ActorRef sender) {
+		this(resource_name, result, sender, null);
+	}
+	
+	/**
+	 * Version of constructor for resources in a declared range, so that the receiver
+	 * learns the owner of the whole range.
+	 */
+	public WhoHasResourceResponseMsg (String resource_name, boolean result, ActorRef sender, ResourceRange range) {
 		this.resource_name = resource_name;
 		this.result = result;
 		this.sender = sender;
+		this.range = range;
 	}
 	
 	public WhoHasResourceResponseMsg (WhoHasResourceRequestMsg request, boolean result, ActorRef sender) {
-		this.resource_name = request.getResourceName();
-		this.result = result;
-		this.sender = sender;
+		this(request.getResourceName(), result, sender, null);
 	}
 	
 	public String getResourceName () {
@@ -31,6 +40,14 @@ public class WhoHasResourceResponseMsg {
 		return sender;
 	}
 	
+	/**
+	 * @return Declared range the sender owns containing the resource, or null if the
+	 * resource was declared individually or is not found
+	 */
+	public ResourceRange getRange () {
+		return range;
+	}
+	
 	@Override public String toString () {
 		return "I" + (result ? " have " : " do not have ") + resource_name;
 	}
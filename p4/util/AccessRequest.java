@@ -12,10 +12,41 @@ public class AccessRequest {
 	
 	private final String resourceName;
 	private final AccessRequestType type;
+	private final long timeoutMs;
+	private final long leaseMs;
 	
 	public AccessRequest (String resourceName, AccessRequestType type) {
+		this(resourceName, type, 0);
+	}
+	
+	/**
+	 * @param resourceName	Name of resource
+	 * @param type			Type of request
+	 * @param timeoutMs		For blocking requests, how long the request may wait at the owner
+	 * 						of the resource before it is denied with reason TIMEOUT, in
+	 * 						milliseconds; 0 waits for good
+	 */
+	public AccessRequest (String resourceName, AccessRequestType type, long timeoutMs) {
+		this(resourceName, type, timeoutMs, 0);
+	}
+	
+	/**
+	 * @param resourceName	Name of resource
+	 * @param type			Type of request
+	 * @param timeoutMs		For blocking requests, how long the request may wait before it
+	 * 						is denied with reason TIMEOUT, in milliseconds; 0 waits for good
+	 * @param leaseMs		How long the access granted lasts unless renewed, in milliseconds,
+	 * 						after which the owner revokes it; 0 lasts until released
+	 */
+	public AccessRequest (String resourceName, AccessRequestType type, long timeoutMs, long leaseMs) {
+		if (timeoutMs < 0)
+			throw new IllegalArgumentException("Negative timeout: " + timeoutMs);
+		if (leaseMs < 0)
+			throw new IllegalArgumentException("Negative lease: " + leaseMs);
 		this.resourceName = resourceName;
 		this.type = type;
+		this.timeoutMs = timeoutMs;
+		this.leaseMs = leaseMs;
 	}
 
 	public String getResourceName() {
@@ -25,6 +56,20 @@ public class AccessRequest {
 	public AccessRequestType getType() {
 		return type;
 	}
+
+	/**
+	 * @return	Longest time the request may wait, in milliseconds, or 0 for no limit
+	 */
+	public long getTimeoutMs() {
+		return timeoutMs;
+	}
+
+	/**
+	 * @return	Lease on the access granted, in milliseconds, or 0 for none
+	 */
+	public long getLeaseMs() {
+		return leaseMs;
+	}
 	
 	@Override
 	public String toString () {
@@ -0,0 +1,166 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import cmsc433.p4.enums.AccessRequestType;
+import akka.actor.ActorRef;
+
+/**
+ * Class of requests for access to whichever resource of a group is free, granted the
+ * first one found, or denied with RESOURCE_BUSY if every one is busy (or
+ * RESOURCE_NOT_FOUND if the group is empty).  A group is written either as a list of
+ * names separated by commas, as in Printer_0,Printer_1, or as a prefix followed by *,
+ * as in Printer_*, which takes in every resource whose name starts with the prefix.
+ *
+ * The request tours the managers, starting with the local manager of the user: each
+ * tries its own resources in the group, and grants one if it can, or passes the request
+ * on to a manager it has not visited, preferring one known to own a resource in the
+ * group.  The request records the managers visited, and once granted, the resource it
+ * got: getResourceName() is that resource, and until then the group.
+ */
+public class AnyOfAccessRequest extends AccessRequest {
+
+	private final AccessRequestType mode;			// Type of access wanted, as a nonblocking request
+	private final String group;						// Group as written
+	private final String prefix;					// Prefix of names in group, or null for a list
+	private final ArrayList<String> names;			// Names in group, or null for a prefix; shared by all copies
+	private final ActorRef[] visited;				// Managers that have tried their resources
+	private final boolean found;					// Whether a visited manager owns a resource in group
+	private final String granted;					// Resource granted, or null
+
+	/**
+	 * @param group	Names separated by commas, or a prefix followed by *
+	 * @param mode	CONCURRENT_READ_NONBLOCKING, EXCLUSIVE_WRITE_NONBLOCKING or SLOT_NONBLOCKING,
+	 * 				for the access wanted to the resource granted
+	 */
+	public AnyOfAccessRequest (String group, AccessRequestType mode) {
+		this(mode, group, prefixOf(group), namesOf(group), new ActorRef[0], false, null);
+		if (mode != AccessRequestType.CONCURRENT_READ_NONBLOCKING && mode != AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING
+				&& mode != AccessRequestType.SLOT_NONBLOCKING)
+			throw new IllegalArgumentException("Any-of request must be for nonblocking access, not " + mode);
+	}
+
+	private AnyOfAccessRequest (AccessRequestType mode, String group, String prefix, ArrayList<String> names,
+			ActorRef[] visited, boolean found, String granted) {
+		super(granted == null ? group : granted, AccessRequestType.ANY_OF);
+		this.mode = mode;
+		this.group = group;
+		this.prefix = prefix;
+		this.names = names;
+		this.visited = visited;
+		this.found = found;
+		this.granted = granted;
+	}
+
+	private static String prefixOf (String group) {
+		return group.endsWith("*") ? group.substring(0, group.length() - 1) : null;
+	}
+
+	private static ArrayList<String> namesOf (String group) {
+		if (group.endsWith("*")) {
+			if (group.indexOf('*') != group.length() - 1 || group.indexOf(',') >= 0)
+				throw new IllegalArgumentException("Bad group: " + group);
+			return null;
+		}
+		ArrayList<String> result = new ArrayList<String>(Arrays.asList(group.split(",")));
+		if (result.contains("") || new HashSet<String>(result).size() != result.size())
+			throw new IllegalArgumentException("Bad group: " + group);
+		return result;
+	}
+
+	/**
+	 * @return	Type of access wanted, as a nonblocking request
+	 */
+	public AccessRequestType getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return	Group as written, which a user also names to release the resource granted
+	 */
+	public String getGroup() {
+		return group;
+	}
+
+	/**
+	 * @return	Prefix of the names in the group, or null if the group is a list
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * @return	Names in the group, or null if the group is a prefix
+	 */
+	public ArrayList<String> getNames() {
+		return (names == null) ? null : new ArrayList<String>(names);
+	}
+
+	/**
+	 * @param name	Resource name
+	 * @return		Whether the resource is in the group
+	 */
+	public boolean matches(String name) {
+		return (prefix != null) ? name.startsWith(prefix) : names.contains(name);
+	}
+
+	/**
+	 * @param manager	Manager
+	 * @return			Whether the manager has already tried its resources
+	 */
+	public boolean hasVisited(ActorRef manager) {
+		for (ActorRef m : visited) {
+			if (m.equals(manager))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return	Whether a manager visited so far owns a resource in the group
+	 */
+	public boolean isFound() {
+		return found;
+	}
+
+	/**
+	 * @return	Resource granted, or null if none has been
+	 */
+	public String getGranted() {
+		return granted;
+	}
+
+	/**
+	 * @return	Request for a single resource that this request amounts to: for the resource
+	 * 			granted, or until then for the group
+	 */
+	public AccessRequest getPart() {
+		return new AccessRequest(getResourceName(), mode);
+	}
+
+	/**
+	 * @param manager	Manager that has tried its resources
+	 * @param owns		Whether the manager owns a resource in the group
+	 * @return			Copy of this request recording the visit
+	 */
+	public AnyOfAccessRequest visit(ActorRef manager, boolean owns) {
+		ActorRef[] v = Arrays.copyOf(visited, visited.length + 1);
+		v[visited.length] = manager;
+		return new AnyOfAccessRequest(mode, group, prefix, names, v, found || owns, granted);
+	}
+
+	/**
+	 * @param name	Resource granted
+	 * @return		Copy of this request recording the grant
+	 */
+	public AnyOfAccessRequest grant(String name) {
+		return new AnyOfAccessRequest(mode, group, prefix, names, visited, true, name);
+	}
+
+	@Override
+	public String toString () {
+		return getType().toString() + " request for " + mode + " " + group + (granted == null ? "" : " (" + granted + ")");
+	}
+}
@@ -0,0 +1,60 @@
+package cmsc433.p4.util;
+
+/**
+ * Progress of a disable waiting for the holders of a resource to release their access.
+ * Instances are immutable snapshots taken by the manager owning the resource.
+ */
+public class DrainProgress {
+	private final String resourceName;
+	private final int holders;			// Accesses still held
+	private final int disables;			// Disable requests waiting
+	private final long elapsedNanos;
+	private final long remainingNanos;	// Until holders are revoked, or -1 if no disable has a deadline
+
+	public DrainProgress(String resourceName, int holders, int disables, long elapsedNanos, long remainingNanos) {
+		this.resourceName = resourceName;
+		this.holders = holders;
+		this.disables = disables;
+		this.elapsedNanos = elapsedNanos;
+		this.remainingNanos = remainingNanos;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	/**
+	 * @return	Accesses still held, counting each access of a user holding several
+	 */
+	public int getHolders() {
+		return holders;
+	}
+
+	/**
+	 * @return	Disable requests waiting for the drain
+	 */
+	public int getDisables() {
+		return disables;
+	}
+
+	/**
+	 * @return	Time since the first waiting disable request arrived, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return	Time until the holders are revoked, in nanoseconds, or -1 if no waiting
+	 * 			disable has a deadline
+	 */
+	public long getRemainingNanos() {
+		return remainingNanos;
+	}
+
+	@Override
+	public String toString() {
+		return resourceName + ": holders=" + holders + " disables=" + disables + " elapsedMs=" + elapsedNanos / 1e6
+				+ (remainingNanos < 0 ? "" : " remainingMs=" + remainingNanos / 1e6);
+	}
+}
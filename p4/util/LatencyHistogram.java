@@ -0,0 +1,151 @@
+package cmsc433.p4.util;
+
+/**
+ * Histogram of latencies in the style of HdrHistogram: buckets are linear within each
+ * power of two, so every recorded value is kept to within about 3% of its true value
+ * whatever its magnitude.  Recording is a few arithmetic operations on a long array
+ * and never allocates after the first value.
+ *
+ * Values are non-negative longs, normally nanoseconds; values at or above 2^44
+ * (about 4.9 hours in nanoseconds) are recorded as 2^44 - 1, though the exact maximum
+ * is still tracked.
+ *
+ * Histograms are not thread-safe; each belongs to a single actor, and copies are sent
+ * in messages.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 6;							// log2 of buckets per power of two
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int HALF_COUNT = SUB_COUNT / 2;
+	private static final int MAX_BITS = 44;							// Values are clamped below 2^MAX_BITS
+	private static final int BUCKETS = SUB_COUNT + (MAX_BITS - SUB_BITS) * HALF_COUNT;
+
+	private long[] counts;	// Allocated on first record
+	private long count;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	/**
+	 * Record a value.
+	 *
+	 * @param value	Value to record; negative values are recorded as 0
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		if (counts == null)
+			counts = new long[BUCKETS];
+		counts[index(value)]++;
+		count++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * Add all values recorded in another histogram to this one.
+	 *
+	 * @param other	Histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		if (other.count == 0)
+			return;
+		if (counts == null)
+			counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * @return	Copy of this histogram
+	 */
+	public LatencyHistogram copy() {
+		LatencyHistogram h = new LatencyHistogram();
+		h.add(this);
+		return h;
+	}
+
+	/**
+	 * Forget all recorded values.
+	 */
+	public void reset() {
+		counts = null;
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Return value below which the given percentage of recorded values fall.  The
+	 * result is the upper end of the bucket containing that value, and never more
+	 * than the maximum recorded value.
+	 *
+	 * @param percentile	Percentile, between 0 and 100
+	 * @return				Value at percentile, or 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(percentile / 100.0 * count);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(highestValue(i), max);
+		}
+		return max;
+	}
+
+	private static int index(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_BITS)
+			return BUCKETS - 1;
+		int shift = exponent - SUB_BITS + 1;
+		return SUB_COUNT + (exponent - SUB_BITS) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+	}
+
+	private static long highestValue(int index) {
+		if (index < SUB_COUNT)
+			return index;
+		int exponent = (index - SUB_COUNT) / HALF_COUNT + SUB_BITS;
+		int shift = exponent - SUB_BITS + 1;
+		long sub = (index - SUB_COUNT) % HALF_COUNT + HALF_COUNT;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + " p50=" + getValueAtPercentile(50) + " p99=" + getValueAtPercentile(99)
+				+ " p99.9=" + getValueAtPercentile(99.9) + " max=" + max;
+	}
+}
@@ -0,0 +1,39 @@
+package cmsc433.p4.util;
+
+/**
+ * A renewal of the lease on access a user holds to a resource, which users can make.
+ * Like a release, it gets no response; a renewal arriving after the lease has expired,
+ * or for access held without a lease, is ignored.
+ */
+public class LeaseRenewal {
+	
+	private final String resourceName;
+	private final long leaseMs;
+	
+	/**
+	 * @param resourceName	Name of resource
+	 * @param leaseMs		New length of the lease from now, in milliseconds, or 0 for the
+	 * 						length it was granted with
+	 */
+	public LeaseRenewal (String resourceName, long leaseMs) {
+		if (leaseMs < 0)
+			throw new IllegalArgumentException("Negative lease: " + leaseMs);
+		this.resourceName = resourceName;
+		this.leaseMs = leaseMs;
+	}
+	
+	public String getResourceName () {
+		return resourceName;
+	}
+	
+	/**
+	 * @return	New length of the lease, in milliseconds, or 0 for the length it was granted with
+	 */
+	public long getLeaseMs () {
+		return leaseMs;
+	}
+	
+	public String toString () {
+		return "Renew lease on " + resourceName + (leaseMs == 0 ? "" : " for " + leaseMs + " ms");
+	}
+}
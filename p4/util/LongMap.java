@@ -0,0 +1,148 @@
+package cmsc433.p4.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to values, so that looking up a request ID neither
+ * boxes the key nor allocates an entry.  Keys are stored in an open-addressed table
+ * with linear probing, and removal shifts later entries back rather than leaving
+ * tombstones, so the table never needs cleaning.
+ *
+ * Maps are not thread-safe; each belongs to a single actor.
+ *
+ * @param <V>	Type of values; values may not be null
+ */
+public class LongMap<V> {
+
+	private static final int MIN_CAPACITY = 8;
+
+	private long[] keys;
+	private Object[] values;	// Null for free slots
+	private int size;
+	private int mask;
+
+	public LongMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expected	Number of entries expected
+	 */
+	public LongMap(int expected) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 < expected * 4) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * @param key	Key
+	 * @return		Slot holding key, or free slot where it would go
+	 */
+	private int slot(long key) {
+		int i = hash(key) & mask;
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * @param key	Key
+	 * @return		Value for key, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		return (V) values[slot(key)];
+	}
+
+	public boolean containsKey(long key) {
+		return values[slot(key)] != null;
+	}
+
+	/**
+	 * @param key	Key
+	 * @param value	Value, not null
+	 * @return		Previous value for key, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null)
+			throw new NullPointerException("Null value for key " + key);
+		int i = slot(key);
+		V old = (V) values[i];
+		keys[i] = key;
+		values[i] = value;
+		if (old == null && ++size * 4 > values.length * 3) {
+			grow();
+		}
+		return old;
+	}
+
+	/**
+	 * @param key	Key
+	 * @return		Value that was removed, or null if key was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = slot(key);
+		V old = (V) values[i];
+		if (old == null)
+			return null;
+		values[i] = null;
+		size--;
+		// Move back later entries of the run whose home slot is not between the hole and them
+		int hole = i;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				keys[hole] = keys[j];
+				values[hole] = values[j];
+				values[j] = null;
+				hole = j;
+			}
+		}
+		return old;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(oldValues.length * 2);
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Remove all entries, keeping the table.
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+}
@@ -33,7 +33,21 @@ public class Main {
 		// Create actor system and instantiate a simulation manager.
 				
 		ActorSystem system = ActorSystem.create("Simulation");
-		ArrayList<NodeSpecification> nodes = setupTest1();
+		// the test to run may be given as an argument, as in "Main 4"
+		ArrayList<NodeSpecification> nodes;
+		switch (args.length > 0 ? args[0] : "1") {
+		case "2":
+			nodes = setupTest2();
+			break;
+		case "3":
+			nodes = setupTest3();
+			break;
+		case "4":
+			nodes = setupTest4();
+			break;
+		default:
+			nodes = setupTest1();
+		}
 		ActorRef simulationManager = SimulationManagerActor.makeSimulationManager(nodes, system);
 		
 		// Start simulation manager and retrieve result
@@ -54,12 +68,11 @@ public class Main {
 		system.terminate();
 		
 		// Causes this thread to block until the shutdown is complete.
-//		try {
-//			Await.ready(system.whenTerminated(), Duration.Inf());
-//		} catch (TimeoutException | InterruptedException e) {
-//			// TODO Auto-generated catch block
-//			e.printStackTrace();
-//		}
+		try {
+			Await.ready(system.whenTerminated(), Duration.Inf());
+		} catch (TimeoutException | InterruptedException e) {
+			e.printStackTrace();
+		}
 		
 		// It is critical not to examine the log until after the actor system has shutdown. Otherwise, the log
 		// may still be being modified as ResourceManagers send messages to the LoggerActor.
@@ -127,4 +140,27 @@ public class Main {
 		list.add(node2);
 		return list;
 	}
+	
+	/**
+	 * Request timeouts: the user on the second node asks for Printer_0 while the first
+	 * holds it, first with a timeout that runs out and then with one that does not.
+	 */
+	private static ArrayList<NodeSpecification> setupTest4 () throws FileNotFoundException {
+		ArrayList<Resource> printers = Systems.makeResources("Printer", 1);
+		ArrayList<Resource> scanners = Systems.makeResources("Scanner", 1);
+		
+		ArrayList<UserScript> scriptList1 = new ArrayList<UserScript> ();
+		scriptList1.add(UserScript.fromFile("test4script1.txt"));
+		
+		ArrayList<UserScript> scriptList2 = new ArrayList<UserScript> ();
+		scriptList2.add(UserScript.fromFile("test4script2.txt"));
+		
+		NodeSpecification node1 = new NodeSpecification(printers, scriptList1);
+		NodeSpecification node2 = new NodeSpecification(scanners, scriptList2);
+		
+		ArrayList<NodeSpecification> list = new ArrayList<NodeSpecification> ();
+		list.add(node1);
+		list.add(node2);
+		return list;
+	}
 }
@@ -12,10 +12,26 @@ public class ManagementRequest {
 
 	private final String resourceName;
 	private final ManagementRequestType type;
+	private final long deadlineMs;
 	
 	public ManagementRequest (String name, ManagementRequestType type) {
+		this(name, type, 0);
+	}
+	
+	/**
+	 * @param name			Name of resource
+	 * @param type			Type of request
+	 * @param deadlineMs	For a disable, how long it may wait for holders to release before
+	 * 						the owner revokes their access, in milliseconds; 0 waits for good
+	 */
+	public ManagementRequest (String name, ManagementRequestType type, long deadlineMs) {
+		if (deadlineMs < 0)
+			throw new IllegalArgumentException("Negative deadline: " + deadlineMs);
+		if (deadlineMs > 0 && type != ManagementRequestType.DISABLE)
+			throw new IllegalArgumentException("Only disable requests can have a deadline");
 		this.resourceName = name;
 		this.type = type;
+		this.deadlineMs = deadlineMs;
 	}
 
 	public String getResourceName () {
@@ -26,6 +42,14 @@ public class ManagementRequest {
 		return type;
 	}
 	
+	/**
+	 * @return	Longest time a disable waits for holders before revoking their access, in
+	 * 			milliseconds, or 0 for no limit
+	 */
+	public long getDeadlineMs () {
+		return deadlineMs;
+	}
+	
 	@Override
 	public String toString () {
 		return type.toString() + " " + resourceName + " request";
@@ -0,0 +1,140 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+import cmsc433.p4.enums.AccessRequestType;
+import akka.actor.ActorRef;
+
+/**
+ * Class of requests for access to several resources at once, all or nothing.  The
+ * parts are kept in the global order of resource names, and are acquired in that order,
+ * so two such requests can never each hold a resource the other is waiting for.
+ *
+ * A request travels from the owner of one part to the owner of the next, each owner
+ * acquiring its part before passing the request on, so the request names the part
+ * it has reached: getResourceName() is the resource of the current part, which is
+ * how managers route the request, and it records the owners of the parts acquired so
+ * far.  The owner of the last part answers the user with one grant; if a part is
+ * denied, the parts already acquired are released at their owners and the user gets
+ * one denial.
+ */
+public class MultiAccessRequest extends AccessRequest {
+
+	private static final Comparator<AccessRequest> BY_NAME = (a, b) -> a.getResourceName().compareTo(b.getResourceName());
+
+	private final ArrayList<AccessRequest> parts;	// Shared by all copies; never modified
+	private final int index;						// Current part
+	private final ActorRef[] owners;				// Owners of parts before the current one
+
+	/**
+	 * @param parts	Requests for single resources, of any of the single-resource
+	 * 				types, for distinct resources
+	 */
+	public MultiAccessRequest (ArrayList<AccessRequest> parts) {
+		this(sorted(parts), 0, new ActorRef[0]);
+	}
+
+	private MultiAccessRequest (ArrayList<AccessRequest> parts, int index, ActorRef[] owners) {
+		super(parts.get(index).getResourceName(), AccessRequestType.ALL_OF_BLOCKING);
+		this.parts = parts;
+		this.index = index;
+		this.owners = owners;
+	}
+
+	private static ArrayList<AccessRequest> sorted (ArrayList<AccessRequest> parts) {
+		if (parts.isEmpty())
+			throw new IllegalArgumentException("Request for no resources");
+		ArrayList<AccessRequest> result = new ArrayList<AccessRequest>(parts);
+		Collections.sort(result, BY_NAME);
+		for (int i = 0; i < result.size(); i++) {
+			AccessRequest part = result.get(i);
+			if (part instanceof MultiAccessRequest)
+				throw new IllegalArgumentException("Nested multi-resource request");
+			if (part instanceof AnyOfAccessRequest)
+				throw new IllegalArgumentException("Any-of request in multi-resource request");
+			if (i > 0 && part.getResourceName().equals(result.get(i - 1).getResourceName()))
+				throw new IllegalArgumentException("Resource " + part.getResourceName() + " requested twice");
+		}
+		return result;
+	}
+
+	/**
+	 * @return	Parts of request, in the order they are acquired
+	 */
+	public ArrayList<AccessRequest> getParts() {
+		return new ArrayList<AccessRequest>(parts);
+	}
+
+	/**
+	 * @return	Number of parts acquired before the current one
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return	Current part
+	 */
+	public AccessRequest getPart() {
+		return parts.get(index);
+	}
+
+	/**
+	 * @param i	Number of part
+	 * @return	Part
+	 */
+	public AccessRequest getPart(int i) {
+		return parts.get(i);
+	}
+
+	/**
+	 * @param i	Number of part acquired before the current one
+	 * @return	Manager owning the part
+	 */
+	public ActorRef getOwner(int i) {
+		return owners[i];
+	}
+
+	/**
+	 * @return	Whether the current part is the last
+	 */
+	public boolean isLast() {
+		return index == parts.size() - 1;
+	}
+
+	/**
+	 * @param owner	Manager owning the current part, which it has acquired
+	 * @return		Copy of this request whose current part is the next one
+	 */
+	public MultiAccessRequest next(ActorRef owner) {
+		ActorRef[] acquired = Arrays.copyOf(owners, index + 1);
+		acquired[index] = owner;
+		return new MultiAccessRequest(parts, index + 1, acquired);
+	}
+
+	/**
+	 * @param request	Access request
+	 * @return			Current part of request if it is a multi-resource request, the
+	 * 					single-resource request it amounts to if it is an any-of request,
+	 * 					and otherwise the request itself
+	 */
+	public static AccessRequest partOf (AccessRequest request) {
+		if (request instanceof MultiAccessRequest)
+			return ((MultiAccessRequest) request).getPart();
+		if (request instanceof AnyOfAccessRequest)
+			return ((AnyOfAccessRequest) request).getPart();
+		return request;
+	}
+
+	@Override
+	public String toString () {
+		StringBuilder sb = new StringBuilder(getType().toString()).append(" request for");
+		for (int i = 0; i < parts.size(); i++) {
+			sb.append(i == 0 ? " " : " & ").append(parts.get(i).getType()).append(' ').append(parts.get(i).getResourceName());
+		}
+		return sb.toString();
+	}
+}
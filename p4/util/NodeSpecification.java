@@ -8,7 +8,8 @@ import java.util.ArrayList;
  * A node consists of a list of resource local to the node, and scripts to be run
  * by users local to the node.  The idea is that each node will have a single
  * resource manager that manages the resources and processes requests from users,
- * each of which will be running one script.
+ * each of which will be running one script.  Resources may also be declared as
+ * ranges, which cost the manager nothing until they are used.
  * 
  * @author Rance Cleaveland
  *
@@ -16,9 +17,15 @@ import java.util.ArrayList;
 public class NodeSpecification {
 	private final ArrayList<Resource> resources;
 	private final ArrayList<UserScript> userScripts;
+	private final ArrayList<ResourceRange> resourceRanges;
 	
 	public NodeSpecification (ArrayList<Resource> resources, ArrayList<UserScript> userScripts) {
+		this(resources, new ArrayList<ResourceRange>(), userScripts);
+	}
+	
+	public NodeSpecification (ArrayList<Resource> resources, ArrayList<ResourceRange> resourceRanges, ArrayList<UserScript> userScripts) {
 		this.resources = resources;
+		this.resourceRanges = resourceRanges;
 		this.userScripts = userScripts;
 	}
 
@@ -26,6 +33,10 @@ public class NodeSpecification {
 		return resources;
 	}
 
+	public ArrayList<ResourceRange> getResourceRanges() {
+		return resourceRanges;
+	}
+
 	public ArrayList<UserScript> getUserScripts() {
 		return userScripts;
 	}
@@ -0,0 +1,105 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Map from resource ranges to values, looked up by resource name, so that ownership
+ * of a range can be recorded without an entry per resource.  Ranges are grouped by
+ * base name, and lookup scans the ranges with the base name of the resource.
+ *
+ * Indexes are not thread-safe; each belongs to a single actor.
+ *
+ * @param <T>	Type of values
+ */
+public class RangeIndex<T> {
+
+	private static final class Entry<T> {
+		final ResourceRange range;
+		final T value;
+
+		Entry(ResourceRange range, T value) {
+			this.range = range;
+			this.value = value;
+		}
+	}
+
+	private final HashMap<String,ArrayList<Entry<T>>> byBaseName = new HashMap<String,ArrayList<Entry<T>>>();
+	private int size;
+
+	/**
+	 * Add a range.  Ranges with the same base name should not overlap; if they do,
+	 * lookups return the value of the range added first.
+	 *
+	 * @param range	Range
+	 * @param value	Value for resources in range
+	 */
+	public void put(ResourceRange range, T value) {
+		byBaseName.computeIfAbsent(range.getBaseName(), k -> new ArrayList<Entry<T>>(1)).add(new Entry<T>(range, value));
+		size++;
+	}
+
+	/**
+	 * @param name	Resource name
+	 * @return		Range containing the resource, or null if none does
+	 */
+	public ResourceRange rangeOf(String name) {
+		Entry<T> e = find(name);
+		return e == null ? null : e.range;
+	}
+
+	/**
+	 * @param name	Resource name
+	 * @return		Value of range containing the resource, or null if none does
+	 */
+	public T get(String name) {
+		Entry<T> e = find(name);
+		return e == null ? null : e.value;
+	}
+
+	/**
+	 * @return	Values of all ranges
+	 */
+	public ArrayList<T> values() {
+		ArrayList<T> result = new ArrayList<T>(size);
+		for (ArrayList<Entry<T>> entries : byBaseName.values()) {
+			for (Entry<T> e : entries) {
+				result.add(e.value);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return	All ranges
+	 */
+	public ArrayList<ResourceRange> ranges() {
+		ArrayList<ResourceRange> result = new ArrayList<ResourceRange>(size);
+		for (ArrayList<Entry<T>> entries : byBaseName.values()) {
+			for (Entry<T> e : entries) {
+				result.add(e.range);
+			}
+		}
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private Entry<T> find(String name) {
+		if (size == 0)
+			return null;
+		int number = ResourceRange.number(name);
+		if (number < 0)
+			return null;
+		ArrayList<Entry<T>> entries = byBaseName.get(name.substring(0, name.lastIndexOf('_')));
+		if (entries == null)
+			return null;
+		for (Entry<T> e : entries) {
+			if (e.range.contains(number))
+				return e;
+		}
+		return null;
+	}
+}
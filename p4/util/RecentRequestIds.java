@@ -0,0 +1,61 @@
+package cmsc433.p4.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of the most recently seen request IDs, used by managers to drop requests that
+ * a client has retried.  Only the last capacity IDs are remembered, oldest forgotten
+ * first, so memory stays bounded however long the manager runs; a retry arriving
+ * after that many newer requests is treated as new.
+ *
+ * Sets are not thread-safe; each belongs to a single actor.
+ */
+public class RecentRequestIds {
+
+	private final LongMap<Boolean> seen;
+	private final int capacity;
+	private long[] order;		// Ring of remembered IDs, grown up to capacity; oldest at next once full
+	private int next;
+	private int count;
+
+	/**
+	 * @param capacity	Number of IDs to remember
+	 */
+	public RecentRequestIds(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		this.seen = new LongMap<Boolean>();
+		this.capacity = capacity;
+		this.order = new long[Math.min(capacity, 16)];
+	}
+
+	/**
+	 * Record a request ID.
+	 *
+	 * @param id	Request ID, not 0
+	 * @return		Whether the ID is new, that is, not among the remembered IDs
+	 */
+	public boolean add(long id) {
+		if (seen.containsKey(id))
+			return false;
+		if (count == capacity) {
+			seen.remove(order[next]);
+		}
+		else {
+			if (count == order.length) {
+				// Not yet full, so the ring is in order from 0 and next is 0 again
+				order = Arrays.copyOf(order, Math.min(capacity, order.length * 2));
+				next = count;
+			}
+			count++;
+		}
+		order[next] = id;
+		next = (next + 1) % order.length;
+		seen.put(id, Boolean.TRUE);
+		return true;
+	}
+
+	public int size() {
+		return count;
+	}
+}
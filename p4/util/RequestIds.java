@@ -0,0 +1,39 @@
+package cmsc433.p4.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generator of request IDs for one actor.  An ID is the actor's source number in the
+ * high 32 bits and a per-actor sequence number in the low 32 bits, so IDs are unique
+ * across the JVM without actors sharing a counter per request; only the source numbers
+ * come from a global counter, once per generator.  IDs are never 0, which request
+ * messages use to mean "no ID".
+ *
+ * Generators are not thread-safe; each belongs to a single actor.
+ */
+public class RequestIds {
+
+	private static final AtomicInteger SOURCES = new AtomicInteger();
+
+	private final int source;
+	private int sequence;
+
+	public RequestIds() {
+		this.source = SOURCES.incrementAndGet();
+	}
+
+	/**
+	 * @return	New request ID
+	 */
+	public long next() {
+		return ((long) source << 32) | (++sequence & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @param id	Request ID
+	 * @return		Source number of actor that made the ID
+	 */
+	public static int source(long id) {
+		return (int) (id >>> 32);
+	}
+}
@@ -0,0 +1,97 @@
+package cmsc433.p4.util;
+
+/**
+ * Monotonic timestamps (System.nanoTime()) of the stages a request goes through:
+ * creation by the user, arrival at the user's local manager, arrival at the manager
+ * owning the resource, entry into the owner's queue of blocked requests, and the
+ * response.  A stage that has not happened (yet) has timestamp 0.
+ * 
+ * Timestamps are only collected when the system property cmsc433.p4.timestamps is
+ * true; otherwise begin() returns null and requests carry no timestamps.  Objects of
+ * this class are immutable: each stage produces a new copy.
+ */
+public final class RequestTimes {
+	
+	/**
+	 * Whether requests are timestamped.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("cmsc433.p4.timestamps");
+	
+	private final long created;
+	private final long localArrival;
+	private final long ownerArrival;
+	private final long enqueued;
+	private final long responded;
+	
+	private RequestTimes(long created, long localArrival, long ownerArrival, long enqueued, long responded) {
+		this.created = created;
+		this.localArrival = localArrival;
+		this.ownerArrival = ownerArrival;
+		this.enqueued = enqueued;
+		this.responded = responded;
+	}
+	
+	/**
+	 * @return	Timestamps of a request created now, or null if timestamps are disabled
+	 */
+	public static RequestTimes begin() {
+		return ENABLED ? new RequestTimes(System.nanoTime(), 0, 0, 0, 0) : null;
+	}
+	
+	/**
+	 * @return	Timestamps of the request sent again, after a response that did not answer
+	 * 			it: the creation time is kept, so latency covers the extra trip, and the
+	 * 			other stages start over
+	 */
+	public RequestTimes resent() {
+		return new RequestTimes(created, 0, 0, 0, 0);
+	}
+	
+	/**
+	 * @return	Copy with arrival at local manager set to now
+	 */
+	public RequestTimes atLocalManager() {
+		return new RequestTimes(created, System.nanoTime(), ownerArrival, enqueued, responded);
+	}
+	
+	/**
+	 * @return	Copy with arrival at owning manager set to now
+	 */
+	public RequestTimes atOwner() {
+		return new RequestTimes(created, localArrival, System.nanoTime(), enqueued, responded);
+	}
+	
+	/**
+	 * @return	Copy with entry into queue of blocked requests set to now
+	 */
+	public RequestTimes atEnqueue() {
+		return new RequestTimes(created, localArrival, ownerArrival, System.nanoTime(), responded);
+	}
+	
+	/**
+	 * @return	Copy with response set to now
+	 */
+	public RequestTimes atResponse() {
+		return new RequestTimes(created, localArrival, ownerArrival, enqueued, System.nanoTime());
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public long getLocalArrival() {
+		return localArrival;
+	}
+
+	public long getOwnerArrival() {
+		return ownerArrival;
+	}
+
+	public long getEnqueued() {
+		return enqueued;
+	}
+
+	public long getResponded() {
+		return responded;
+	}
+}
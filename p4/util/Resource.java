@@ -1,15 +1,22 @@
 package cmsc433.p4.util;
 
+import cmsc433.p4.enums.GrantPolicy;
 import cmsc433.p4.enums.ResourceStatus;
 
 /**
  * Class of resources.
  * 
+ * An ordinary resource is read concurrently or written exclusively.  A capacity
+ * resource instead has a number of identical slots, and grants up to that many
+ * slot requests at once, from the same user or different users.
+ * 
  * @author Rance Cleaveland
  *
  */
 public class Resource {
 	public final String name;	// Resource name
+	private final GrantPolicy grantPolicy;	// Null for the policy of the owning manager
+	private final int capacity;				// Number of slots, or 0 for an ordinary resource
 	private volatile ResourceStatus status = ResourceStatus.DISABLED;
 	
 	/**
@@ -17,7 +24,30 @@ public class Resource {
 	 * @param name	Name of resource
 	 */
 	public Resource (String name) {
+		this(name, null);
+	}
+
+	/**
+	 * Creates new resource with given name and grant policy, and default status of DISABLED.
+	 * @param name			Name of resource
+	 * @param grantPolicy	Policy for granting access, or null for that of the owning manager
+	 */
+	public Resource (String name, GrantPolicy grantPolicy) {
+		this(name, grantPolicy, 0);
+	}
+
+	/**
+	 * Creates new resource with given name, grant policy and capacity, and default status of DISABLED.
+	 * @param name			Name of resource
+	 * @param grantPolicy	Policy for granting access, or null for that of the owning manager
+	 * @param capacity		Number of slots of a capacity resource, or 0 for an ordinary resource
+	 */
+	public Resource (String name, GrantPolicy grantPolicy, int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
 		this.name = name;
+		this.grantPolicy = grantPolicy;
+		this.capacity = capacity;
 	}
 	
 	/**
@@ -28,6 +58,20 @@ public class Resource {
 	}
 
 
+	/**
+	 * @return Policy for granting access, or null for that of the owning manager
+	 */
+	public GrantPolicy getGrantPolicy() {
+		return grantPolicy;
+	}
+
+	/**
+	 * @return Number of slots of a capacity resource, or 0 for an ordinary resource
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
 	/**
 	 * @return Status of resource
 	 */
@@ -0,0 +1,137 @@
+package cmsc433.p4.util;
+
+import cmsc433.p4.enums.GrantPolicy;
+
+/**
+ * Class of resource ranges: the resources named baseName_first through baseName_last,
+ * as made by Systems.makeResources, declared without creating a Resource object or
+ * name for each.  A manager owning a range creates the state of a resource in it only
+ * when the resource is used.
+ */
+public class ResourceRange {
+	private final String baseName;
+	private final int first;
+	private final int last;		// Inclusive
+	private final GrantPolicy grantPolicy;	// Null for the policy of the owning manager
+
+	/**
+	 * @param baseName	Base name of resources
+	 * @param first		Number of first resource
+	 * @param last		Number of last resource, inclusive
+	 */
+	public ResourceRange (String baseName, int first, int last) {
+		this(baseName, first, last, null);
+	}
+
+	/**
+	 * @param baseName		Base name of resources
+	 * @param first			Number of first resource
+	 * @param last			Number of last resource, inclusive
+	 * @param grantPolicy	Policy for granting access to the resources, or null for that of
+	 * 						the owning manager
+	 */
+	public ResourceRange (String baseName, int first, int last, GrantPolicy grantPolicy) {
+		if (first < 0 || last < first)
+			throw new IllegalArgumentException("Bad resource range " + first + ".." + last);
+		this.baseName = baseName;
+		this.first = first;
+		this.last = last;
+		this.grantPolicy = grantPolicy;
+	}
+
+	public String getBaseName() {
+		return baseName;
+	}
+
+	public int getFirst() {
+		return first;
+	}
+
+	public int getLast() {
+		return last;
+	}
+
+	/**
+	 * @return	Policy for granting access to the resources, or null for that of the owning manager
+	 */
+	public GrantPolicy getGrantPolicy() {
+		return grantPolicy;
+	}
+
+	/**
+	 * @param grantPolicy	Policy for granting access to the resources
+	 * @return				Range of the same resources with given policy
+	 */
+	public ResourceRange withGrantPolicy(GrantPolicy grantPolicy) {
+		return new ResourceRange(baseName, first, last, grantPolicy);
+	}
+
+	/**
+	 * @return	Number of resources in range
+	 */
+	public int size() {
+		return last - first + 1;
+	}
+
+	/**
+	 * @param number	Number of resource in range
+	 * @return			Name of resource
+	 */
+	public String getName(int number) {
+		return baseName + "_" + Integer.toString(number);
+	}
+
+	/**
+	 * @param number	Resource number
+	 * @return			Whether number is in range
+	 */
+	public boolean contains(int number) {
+		return number >= first && number <= last;
+	}
+
+	/**
+	 * @param name	Resource name
+	 * @return		Whether resource with given name is in range
+	 */
+	public boolean contains(String name) {
+		int number = number(name);
+		return number >= 0 && contains(number) && name.length() == baseName.length() + 1 + digits(number)
+				&& name.startsWith(baseName);
+	}
+
+	/**
+	 * Return the number at the end of a resource name of the form base_number, without
+	 * allocating.  Numbers with leading zeros are not resource numbers.
+	 *
+	 * @param name	Resource name
+	 * @return		Number, or -1 if the name does not end in _number
+	 */
+	public static int number(String name) {
+		int i = name.length() - 1;
+		long n = 0;
+		long scale = 1;
+		while (i >= 0 && Character.isDigit(name.charAt(i)) && scale <= Integer.MAX_VALUE) {
+			n += (name.charAt(i) - '0') * scale;
+			scale *= 10;
+			i--;
+		}
+		if (i < 0 || i == name.length() - 1 || name.charAt(i) != '_' || n > Integer.MAX_VALUE
+				|| (name.charAt(i + 1) == '0' && i + 2 < name.length()))
+			return -1;
+		return (int) n;
+	}
+
+	private static int digits(int number) {
+		int d = 1;
+		while (number >= 10) {
+			number /= 10;
+			d++;
+		}
+		return d;
+	}
+
+	@Override
+	public String toString() {
+		return baseName + "_[" + first + ".." + last + "]";
+	}
+}
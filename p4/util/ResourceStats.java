@@ -0,0 +1,312 @@
+package cmsc433.p4.util;
+
+import cmsc433.p4.enums.AccessRequestDenialReason;
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.RevocationReason;
+
+/**
+ * Contention counters for one local resource, kept by the resource's manager.
+ *
+ * All counters are primitive fields, and updates never allocate, so the counters can
+ * stay on in production.  Wait and hold times are not measured per request: the
+ * manager reports every change to the depth of the wait queue and to the number of
+ * access holders, and the counters integrate these over time.  The integral of queue
+ * depth over time is the sum of the time spent waiting by all requests, and the
+ * integral of the holder count is the sum of the time access was held.
+ *
+ * Counters are not thread-safe; each belongs to a single manager, and copies made with
+ * snapshot() are sent in messages.
+ */
+public class ResourceStats {
+	private static final AccessRequestType[] TYPES = AccessRequestType.values();
+	private static final AccessRequestDenialReason[] REASONS = AccessRequestDenialReason.values();
+	private static final RevocationReason[] REVOCATIONS = RevocationReason.values();
+
+	private final String name;
+	private final long[] grants = new long[TYPES.length];		// Indexed by AccessRequestType ordinal
+	private final long[] denials = new long[REASONS.length];	// Indexed by AccessRequestDenialReason ordinal
+	private final long[] revocations = new long[REVOCATIONS.length];	// Indexed by RevocationReason ordinal
+	private int queueDepth;			// Blocking requests waiting
+	private int peakQueueDepth;
+	private int holders;			// Accesses currently held
+	private long waitNanos;			// Integral of queueDepth
+	private long holdNanos;			// Integral of holders
+	private long lastUpdate;		// Time integrals were last brought up to date
+	private long drainStart;		// When disable began waiting for holders, or 0 if not draining
+	private long drains;			// Completed drains
+	private long forcedDrains;		// Drains ended by revoking the holders at a deadline
+	private long drainNanos;		// Total time of completed drains
+	private long maxDrainNanos;
+
+	/**
+	 * @param name	Name of resource
+	 */
+	public ResourceStats(String name) {
+		this.name = name;
+		this.lastUpdate = System.nanoTime();
+	}
+
+	/**
+	 * Bring wait and hold time up to date.
+	 */
+	private void advance(long now) {
+		long elapsed = now - lastUpdate;
+		waitNanos += queueDepth * elapsed;
+		holdNanos += holders * elapsed;
+		lastUpdate = now;
+	}
+
+	/**
+	 * Record a grant, which adds a holder.
+	 */
+	public void granted(AccessRequestType type, long now) {
+		advance(now);
+		grants[type.ordinal()]++;
+		holders++;
+	}
+
+	/**
+	 * Record a denial.
+	 */
+	public void denied(AccessRequestDenialReason reason) {
+		denials[reason.ordinal()]++;
+	}
+
+	/**
+	 * Record the access of a user being revoked; each access it held is also released.
+	 */
+	public void revoked(RevocationReason reason) {
+		revocations[reason.ordinal()]++;
+	}
+
+	/**
+	 * Record release of an access.
+	 */
+	public void released(long now) {
+		advance(now);
+		holders--;
+	}
+
+	/**
+	 * Record a blocking request joining the wait queue.
+	 */
+	public void enqueued(long now) {
+		advance(now);
+		queueDepth++;
+		if (queueDepth > peakQueueDepth)
+			peakQueueDepth = queueDepth;
+	}
+
+	/**
+	 * Record a blocking request leaving the wait queue, whether granted or denied.
+	 */
+	public void dequeued(long now) {
+		advance(now);
+		queueDepth--;
+	}
+
+	/**
+	 * Record start of a disable that must wait for holders to release.  Does nothing if
+	 * a drain is already in progress.
+	 */
+	public void drainStarted(long now) {
+		if (drainStart == 0)
+			drainStart = now;
+	}
+
+	/**
+	 * Record the drain in progress ending without the resource being disabled, because
+	 * every disable waiting on it was dropped.
+	 */
+	public void drainAbandoned() {
+		drainStart = 0;
+	}
+
+	/**
+	 * Record the drain in progress reaching its deadline, so that the holders are revoked.
+	 */
+	public void drainForced() {
+		forcedDrains++;
+	}
+
+	/**
+	 * Record the resource being disabled, ending any drain in progress.
+	 *
+	 * @return	Duration of the drain, or -1 if none was in progress
+	 */
+	public long drainFinished(long now) {
+		if (drainStart == 0)
+			return -1;
+		long d = now - drainStart;
+		drains++;
+		drainNanos += d;
+		if (d > maxDrainNanos)
+			maxDrainNanos = d;
+		drainStart = 0;
+		return d;
+	}
+
+	/**
+	 * @param now	Current time
+	 * @return		Copy of these counters with wait and hold time up to date
+	 */
+	public ResourceStats snapshot(long now) {
+		advance(now);
+		ResourceStats s = new ResourceStats(name);
+		System.arraycopy(grants, 0, s.grants, 0, grants.length);
+		System.arraycopy(denials, 0, s.denials, 0, denials.length);
+		System.arraycopy(revocations, 0, s.revocations, 0, revocations.length);
+		s.queueDepth = queueDepth;
+		s.peakQueueDepth = peakQueueDepth;
+		s.holders = holders;
+		s.waitNanos = waitNanos;
+		s.holdNanos = holdNanos;
+		s.lastUpdate = now;
+		s.drainStart = drainStart;
+		s.drains = drains;
+		s.forcedDrains = forcedDrains;
+		s.drainNanos = drainNanos;
+		s.maxDrainNanos = maxDrainNanos;
+		return s;
+	}
+
+	/**
+	 * Add the counters of an idle resource, with nothing waiting or held, to these
+	 * counters; used to keep the totals of a range as the state of its resources is
+	 * dropped.  Peak queue depth and maximum drain time are the larger of the two.
+	 *
+	 * @param other	Counters to add
+	 * @param now	Current time
+	 */
+	public void add(ResourceStats other, long now) {
+		advance(now);
+		other.advance(now);
+		for (int i = 0; i < grants.length; i++) {
+			grants[i] += other.grants[i];
+		}
+		for (int i = 0; i < denials.length; i++) {
+			denials[i] += other.denials[i];
+		}
+		for (int i = 0; i < revocations.length; i++) {
+			revocations[i] += other.revocations[i];
+		}
+		peakQueueDepth = Math.max(peakQueueDepth, other.peakQueueDepth);
+		waitNanos += other.waitNanos;
+		holdNanos += other.holdNanos;
+		drains += other.drains;
+		forcedDrains += other.forcedDrains;
+		drainNanos += other.drainNanos;
+		maxDrainNanos = Math.max(maxDrainNanos, other.maxDrainNanos);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getGrants(AccessRequestType type) {
+		return grants[type.ordinal()];
+	}
+
+	public long getDenials(AccessRequestDenialReason reason) {
+		return denials[reason.ordinal()];
+	}
+
+	/**
+	 * @return	Users whose access was revoked for the reason
+	 */
+	public long getRevocations(RevocationReason reason) {
+		return revocations[reason.ordinal()];
+	}
+
+	/**
+	 * @return	Grants of all types
+	 */
+	public long getTotalGrants() {
+		long total = 0;
+		for (long g : grants) {
+			total += g;
+		}
+		return total;
+	}
+
+	/**
+	 * @return	Denials for all reasons
+	 */
+	public long getTotalDenials() {
+		long total = 0;
+		for (long d : denials) {
+			total += d;
+		}
+		return total;
+	}
+
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	public int getPeakQueueDepth() {
+		return peakQueueDepth;
+	}
+
+	public int getHolders() {
+		return holders;
+	}
+
+	/**
+	 * @return	Total time spent in the wait queue by all blocking requests, in nanoseconds
+	 */
+	public long getWaitNanos() {
+		return waitNanos;
+	}
+
+	/**
+	 * @return	Total time access was held, summed over all holders, in nanoseconds
+	 */
+	public long getHoldNanos() {
+		return holdNanos;
+	}
+
+	public long getDrains() {
+		return drains;
+	}
+
+	/**
+	 * @return	Drains whose holders were revoked at a deadline
+	 */
+	public long getForcedDrains() {
+		return forcedDrains;
+	}
+
+	/**
+	 * @param now	Current time
+	 * @return		Time the drain in progress has taken so far, in nanoseconds, or 0 if none is
+	 */
+	public long getCurrentDrainNanos(long now) {
+		return (drainStart == 0) ? 0 : now - drainStart;
+	}
+
+	/**
+	 * @return	Total time between disable requests and disabling, in nanoseconds
+	 */
+	public long getDrainNanos() {
+		return drainNanos;
+	}
+
+	public long getMaxDrainNanos() {
+		return maxDrainNanos;
+	}
+
+	/**
+	 * @return	Whether a disable is waiting for holders to release
+	 */
+	public boolean isDraining() {
+		return drainStart != 0;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": grants=" + getTotalGrants() + " denials=" + getTotalDenials() + " queue=" + queueDepth
+				+ " peak=" + peakQueueDepth + " waitMs=" + waitNanos / 1e6 + " holdMs=" + holdNanos / 1e6
+				+ " drains=" + drains + " forced=" + forcedDrains + " drainMs=" + drainNanos / 1e6;
+	}
+}
@@ -14,10 +14,34 @@ public class SystemActors {
 	
 	private final ArrayList<ActorRef> resourceManagers;
 	private final ArrayList<ActorRef> users;
+	private final int userCount;
+	private final ActorRef deadlockDetector;	// Null if there is none
 	
 	public SystemActors (ArrayList<ActorRef> resourceManagers, ArrayList<ActorRef> users) {
+		this(resourceManagers, users, users.size());
+	}
+	
+	/**
+	 * @param resourceManagers	Managers
+	 * @param users				Actors to send UserStartMsg to
+	 * @param userCount			Users run by these actors, which is more than their number
+	 * 							if users are multiplexed
+	 */
+	public SystemActors (ArrayList<ActorRef> resourceManagers, ArrayList<ActorRef> users, int userCount) {
+		this(resourceManagers, users, userCount, null);
+	}
+	
+	/**
+	 * @param resourceManagers	Managers
+	 * @param users				Actors to send UserStartMsg to
+	 * @param userCount			Users run by these actors
+	 * @param deadlockDetector	Deadlock detector watching the managers, or null
+	 */
+	public SystemActors (ArrayList<ActorRef> resourceManagers, ArrayList<ActorRef> users, int userCount, ActorRef deadlockDetector) {
 		this.resourceManagers = resourceManagers;
 		this.users = users;
+		this.userCount = userCount;
+		this.deadlockDetector = deadlockDetector;
 	}
 
 	public ArrayList<ActorRef> getResourceManagers() {
@@ -28,4 +52,18 @@ public class SystemActors {
 		return users;
 	}
 
+	/**
+	 * @return	Number of users, each of which logs its start and termination
+	 */
+	public int getUserCount() {
+		return userCount;
+	}
+
+	/**
+	 * @return	Deadlock detector watching the managers, or null if there is none
+	 */
+	public ActorRef getDeadlockDetector() {
+		return deadlockDetector;
+	}
+
 }
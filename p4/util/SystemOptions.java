@@ -0,0 +1,265 @@
+package cmsc433.p4.util;
+
+import cmsc433.p4.enums.GrantPolicy;
+
+/**
+ * Immutable options for assembling a resource-management system with
+ * Systems.makeSystem.  Each with... method returns a copy with one option changed, so
+ * options can be built up from the defaults:
+ *
+ *     SystemOptions.defaults().withResourceChunkSize(1000)
+ */
+public class SystemOptions {
+
+	private static final SystemOptions DEFAULTS = new SystemOptions();
+
+	// Fields are only assigned in copies made by with... methods, before the copy is returned
+	private int resourceChunkSize = 10000;	// Maximum resources per AddInitialLocalResourcesRequestMsg
+	private long setupTimeoutMs = 60000;	// Time allowed for all setup messages to be acknowledged
+	private boolean multiplexedUsers;		// Run each node's users in one UserDriverActor
+	private int pipelineWindow = 1;			// Most script steps each user has in flight
+	private boolean batchedRequests;		// Send access requests of a step in one AccessRequestBatchMsg
+	private boolean ownerCache;				// Users send requests straight to owners they have learned
+	private GrantPolicy grantPolicy = GrantPolicy.READER_PREFERRING;	// For resources that do not name their own
+	private long deadlockDetectionMs;		// Time between deadlock detection rounds, or 0 for no detector
+	private int maxQueuedPerResource;		// Most blocking requests waiting for one resource, or 0 for no limit
+	private int maxWaitingPerManager;		// Most requests waiting in one manager, or 0 for no limit
+	private int managerMailboxCapacity;		// Most messages in a manager's mailbox before access requests are denied, or 0
+	private boolean priorityManagerMailbox;	// Managers take releases and management messages before new requests
+
+	private SystemOptions() {
+	}
+
+	private SystemOptions copy() {
+		SystemOptions o = new SystemOptions();
+		o.resourceChunkSize = resourceChunkSize;
+		o.setupTimeoutMs = setupTimeoutMs;
+		o.multiplexedUsers = multiplexedUsers;
+		o.pipelineWindow = pipelineWindow;
+		o.batchedRequests = batchedRequests;
+		o.ownerCache = ownerCache;
+		o.grantPolicy = grantPolicy;
+		o.deadlockDetectionMs = deadlockDetectionMs;
+		o.maxQueuedPerResource = maxQueuedPerResource;
+		o.maxWaitingPerManager = maxWaitingPerManager;
+		o.managerMailboxCapacity = managerMailboxCapacity;
+		o.priorityManagerMailbox = priorityManagerMailbox;
+		return o;
+	}
+
+	/**
+	 * @return	Default options
+	 */
+	public static SystemOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * @param resourceChunkSize	Maximum number of resources registered with a manager per message
+	 * @return					Copy of these options with given chunk size
+	 */
+	public SystemOptions withResourceChunkSize(int resourceChunkSize) {
+		if (resourceChunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive: " + resourceChunkSize);
+		SystemOptions o = copy();
+		o.resourceChunkSize = resourceChunkSize;
+		return o;
+	}
+
+	/**
+	 * @param setupTimeoutMs	Time allowed for managers to acknowledge setup messages
+	 * @return					Copy of these options with given timeout
+	 */
+	public SystemOptions withSetupTimeoutMs(long setupTimeoutMs) {
+		SystemOptions o = copy();
+		o.setupTimeoutMs = setupTimeoutMs;
+		return o;
+	}
+
+	/**
+	 * @param multiplexedUsers	Whether each node's users are run by a single UserDriverActor,
+	 * 							rather than one UserActor per user
+	 * @return					Copy of these options with given setting
+	 */
+	public SystemOptions withMultiplexedUsers(boolean multiplexedUsers) {
+		SystemOptions o = copy();
+		o.multiplexedUsers = multiplexedUsers;
+		return o;
+	}
+
+	/**
+	 * @param pipelineWindow	Most script steps a UserActor may have in flight at once; 1 runs
+	 * 							scripts one step at a time.  Multiplexed users always run one
+	 * 							step at a time.
+	 * @return					Copy of these options with given window
+	 */
+	public SystemOptions withPipelineWindow(int pipelineWindow) {
+		if (pipelineWindow <= 0)
+			throw new IllegalArgumentException("Window must be positive: " + pipelineWindow);
+		SystemOptions o = copy();
+		o.pipelineWindow = pipelineWindow;
+		return o;
+	}
+
+	/**
+	 * @param batchedRequests	Whether a UserActor sends the access requests of each step in
+	 * 							one AccessRequestBatchMsg, rather than one message each
+	 * @return					Copy of these options with given setting
+	 */
+	public SystemOptions withBatchedRequests(boolean batchedRequests) {
+		SystemOptions o = copy();
+		o.batchedRequests = batchedRequests;
+		return o;
+	}
+
+	/**
+	 * @param ownerCache	Whether a UserActor remembers which manager answered its requests for
+	 * 						each remote resource, and sends later requests and releases for the
+	 * 						resource straight to that manager instead of via its local manager
+	 * @return				Copy of these options with given setting
+	 */
+	public SystemOptions withOwnerCache(boolean ownerCache) {
+		SystemOptions o = copy();
+		o.ownerCache = ownerCache;
+		return o;
+	}
+
+	/**
+	 * @param grantPolicy	Policy managers use for resources and ranges registered without
+	 * 						a policy of their own
+	 * @return				Copy of these options with given policy
+	 */
+	public SystemOptions withGrantPolicy(GrantPolicy grantPolicy) {
+		if (grantPolicy == null)
+			throw new NullPointerException("Null grant policy");
+		SystemOptions o = copy();
+		o.grantPolicy = grantPolicy;
+		return o;
+	}
+
+	/**
+	 * @param deadlockDetectionMs	Time between rounds of a DeadlockDetectorActor watching the
+	 * 								managers, in milliseconds, or 0 for no detector
+	 * @return						Copy of these options with given interval
+	 */
+	public SystemOptions withDeadlockDetectionMs(long deadlockDetectionMs) {
+		if (deadlockDetectionMs < 0)
+			throw new IllegalArgumentException("Interval must not be negative: " + deadlockDetectionMs);
+		SystemOptions o = copy();
+		o.deadlockDetectionMs = deadlockDetectionMs;
+		return o;
+	}
+
+	/**
+	 * @param maxQueuedPerResource	Most blocking requests that may wait for any one resource;
+	 * 								managers deny more with reason OVERLOADED.  0 means no limit.
+	 * @return						Copy of these options with given limit
+	 */
+	public SystemOptions withMaxQueuedPerResource(int maxQueuedPerResource) {
+		if (maxQueuedPerResource < 0)
+			throw new IllegalArgumentException("Limit must not be negative: " + maxQueuedPerResource);
+		SystemOptions o = copy();
+		o.maxQueuedPerResource = maxQueuedPerResource;
+		return o;
+	}
+
+	/**
+	 * @param maxWaitingPerManager	Most requests that may wait in any one manager, queued for its
+	 * 								resources or held while it discovers remote ones; the manager
+	 * 								denies more access requests with reason OVERLOADED.  0 means
+	 * 								no limit.
+	 * @return						Copy of these options with given limit
+	 */
+	public SystemOptions withMaxWaitingPerManager(int maxWaitingPerManager) {
+		if (maxWaitingPerManager < 0)
+			throw new IllegalArgumentException("Limit must not be negative: " + maxWaitingPerManager);
+		SystemOptions o = copy();
+		o.maxWaitingPerManager = maxWaitingPerManager;
+		return o;
+	}
+
+	/**
+	 * @param managerMailboxCapacity	Most messages in a manager's mailbox before access requests
+	 * 									arriving are denied with reason OVERLOADED without being
+	 * 									queued, or 0 for unbounded mailboxes.  Bounded mailboxes
+	 * 									need an actor system made by Systems.makeActorSystem with
+	 * 									these options.
+	 * @return							Copy of these options with given capacity
+	 */
+	public SystemOptions withManagerMailboxCapacity(int managerMailboxCapacity) {
+		if (managerMailboxCapacity < 0)
+			throw new IllegalArgumentException("Capacity must not be negative: " + managerMailboxCapacity);
+		SystemOptions o = copy();
+		o.managerMailboxCapacity = managerMailboxCapacity;
+		return o;
+	}
+
+	/**
+	 * @param priorityManagerMailbox	Whether managers take releases, management requests and
+	 * 									their other control messages ahead of new access requests
+	 * 									and discovery messages, rather than in arrival order.
+	 * 									Priority mailboxes need an actor system made by
+	 * 									Systems.makeActorSystem with these options.
+	 * @return							Copy of these options with given setting
+	 */
+	public SystemOptions withPriorityManagerMailbox(boolean priorityManagerMailbox) {
+		SystemOptions o = copy();
+		o.priorityManagerMailbox = priorityManagerMailbox;
+		return o;
+	}
+
+	public int getResourceChunkSize() {
+		return resourceChunkSize;
+	}
+
+	public long getSetupTimeoutMs() {
+		return setupTimeoutMs;
+	}
+
+	public boolean isMultiplexedUsers() {
+		return multiplexedUsers;
+	}
+
+	public int getPipelineWindow() {
+		return pipelineWindow;
+	}
+
+	public boolean isBatchedRequests() {
+		return batchedRequests;
+	}
+
+	public boolean isOwnerCache() {
+		return ownerCache;
+	}
+
+	public GrantPolicy getGrantPolicy() {
+		return grantPolicy;
+	}
+
+	public long getDeadlockDetectionMs() {
+		return deadlockDetectionMs;
+	}
+
+	public int getMaxQueuedPerResource() {
+		return maxQueuedPerResource;
+	}
+
+	public int getMaxWaitingPerManager() {
+		return maxWaitingPerManager;
+	}
+
+	public int getManagerMailboxCapacity() {
+		return managerMailboxCapacity;
+	}
+
+	public boolean isPriorityManagerMailbox() {
+		return priorityManagerMailbox;
+	}
+
+	/**
+	 * @return	Whether managers need a ManagerMailbox, for a bound or for priority
+	 */
+	public boolean hasManagerMailbox() {
+		return managerMailboxCapacity > 0 || priorityManagerMailbox;
+	}
+}
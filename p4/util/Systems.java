@@ -3,20 +3,22 @@ package cmsc433.p4.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import cmsc433.p4.actors.DeadlockDetectorActor;
 import cmsc433.p4.actors.ResourceManagerActor;
 import cmsc433.p4.actors.UserActor;
+import cmsc433.p4.actors.UserDriverActor;
 import cmsc433.p4.messages.AddInitialLocalResourcesRequestMsg;
-import cmsc433.p4.messages.AddInitialLocalResourcesResponseMsg;
 import cmsc433.p4.messages.AddLocalUsersRequestMsg;
-import cmsc433.p4.messages.AddLocalUsersResponseMsg;
 import cmsc433.p4.messages.AddRemoteManagersRequestMsg;
-import cmsc433.p4.messages.AddRemoteManagersResponseMsg;
+import cmsc433.p4.actors.ManagerMailbox;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.dispatch.Futures;
 import akka.pattern.Patterns;
 import scala.concurrent.Await;
 import scala.concurrent.Future;
 import scala.concurrent.duration.Duration;
+import com.typesafe.config.ConfigFactory;
 
 /**
  * Class of static methods for assembling resource-management systems
@@ -37,6 +39,21 @@ public class Systems {
 		return new Resource(name);
 	}
 
+	/**
+	 * Make a capacity resource with the given name.
+	 * 
+	 * @param name
+	 *            Resource name
+	 * @param capacity
+	 *            Number of slots
+	 * @return Resource object with given name and capacity
+	 */
+	public static Resource makeCapacityResource(String name, int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		return new Resource(name, null, capacity);
+	}
+
 	/**
 	 * Make a resource with the given base name, and "_number" appended.
 	 * 
@@ -67,9 +84,44 @@ public class Systems {
 		}
 		return new ArrayList<Resource>(Arrays.asList(resourceArray));
 	}
+
+	/**
+	 * Make a range declaring the same resources as makeResources(baseName, number),
+	 * without creating them.
+	 * 
+	 * @param baseName
+	 *            Base name of resources
+	 * @param number
+	 *            Number of instances of resource in range
+	 * @return Range of resources
+	 */
+	public static ResourceRange makeResourceRange(String baseName, int number) {
+		return new ResourceRange(baseName, 0, number - 1);
+	}
+
+	/**
+	 * Make an actor system configured for the given options: with a mailbox for managers
+	 * bounded to options.getManagerMailboxCapacity() messages if that is not 0, and
+	 * giving priority to control messages if options.isPriorityManagerMailbox(), and
+	 * otherwise as ActorSystem.create(name) would.
+	 * 
+	 * @param name		Name of actor system
+	 * @param options	Options the system will be assembled with
+	 * @return			New actor system
+	 */
+	public static ActorSystem makeActorSystem(String name, SystemOptions options) {
+		if (!options.hasManagerMailbox()) {
+			return ActorSystem.create(name);
+		}
+		return ActorSystem.create(name, ConfigFactory.parseString(ManagerMailbox.ID + " {\n"
+				+ "mailbox-type = \"" + ManagerMailbox.class.getName() + "\"\n"
+				+ "capacity = " + options.getManagerMailboxCapacity() + "\n"
+				+ "priority = " + options.isPriorityManagerMailbox() + "\n}").withFallback(ConfigFactory.load()));
+	}
+
 	/**
 	 * Create system of resource-manager, user actors from node list and
-	 * return actors.
+	 * return actors, using default options.
 	 * 
 	 * Note that for convenience, the actors that are created share ArrayLists of managers and users.
 	 * YOU ARE NOT ALLOWED TO DO THIS IN YOUR OWN CODE!
@@ -80,68 +132,110 @@ public class Systems {
 	 * @return List of user actors created
 	 */
 	public static SystemActors makeSystem(ArrayList<NodeSpecification> nodes, ActorRef logger, ActorSystem system) {
+		return makeSystem(nodes, logger, system, SystemOptions.defaults());
+	}
+
+	/**
+	 * Create system of resource-manager, user actors from node list and
+	 * return actors.
+	 * 
+	 * All managers are created first, and then every setup message is sent at once and
+	 * the acknowledgements awaited together, so setup takes roughly as long as the
+	 * slowest manager rather than the sum over all managers.  Resources are registered
+	 * in chunks of options.getResourceChunkSize(), so that no single message or
+	 * acknowledgement holds millions of resources.
+	 * 
+	 * With options.isMultiplexedUsers(), each node gets one UserDriverActor running all
+	 * its scripts instead of a UserActor per script.  Otherwise, users pipeline their
+	 * scripts with a window of options.getPipelineWindow() steps, and batch the access
+	 * requests of each step if options.isBatchedRequests().  Resources and ranges that
+	 * do not name a grant policy use options.getGrantPolicy().  If
+	 * options.getDeadlockDetectionMs() is not 0, a DeadlockDetectorActor is started once
+	 * setup is done.  Managers limit the requests waiting in them as
+	 * options.getMaxQueuedPerResource() and options.getMaxWaitingPerManager() say, and get
+	 * bounded mailboxes if options.getManagerMailboxCapacity() is not 0 and priority
+	 * mailboxes if options.isPriorityManagerMailbox(), in which case the actor system
+	 * must have been made by makeActorSystem.
+	 * 
+	 * @param nodes		List of node specs (resource list, user scripts)
+	 * @param logger	Actor to send logging messages to
+	 * @param context	Context in which to install actors
+	 * @param options	Options for the system
+	 * @return List of user actors created, or null if a manager failed to acknowledge setup
+	 */
+	public static SystemActors makeSystem(ArrayList<NodeSpecification> nodes, ActorRef logger, ActorSystem system, SystemOptions options) {
 
-		ArrayList<ActorRef> managers = new ArrayList<ActorRef>();
+		ArrayList<ActorRef> managers = new ArrayList<ActorRef>(nodes.size());
 		ArrayList<ActorRef> users = new ArrayList<ActorRef>();
+		ArrayList<Future<Object>> acks = new ArrayList<Future<Object>>();
+		int userCount = 0;
 		
-		long futureDelay = 1000; // millisecond
+		long futureDelay = options.getSetupTimeoutMs(); // millisecond
 		Duration awaitDelay = Duration.Inf();
+		int chunk = options.getResourceChunkSize();
 		
-		// For each node spec, create manager, users, accumulating each
+		// Create all managers first, so that every manager can be told about the others
+		// without waiting for any of them.
+		for (int i = 0; i < nodes.size(); i++) {
+			managers.add(ResourceManagerActor.makeResourceManager(logger, system, options));
+		}
 		
-		for (NodeSpecification spec : nodes) {
+		// For each node spec, register resources and users with the manager
+		for (int i = 0; i < nodes.size(); i++) {
+			NodeSpecification spec = nodes.get(i);
+			ActorRef manager = managers.get(i);
 			
-			// Create manager, add to list of managers.
-			ActorRef manager = ResourceManagerActor.makeResourceManager(logger, system);
-			managers.add(manager);
-			
-			// Assign local resources to new manager.
-			AddInitialLocalResourcesRequestMsg rmsg = new AddInitialLocalResourcesRequestMsg (spec.getResources());
-			Future<Object> fmsg = Patterns.ask(manager, rmsg, futureDelay);
-			try {
-				AddInitialLocalResourcesResponseMsg ack = (AddInitialLocalResourcesResponseMsg)Await.result(fmsg, awaitDelay);
+			// Assign local resources to new manager, a chunk at a time.
+			ArrayList<Resource> resources = spec.getResources();
+			for (int from = 0; from < resources.size(); from += chunk) {
+				ArrayList<Resource> part = (from == 0 && resources.size() <= chunk) ? resources
+						: new ArrayList<Resource>(resources.subList(from, Math.min(from + chunk, resources.size())));
+				acks.add(Patterns.ask(manager, new AddInitialLocalResourcesRequestMsg(part, new ArrayList<ResourceRange>(), options.getGrantPolicy()), futureDelay));
 			}
-			catch (Exception e) {
-				System.out.println(e);
-				System.out.println("Error in makeSystem(): local users");
-				return null;
+			if (!spec.getResourceRanges().isEmpty()) {
+				acks.add(Patterns.ask(manager, new AddInitialLocalResourcesRequestMsg(new ArrayList<Resource>(), spec.getResourceRanges(), options.getGrantPolicy()), futureDelay));
 			}
 			
-			
 			// Create users and add them into manager
-			for (UserScript s : spec.getUserScripts()) {
-				ActorRef user = UserActor.makeUser(s, manager, logger, system);
-				users.add(user);
-			}
-			AddLocalUsersRequestMsg amsg = new AddLocalUsersRequestMsg(users);
-			fmsg = Patterns.ask(manager, amsg, futureDelay);
-			try {
-				AddLocalUsersResponseMsg ack = (AddLocalUsersResponseMsg)Await.result(fmsg, awaitDelay);
+			ArrayList<ActorRef> localUsers = new ArrayList<ActorRef>(spec.getUserScripts().size());
+			if (options.isMultiplexedUsers()) {
+				if (!spec.getUserScripts().isEmpty()) {
+					localUsers.add(UserDriverActor.makeDriver(spec.getUserScripts(), manager, logger, system));
+				}
 			}
-			catch (Exception e) {
-				System.out.println(e);
-				System.out.println("Error in makeSystem(): local users");
-				return null;
+			else {
+				for (UserScript s : spec.getUserScripts()) {
+					ActorRef user = UserActor.makeUser(s, manager, logger, system, options);
+					localUsers.add(user);
+				}
 			}
+			userCount += spec.getUserScripts().size();
+			users.addAll(localUsers);
+			acks.add(Patterns.ask(manager, new AddLocalUsersRequestMsg(localUsers), futureDelay));
 			
+			// Update remote managers of manager
+			acks.add(Patterns.ask(manager, new AddRemoteManagersRequestMsg(managers), futureDelay));
 		}
 		
-		// Update remote managers of each manager
-		for (ActorRef m : managers) {
-			Future<Object> fmsg = Patterns.ask(m, new AddRemoteManagersRequestMsg(managers), futureDelay);
-			try {
-				AddRemoteManagersResponseMsg msg = (AddRemoteManagersResponseMsg)Await.result(fmsg, awaitDelay);
-			}
-			catch (Exception e) {
-				System.out.println(e);
-				System.out.println("Error in makeSystem(): remote managers");
-				return null;
-			}
+		// Wait for every manager to acknowledge every setup message
+		try {
+			Await.result(Futures.sequence(acks, system.dispatcher()), awaitDelay);
+		}
+		catch (Exception e) {
+			System.out.println(e);
+			System.out.println("Error in makeSystem(): setup");
+			return null;
+		}
+		
+		// Start deadlock detection once every manager knows its resources
+		ActorRef detector = null;
+		if (options.getDeadlockDetectionMs() > 0) {
+			detector = DeadlockDetectorActor.makeDetector(managers, options.getDeadlockDetectionMs(), system);
 		}
 		
 		// Return list of users
 
-		return new SystemActors(managers, users);
+		return new SystemActors(managers, users, userCount, detector);
 	}
 
 
@@ -0,0 +1,200 @@
+package cmsc433.p4.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel, for keeping the deadlines of many waiting requests without
+ * a scheduler timer each.  Time is divided into ticks; level 0 has a slot for each of
+ * the next 64 ticks, level 1 a slot for each of the next 64 spans of 64 ticks, and so
+ * on for LEVELS levels.  A timer goes in the slot of the coarsest level that still
+ * distinguishes its deadline, and moves down a level each time the wheel turns past
+ * the start of its slot, so it is moved at most LEVELS times before it expires:
+ * scheduling, cancelling and expiring each take constant time, amortized.  Deadlines
+ * beyond the range of the top level wait in its farthest slot and are placed again
+ * when it comes round.
+ *
+ * Timers in a slot form a doubly-linked list, so a timer can be cancelled without
+ * searching.  Deadlines are System.nanoTime() values, and expire on the first call of
+ * advance() at or after their tick.
+ *
+ * Wheels are not thread-safe; each belongs to a single actor.
+ *
+ * @param <T>	Type of items timed
+ */
+public class TimerWheel<T> {
+
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int LEVELS = 4;
+
+	/**
+	 * A scheduled item.
+	 *
+	 * @param <T>	Type of item
+	 */
+	public static final class Timer<T> {
+		private final T item;
+		private final long deadlineTick;
+		private int bucket = -1;		// Slot holding timer, as level * SLOTS + slot, or -1 if not scheduled
+		private Timer<T> prev;
+		private Timer<T> next;
+
+		private Timer(T item, long deadlineTick) {
+			this.item = item;
+			this.deadlineTick = deadlineTick;
+		}
+
+		public T getItem() {
+			return item;
+		}
+
+		/**
+		 * @return	Whether the timer has neither expired nor been cancelled
+		 */
+		public boolean isScheduled() {
+			return bucket >= 0;
+		}
+	}
+
+	private final long tickNanos;
+	private final long origin;			// Time of tick 0
+	private final Timer<T>[] buckets;	// First timer of each slot of each level
+	private long tick;					// Last tick processed
+	private int size;
+
+	/**
+	 * @param tickNanos	Length of a tick, in nanoseconds
+	 * @param now		Current time, from System.nanoTime()
+	 */
+	@SuppressWarnings("unchecked")
+	public TimerWheel(long tickNanos, long now) {
+		if (tickNanos <= 0)
+			throw new IllegalArgumentException("Tick must be positive: " + tickNanos);
+		this.tickNanos = tickNanos;
+		this.origin = now;
+		this.buckets = (Timer<T>[]) new Timer<?>[LEVELS * SLOTS];
+	}
+
+	/**
+	 * @param item		Item
+	 * @param deadline	Time the item expires, from System.nanoTime(); times already past
+	 * 					expire on the next tick
+	 * @return			Timer, for cancelling
+	 */
+	public Timer<T> schedule(T item, long deadline) {
+		long deadlineTick = Math.max(tick + 1, ceilDiv(deadline - origin, tickNanos));
+		Timer<T> t = new Timer<T>(item, deadlineTick);
+		place(t);
+		size++;
+		return t;
+	}
+
+	/**
+	 * @param t	Timer
+	 * @return	Whether the timer was scheduled, and is now cancelled
+	 */
+	public boolean cancel(Timer<T> t) {
+		if (!t.isScheduled())
+			return false;
+		unlink(t);
+		size--;
+		return true;
+	}
+
+	/**
+	 * Expire every timer whose deadline has passed, in order of tick.
+	 *
+	 * @param now		Current time, from System.nanoTime()
+	 * @param expired	Called with the item of each expired timer; must not schedule or cancel
+	 * 					timers of this wheel
+	 */
+	public void advance(long now, Consumer<T> expired) {
+		long target = Math.floorDiv(now - origin, tickNanos);
+		if (size == 0) {
+			tick = Math.max(tick, target);
+			return;
+		}
+		while (tick < target && size > 0) {
+			tick++;
+			// when a level turns over, move the timers of the next level's current slot down
+			for (int level = 1; level < LEVELS; level++) {
+				if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+					break;
+				int bucket = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+				Timer<T> t = buckets[bucket];
+				buckets[bucket] = null;
+				while (t != null) {
+					Timer<T> next = t.next;
+					place(t);
+					t = next;
+				}
+			}
+			int bucket = (int) (tick & (SLOTS - 1));
+			Timer<T> t = buckets[bucket];
+			buckets[bucket] = null;
+			while (t != null) {
+				Timer<T> next = t.next;
+				if (t.deadlineTick > tick) {
+					// parked beyond the range of the wheel; not yet due
+					place(t);
+				}
+				else {
+					t.bucket = -1;
+					t.prev = null;
+					t.next = null;
+					size--;
+					expired.accept(t.item);
+				}
+				t = next;
+			}
+		}
+		tick = Math.max(tick, target);
+	}
+
+	/**
+	 * @return	Number of scheduled timers
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void place(Timer<T> t) {
+		long delta = t.deadlineTick - tick;
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+			level++;
+		}
+		long slotTick = t.deadlineTick;
+		if (delta >= (1L << (SLOT_BITS * LEVELS))) {
+			// beyond the top level: park in its farthest slot
+			slotTick = tick + (1L << (SLOT_BITS * LEVELS)) - 1;
+		}
+		int bucket = level * SLOTS + (int) ((slotTick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+		t.bucket = bucket;
+		t.prev = null;
+		t.next = buckets[bucket];
+		if (t.next != null)
+			t.next.prev = t;
+		buckets[bucket] = t;
+	}
+
+	private void unlink(Timer<T> t) {
+		if (t.prev != null)
+			t.prev.next = t.next;
+		else
+			buckets[t.bucket] = t.next;
+		if (t.next != null)
+			t.next.prev = t.prev;
+		t.bucket = -1;
+		t.prev = null;
+		t.next = null;
+	}
+
+	private static long ceilDiv(long a, long b) {
+		return -Math.floorDiv(-a, b);
+	}
+}
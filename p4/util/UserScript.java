@@ -2,8 +2,11 @@ package cmsc433.p4.util;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import cmsc433.p4.enums.AccessRequestType;
 import cmsc433.p4.enums.AccessType;
@@ -17,20 +20,158 @@ import cmsc433.p4.enums.ManagementRequestType;
  * should be sent, then the corresponding response received, before the next step is
  * executed.
  * 
+ * Steps may be grouped into blocks that are repeated a number of times.  Blocks are
+ * never unrolled: a script only records its position in the blocks, and the requests
+ * in a step are created when the step is reached, so a loop of a million iterations
+ * takes no more memory than a single iteration.
+ * 
  * @author Rance Cleaveland
  *
  */
 public class UserScript {
 	
-	private ArrayList<ArrayList<Object>> script;  // List of steps
+	private final Frame position;	// Position of next step in script, or null if script is done
+	private final UserScript next;	// Script to continue with once this one is done
 	// TODO Add sleep step. 
 	
+	/**
+	 * A step of a script.  Steps are instantiated each time the script reaches them,
+	 * so a step inside a repeat block can produce different requests on each iteration.
+	 */
+	static interface Step {
+		/**
+		 * @param iteration	Number of times the enclosing blocks have repeated so far
+		 * @return			Fresh list of requests making up this step
+		 */
+		ArrayList<Object> instantiate(long iteration);
+	}
+	
+	/**
+	 * Step whose requests are the same on every iteration.
+	 */
+	private static final class FixedStep implements Step {
+		private final ArrayList<Object> requests;
+		
+		FixedStep(ArrayList<Object> requests) {
+			this.requests = requests;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public ArrayList<Object> instantiate(long iteration) {
+			return (ArrayList<Object>) requests.clone();
+		}
+	}
+	
+	/**
+	 * Block of steps and nested blocks that is executed count times in a row.  Blocks
+	 * are never expanded; a script only keeps track of its position in them.
+	 */
+	static final class Block {
+		private final long count;				// Number of times block is executed
+		private final ArrayList<Object> body;	// Steps and nested blocks
+		private final boolean hasSteps;			// Whether executing block produces any step
+		private final Block instances;			// Block executing this one once, used by fromBlock
+		
+		/**
+		 * @param count	Number of times block is executed
+		 * @param body	Steps and nested blocks; not copied, and must not be modified afterwards
+		 */
+		Block(long count, ArrayList<Object> body) {
+			this(count, body, true);
+		}
+		
+		private Block(long count, ArrayList<Object> body, boolean wrap) {
+			this.count = count;
+			this.body = body;
+			boolean found = false;
+			for (Object o : body) {
+				if (o instanceof Step || ((Block) o).hasSteps()) {
+					found = true;
+					break;
+				}
+			}
+			this.hasSteps = found && count > 0;
+			if (wrap) {
+				ArrayList<Object> self = new ArrayList<Object>(1);
+				self.add(this);
+				this.instances = new Block(1, self, false);
+			}
+			else {
+				this.instances = null;
+			}
+		}
+		
+		/**
+		 * @return	Whether executing this block would produce at least one step
+		 */
+		boolean hasSteps() {
+			return hasSteps;
+		}
+	}
+	
+	/**
+	 * Position in a block.  Frames are never modified, so scripts may share them.
+	 */
+	private static final class Frame {
+		private final Block block;		// Block being executed
+		private final int index;		// Index of current element in block body
+		private final long iteration;	// Number of completed iterations of block
+		private final Frame parent;		// Position in enclosing block, or null for outermost block
+		
+		Frame(Block block, int index, long iteration, Frame parent) {
+			this.block = block;
+			this.index = index;
+			this.iteration = iteration;
+			this.parent = parent;
+		}
+		
+		/**
+		 * @return	Number of times the steps in this block have been reached, counting
+		 * 			iterations of the enclosing blocks
+		 */
+		long ordinal() {
+			return (parent == null ? 0 : parent.ordinal() * block.count) + iteration;
+		}
+	}
+	
+	/**
+	 * Move forward from given frame until it refers to a step, entering nested blocks and
+	 * repeating or leaving finished blocks as necessary.
+	 * 
+	 * @param f	Frame to start from
+	 * @return	Frame referring to a step, or null if there are no more steps
+	 */
+	private static Frame settle(Frame f) {
+		while (f != null) {
+			if (f.index >= f.block.body.size()) {
+				if (f.iteration + 1 < f.block.count)
+					f = new Frame(f.block, 0, f.iteration + 1, f.parent);
+				else if (f.parent != null)
+					f = new Frame(f.parent.block, f.parent.index + 1, f.parent.iteration, f.parent.parent);
+				else
+					f = null;
+			}
+			else {
+				Object element = f.block.body.get(f.index);
+				if (element instanceof Step)
+					return f;
+				Block b = (Block) element;
+				if (b.hasSteps())
+					f = new Frame(b, 0, 0, f);
+				else
+					f = new Frame(f.block, f.index + 1, f.iteration, f.parent);
+			}
+		}
+		return null;
+	}
 	
 	/**
 	 * Create empty script.
 	 */
 	public UserScript() {
-		this.script = new ArrayList<ArrayList<Object>>();
+		this.position = null;
+		this.next = null;
 	}
 
 	/**
@@ -38,17 +179,51 @@ public class UserScript {
 	 * 
 	 * @param script	List of steps
 	 */
-	public UserScript(ArrayList<ArrayList<Object>> script) {	
-		this.script = script;
+	public UserScript(ArrayList<ArrayList<Object>> script) {
+		ArrayList<Object> body = new ArrayList<Object>(script.size());
+		for (ArrayList<Object> step : script) {
+			body.add(new FixedStep(step));
+		}
+		this.position = settle(new Frame(new Block(1, body), 0, 0, null));
+		this.next = null;
+	}
+	
+	/**
+	 * Create script positioned at given frame.
+	 * 
+	 * @param position	Position of next step; must not be null
+	 * @param next		Script to continue with when this one is done, or null
+	 */
+	private UserScript(Frame position, UserScript next) {
+		this.position = position;
+		this.next = next;
 	}
 	
 	/**
-	 * Return list of steps in script.
+	 * Create script that executes the given block once.
 	 * 
-	 * @return	List of steps
+	 * @param program	Outermost block of script
+	 * @return			Script positioned at first step of block
 	 */
-	private ArrayList<ArrayList<Object>> getScript() {
-		return script;
+	static UserScript fromBlock(Block program) {
+		return fromBlock(program, 0);
+	}
+	
+	/**
+	 * Create script that executes the given block once, as one of many instances of
+	 * the same block.  Iterations of the block are numbered starting from
+	 * instance * count, so steps can tell the instances apart while every instance
+	 * shares the one block.
+	 * 
+	 * @param program	Outermost block of script
+	 * @param instance	Which instance of the block this script is
+	 * @return			Script positioned at first step of block
+	 */
+	static UserScript fromBlock(Block program, long instance) {
+		// The wrapper executes the program once, but numbering its single iteration
+		// as instance offsets the iterations of the program itself.
+		Frame start = settle(new Frame(program.instances, 0, instance, null));
+		return start == null ? new UserScript() : new UserScript(start, null);
 	}
 	
 	/**
@@ -87,10 +262,11 @@ public class UserScript {
 	 * @return		Concatenated script
 	 */
 	public static UserScript concatenate (UserScript s1, UserScript s2) {
-		ArrayList<ArrayList<Object>> newScript = new ArrayList<ArrayList<Object>>();
-		newScript.addAll(s1.getScript());
-		newScript.addAll(s2.getScript());
-		return new UserScript(newScript);
+		if (s1.isDone()) {
+			return s2;
+		}
+		UserScript rest = (s1.next == null) ? s2 : concatenate(s1.next, s2);
+		return new UserScript(s1.position, rest);
 	}
 	
 	/**
@@ -99,7 +275,7 @@ public class UserScript {
 	 * @return	Boolean indicating if script is finished
 	 */
 	public boolean isDone() {
-		return script.isEmpty();
+		return position == null;
 	}
 	
 	/**
@@ -113,7 +289,7 @@ public class UserScript {
 			throw new Exception ("Empty script");
 		}
 		else {
-			return ((ArrayList<Object>) script.get(0).clone());
+			return ((Step) position.block.body.get(position.index)).instantiate(position.ordinal());
 		}
 	}
 	
@@ -126,73 +302,343 @@ public class UserScript {
 		if (isDone()) {
 			throw new Exception ("Empty script");
 		}
-		else {			
-			return new UserScript (new ArrayList<ArrayList<Object>> (script.subList(1, script.size())));
+		else {
+			Frame f = settle(new Frame(position.block, position.index + 1, position.iteration, position.parent));
+			if (f == null) {
+				return (next == null) ? new UserScript() : next;
+			}
+			return new UserScript(f, next);
 		}
 	}
 	
 	/**
 	 * 
 	 * @param script A string representation of the script, in the form:<br>
-	 * e = (Write/Read)-(Request-n/Request-b/Release) (Resource Name)<br>
+	 * e = (Write/Read/Slot)-(Request-n/Request-b/Release) (Resource Name)<br>
+	 *   = Any-(Write/Read/Slot)-Request (Group)<br>
 	 *   = (Enable/Disable) (Resource Name)<br>
+	 *   = Renew (Resource Name)<br>
 	 *   = Sleep (Duration)<br>
 	 *   = e | e<br>
-	 * Where the entire script is a series of one or more e's on different lines    
+	 *   = a & a<br>
+	 * Where a is an access request (Read/Write/Slot-Request-n/b), and the entire script is a
+	 * series of one or more e's on different lines.  Requests joined by & make one
+	 * MultiAccessRequest, granted for all its resources at once or denied.  Slot
+	 * requests and releases are for capacity resources, and take one of their slots.
+	 * An Any- request is granted whichever resource of its group is free (see
+	 * AnyOfAccessRequest); a release naming the group releases that resource.
+	 * Lines may be grouped into a block that is executed N times in a row by
+	 * putting them between a line "repeat N {" and a line "}"; blocks may be nested.<br>
+	 * A resource name may contain a numeric range, as in Printer_[0..99], in which
+	 * case the statement names a different resource each time it is executed: the
+	 * resources in the range are taken round-robin, or at random if the range is
+	 * written Printer_[0..99?].  A random pick is a hash of the iteration, so that a
+	 * request and a release in the same iteration name the same resource and a run can
+	 * be repeated; a seed may follow the ?, as in Printer_[0..99?7], for a different
+	 * sequence.<br>
+	 * A blocking request may end with "timeout N", as in Write-Request-b Printer_0 timeout 50,
+	 * to be denied with reason TIMEOUT if it has waited N milliseconds without being granted.
+	 * A read, write or slot request may end with "lease N", after any timeout, for access
+	 * that the owner revokes N milliseconds after granting it unless it is renewed first; the
+	 * statement "Renew (Resource Name)", which may also end with "lease N", renews it for
+	 * another N milliseconds, or as long as it was granted for.
+	 * A disable may end with "deadline N", as in Disable Printer_0 deadline 500, so that if
+	 * holders of the resource have not released their access N milliseconds after it arrives,
+	 * the owner revokes it and disables the resource.
 	 * @return A UserScript object representing the script
 	 */
 	public static UserScript fromString (String script) {
-		ArrayList<ArrayList<Object>> result = new ArrayList<ArrayList<Object>> ();
+		ArrayDeque<ArrayList<Object>> bodies = new ArrayDeque<ArrayList<Object>> ();
+		ArrayDeque<Long> counts = new ArrayDeque<Long> ();
+		ArrayList<Object> result = new ArrayList<Object> ();
 		
 		String[] lines = script.split("(\r|\n)+");
 		for (String line : lines) {
-			if (line.isEmpty()) 
+			String trimmed = line.trim();
+			if (trimmed.isEmpty()) 
+				continue;
+			
+			Matcher repeat = REPEAT_PATTERN.matcher(trimmed);
+			if (repeat.matches()) {
+				bodies.push(result);
+				counts.push(Long.parseLong(repeat.group(1)));
+				result = new ArrayList<Object> ();
 				continue;
+			}
+			if (trimmed.equals("}")) {
+				if (bodies.isEmpty())
+					throw new IllegalArgumentException("Unmatched } on line: " + line);
+				Block block = new Block(counts.pop(), result);
+				result = bodies.pop();
+				if (block.hasSteps())
+					result.add(block);
+				continue;
+			}
 			
 			ArrayList<Object> thisLine = new ArrayList<Object> ();
+			boolean parameterized = false;
 			
-			String[] statements = line.trim().split("\\|");
+			String[] statements = trimmed.split("\\|");
 			for (String statement : statements) {				
 				
-				String[] parts = statement.trim().split("\\s");
-				
-				if (parts.length < 2) 
-					throw new IllegalArgumentException("Script statement: " + statement + " did not have enough arguments\n\ton line: " + line);
-				
-				String command = parts[0];
-				String resource_name = parts[parts.length - 1];
-				
-				for (int i = 1; i < parts.length - 1; i++)
-					if (!parts[i].isEmpty())
-						throw new IllegalArgumentException("Script statement: " + statement + " had too many arguments\n\ton line: " + line);
-				
-				Object action;
-				if (command.equalsIgnoreCase("write-request-n")) {
-					action = new AccessRequest(resource_name, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING); 
-				} else if (command.equalsIgnoreCase("write-request-b")) {
-					action = new AccessRequest(resource_name, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING);
-				} else if (command.equalsIgnoreCase("read-request-n")) {
-					action = new AccessRequest(resource_name, AccessRequestType.CONCURRENT_READ_NONBLOCKING);
-				} else if (command.equalsIgnoreCase("read-request-b")) {
-					action = new AccessRequest(resource_name, AccessRequestType.CONCURRENT_READ_BLOCKING);
-				} else if (command.equalsIgnoreCase("write-release")) {
-					action = new AccessRelease(resource_name, AccessType.EXCLUSIVE_WRITE);
-				} else if (command.equalsIgnoreCase("read-release")) {
-					action = new AccessRelease(resource_name, AccessType.CONCURRENT_READ);
-				} else if (command.equalsIgnoreCase("enable")) {
-					action = new ManagementRequest(resource_name, ManagementRequestType.ENABLE);
-				} else if (command.equalsIgnoreCase("disable")) {
-					action = new ManagementRequest(resource_name, ManagementRequestType.DISABLE);
-				} else if (command.equalsIgnoreCase("sleep")) { 
-					action = new SleepStep (Long.parseLong(resource_name));
-				} else {
-					throw new IllegalArgumentException("Illegal command: " + command + "\n\ton the line: " + line);
+				String[] members = statement.split("&");
+				Object parsed;
+				if (members.length > 1) {
+					ArrayList<Object> group = new ArrayList<Object> (members.length);
+					boolean ranged = false;
+					for (String member : members) {
+						Object o = parseStatement(member, line);
+						ranged |= o instanceof Statement;
+						group.add(o);
+					}
+					AllOfStatement all = new AllOfStatement(group, line);
+					// Build one instance now so that bad groups are reported while parsing
+					Object instance = all.instantiate(0);
+					parsed = ranged ? all : instance;
 				}
-				thisLine.add(action);
+				else {
+					parsed = parseStatement(statement, line);
+				}
+				parameterized |= parsed instanceof Statement;
+				thisLine.add(parsed);
+			}
+			result.add(parameterized ? new ParameterizedStep(thisLine) : new FixedStep(thisLine));
+		}
+		if (!bodies.isEmpty())
+			throw new IllegalArgumentException("Script has " + bodies.size() + " unclosed repeat block(s)");
+		return fromBlock(new Block(1, result));
+	}
+	
+	private static final Pattern REPEAT_PATTERN = Pattern.compile("(?i)repeat\\s+(\\d+)\\s*\\{");
+	private static final Pattern RANGE_PATTERN = Pattern.compile("(.*)\\[(\\d+)\\.\\.(\\d+)(\\?(\\d*))?\\](.*)");
+	private static final Pattern TIMEOUT_PATTERN = Pattern.compile("(?i)(.*\\S)\\s+timeout\\s+(\\d+)\\s*");
+	private static final Pattern LEASE_PATTERN = Pattern.compile("(?i)(.*\\S)\\s+lease\\s+(\\d+)\\s*");
+	private static final Pattern DEADLINE_PATTERN = Pattern.compile("(?i)(.*\\S)\\s+deadline\\s+(\\d+)\\s*");
+	
+	/**
+	 * Parse a single script statement.
+	 * 
+	 * @param statement	Statement
+	 * @param line		Line statement occurs on, for error messages
+	 * @return			Request object, or Statement if the resource name has a range
+	 */
+	private static Object parseStatement (String statement, String line) {
+		long deadlineMs = 0;
+		Matcher deadline = DEADLINE_PATTERN.matcher(statement);
+		if (deadline.matches()) {
+			statement = deadline.group(1);
+			deadlineMs = Long.parseLong(deadline.group(2));
+		}
+		long leaseMs = 0;
+		Matcher lease = LEASE_PATTERN.matcher(statement);
+		if (lease.matches()) {
+			statement = lease.group(1);
+			leaseMs = Long.parseLong(lease.group(2));
+		}
+		long timeoutMs = 0;
+		Matcher timeout = TIMEOUT_PATTERN.matcher(statement);
+		if (timeout.matches()) {
+			statement = timeout.group(1);
+			timeoutMs = Long.parseLong(timeout.group(2));
+		}
+		String[] parts = statement.trim().split("\\s");
+		
+		if (parts.length < 2) 
+			throw new IllegalArgumentException("Script statement: " + statement + " did not have enough arguments\n\ton line: " + line);
+		
+		String command = parts[0];
+		String resource_name = parts[parts.length - 1];
+		
+		for (int i = 1; i < parts.length - 1; i++)
+			if (!parts[i].isEmpty())
+				throw new IllegalArgumentException("Script statement: " + statement + " had too many arguments\n\ton line: " + line);
+		
+		Matcher range = RANGE_PATTERN.matcher(resource_name);
+		if (range.matches()) {
+			RangedStatement ranged = new RangedStatement(command, range, timeoutMs, leaseMs, deadlineMs, line);
+			// Build one instance now so that bad commands are reported while parsing
+			ranged.instantiate(0);
+			return ranged;
+		}
+		return makeAction(command, resource_name, timeoutMs, leaseMs, deadlineMs, line);
+	}
+	
+	/**
+	 * Create the request described by a single script statement.
+	 * 
+	 * @param command		Command of statement
+	 * @param resource_name	Resource name (or duration, for sleep statements)
+	 * @param timeoutMs		Timeout of blocking request, in milliseconds, or 0 for none
+	 * @param leaseMs		Lease of access request or renewal, in milliseconds, or 0 for none
+	 * @param deadlineMs	Deadline of disable, in milliseconds, or 0 for none
+	 * @param line			Line statement occurs on, for error messages
+	 * @return				Request object
+	 */
+	private static Object makeAction (String command, String resource_name, long timeoutMs, long leaseMs, long deadlineMs, String line) {
+		Object action;
+		if (command.equalsIgnoreCase("write-request-n")) {
+			action = new AccessRequest(resource_name, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING, 0, leaseMs); 
+		} else if (command.equalsIgnoreCase("write-request-b")) {
+			action = new AccessRequest(resource_name, AccessRequestType.EXCLUSIVE_WRITE_BLOCKING, timeoutMs, leaseMs);
+		} else if (command.equalsIgnoreCase("read-request-n")) {
+			action = new AccessRequest(resource_name, AccessRequestType.CONCURRENT_READ_NONBLOCKING, 0, leaseMs);
+		} else if (command.equalsIgnoreCase("read-request-b")) {
+			action = new AccessRequest(resource_name, AccessRequestType.CONCURRENT_READ_BLOCKING, timeoutMs, leaseMs);
+		} else if (command.equalsIgnoreCase("slot-request-n")) {
+			action = new AccessRequest(resource_name, AccessRequestType.SLOT_NONBLOCKING, 0, leaseMs);
+		} else if (command.equalsIgnoreCase("slot-request-b")) {
+			action = new AccessRequest(resource_name, AccessRequestType.SLOT_BLOCKING, timeoutMs, leaseMs);
+		} else if (command.equalsIgnoreCase("any-write-request")) {
+			action = makeAnyOf(resource_name, AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING, line);
+		} else if (command.equalsIgnoreCase("any-read-request")) {
+			action = makeAnyOf(resource_name, AccessRequestType.CONCURRENT_READ_NONBLOCKING, line);
+		} else if (command.equalsIgnoreCase("any-slot-request")) {
+			action = makeAnyOf(resource_name, AccessRequestType.SLOT_NONBLOCKING, line);
+		} else if (command.equalsIgnoreCase("write-release")) {
+			action = new AccessRelease(resource_name, AccessType.EXCLUSIVE_WRITE);
+		} else if (command.equalsIgnoreCase("read-release")) {
+			action = new AccessRelease(resource_name, AccessType.CONCURRENT_READ);
+		} else if (command.equalsIgnoreCase("slot-release")) {
+			action = new AccessRelease(resource_name, AccessType.SLOT);
+		} else if (command.equalsIgnoreCase("renew")) {
+			action = new LeaseRenewal(resource_name, leaseMs);
+		} else if (command.equalsIgnoreCase("enable")) {
+			action = new ManagementRequest(resource_name, ManagementRequestType.ENABLE);
+		} else if (command.equalsIgnoreCase("disable")) {
+			action = new ManagementRequest(resource_name, ManagementRequestType.DISABLE, deadlineMs);
+		} else if (command.equalsIgnoreCase("sleep")) { 
+			action = new SleepStep (Long.parseLong(resource_name));
+		} else {
+			throw new IllegalArgumentException("Illegal command: " + command + "\n\ton the line: " + line);
+		}
+		if (timeoutMs > 0 && !(action instanceof AccessRequest && ((AccessRequest) action).getTimeoutMs() == timeoutMs))
+			throw new IllegalArgumentException("Only blocking requests can have a timeout\n\ton the line: " + line);
+		if (leaseMs > 0 && (action instanceof AnyOfAccessRequest || !(action instanceof AccessRequest || action instanceof LeaseRenewal)))
+			throw new IllegalArgumentException("Only read, write, slot and renew statements can have a lease\n\ton the line: " + line);
+		if (deadlineMs > 0 && !(action instanceof ManagementRequest && ((ManagementRequest) action).getDeadlineMs() == deadlineMs))
+			throw new IllegalArgumentException("Only disables can have a deadline\n\ton the line: " + line);
+		return action;
+	}
+	
+	private static AnyOfAccessRequest makeAnyOf (String group, AccessRequestType mode, String line) {
+		try {
+			return new AnyOfAccessRequest(group, mode);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(e.getMessage() + "\n\ton the line: " + line);
+		}
+	}
+	
+	/**
+	 * Statement whose request differs from one iteration to the next.
+	 */
+	private static interface Statement {
+		/**
+		 * @param iteration	Number of times the enclosing blocks have repeated so far
+		 * @return			Request for this iteration
+		 */
+		Object instantiate(long iteration);
+	}
+	
+	/**
+	 * Statement whose resource name contains a numeric range.
+	 */
+	private static final class RangedStatement implements Statement {
+		private final String command;
+		private final String prefix;	// Part of name before range
+		private final String suffix;	// Part of name after range
+		private final long low;
+		private final long size;		// Number of values in range
+		private final boolean random;	// Pick at random instead of round-robin
+		private final long seed;		// Seed of random picks
+		private final long timeoutMs;
+		private final long leaseMs;
+		private final long deadlineMs;
+		private final String line;
+		
+		RangedStatement(String command, Matcher range, long timeoutMs, long leaseMs, long deadlineMs, String line) {
+			this.command = command;
+			this.prefix = range.group(1);
+			this.low = Long.parseLong(range.group(2));
+			long high = Long.parseLong(range.group(3));
+			if (high < low)
+				throw new IllegalArgumentException("Empty range in " + range.group() + "\n\ton line: " + line);
+			this.size = high - low + 1;
+			this.random = range.group(4) != null;
+			this.seed = (range.group(5) == null || range.group(5).isEmpty()) ? 0 : Long.parseLong(range.group(5));
+			this.suffix = range.group(6);
+			this.timeoutMs = timeoutMs;
+			this.leaseMs = leaseMs;
+			this.deadlineMs = deadlineMs;
+			this.line = line;
+		}
+		
+		@Override
+		public Object instantiate(long iteration) {
+			long offset = random ? Math.floorMod(mix(seed * 0x9E3779B97F4A7C15L + iteration), size) : Math.floorMod(iteration, size);
+			return makeAction(command, prefix + (low + offset) + suffix, timeoutMs, leaseMs, deadlineMs, line);
+		}
+		
+		/**
+		 * @param x	Value
+		 * @return	Value with its bits mixed (the SplitMix64 finalizer), so that
+		 * 			consecutive values give unrelated results
+		 */
+		private static long mix(long x) {
+			x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+			x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+			return x ^ (x >>> 31);
+		}
+	}
+	
+	/**
+	 * Access requests joined by &, making one request for all their resources.
+	 */
+	private static final class AllOfStatement implements Statement {
+		private final ArrayList<Object> members;	// Requests and ranged statements
+		private final String line;
+		
+		AllOfStatement(ArrayList<Object> members, String line) {
+			this.members = members;
+			this.line = line;
+		}
+		
+		@Override
+		public Object instantiate(long iteration) {
+			ArrayList<AccessRequest> parts = new ArrayList<AccessRequest>(members.size());
+			for (Object o : members) {
+				Object request = (o instanceof Statement) ? ((Statement) o).instantiate(iteration) : o;
+				if (!(request instanceof AccessRequest))
+					throw new IllegalArgumentException("Only access requests can be joined by &\n\ton line: " + line);
+				parts.add((AccessRequest) request);
+			}
+			try {
+				return new MultiAccessRequest(parts);
+			}
+			catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(e.getMessage() + "\n\ton line: " + line);
+			}
+		}
+	}
+	
+	/**
+	 * Step containing at least one statement with a resource range.
+	 */
+	private static final class ParameterizedStep implements Step {
+		private final ArrayList<Object> statements;	// Requests and Statements
+		
+		ParameterizedStep(ArrayList<Object> statements) {
+			this.statements = statements;
+		}
+		
+		@Override
+		public ArrayList<Object> instantiate(long iteration) {
+			ArrayList<Object> step = new ArrayList<Object>(statements.size());
+			for (Object o : statements) {
+				step.add((o instanceof Statement) ? ((Statement) o).instantiate(iteration) : o);
 			}
-			result.add(thisLine);
+			return step;
 		}
-		return new UserScript(result);
 	}
 	
 	/**
@@ -0,0 +1,47 @@
+package cmsc433.p4.util;
+
+import akka.actor.ActorRef;
+
+/**
+ * Class of identities of users run by a user driver, many to an actor.  Managers
+ * grant access to, and take releases from, the virtual user named in a message
+ * rather than the actor that sent it, and echo it in their responses so the driver
+ * can pass each response to the right user.
+ *
+ * Virtual users are immutable and compared by value.
+ */
+public class VirtualUser {
+	private final ActorRef driver;	// Actor running the user
+	private final int index;		// Number of user within driver
+
+	public VirtualUser (ActorRef driver, int index) {
+		this.driver = driver;
+		this.index = index;
+	}
+
+	public ActorRef getDriver() {
+		return driver;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof VirtualUser))
+			return false;
+		VirtualUser v = (VirtualUser) o;
+		return index == v.index && driver.equals(v.driver);
+	}
+
+	@Override
+	public int hashCode() {
+		return driver.hashCode() * 31 + index;
+	}
+
+	@Override
+	public String toString() {
+		return driver.path().name() + "#" + index;
+	}
+}
@@ -0,0 +1,70 @@
+package cmsc433.p4.util;
+
+import akka.actor.ActorRef;
+
+/**
+ * Edge of the wait-for graph: a user with a request waiting for a resource, and a user
+ * it waits for, either because that user holds the resource or because its request is
+ * ahead in the queue of a resource that does not let later requests overtake.  Users
+ * are user actors or virtual users, as in the holders of a resource.
+ *
+ * Edges are immutable and compared by value, so that the same wait seen in two
+ * snapshots is the same edge.
+ */
+public class WaitForEdge {
+	private final Object waiter;		// User whose request is waiting
+	private final Object holder;		// User it waits for
+	private final String resourceName;	// Resource the request is waiting for
+	private final ActorRef manager;		// Owner of resource
+	private final long since;			// System.nanoTime() when the request started waiting, or 0 if not timestamped
+
+	public WaitForEdge (Object waiter, Object holder, String resourceName, ActorRef manager, long since) {
+		this.waiter = waiter;
+		this.holder = holder;
+		this.resourceName = resourceName;
+		this.manager = manager;
+		this.since = since;
+	}
+
+	public Object getWaiter() {
+		return waiter;
+	}
+
+	public Object getHolder() {
+		return holder;
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	public ActorRef getManager() {
+		return manager;
+	}
+
+	/**
+	 * @return	System.nanoTime() when the request started waiting, or 0 if the request is not
+	 * 			timestamped
+	 */
+	public long getSince() {
+		return since;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof WaitForEdge))
+			return false;
+		WaitForEdge e = (WaitForEdge) o;
+		return since == e.since && waiter.equals(e.waiter) && holder.equals(e.holder) && resourceName.equals(e.resourceName);
+	}
+
+	@Override
+	public int hashCode() {
+		return (waiter.hashCode() * 31 + holder.hashCode()) * 31 + resourceName.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return waiter + " waits for " + holder + " on " + resourceName;
+	}
+}
@@ -0,0 +1,318 @@
+package cmsc433.p4.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+import cmsc433.p4.enums.AccessRequestType;
+import cmsc433.p4.enums.AccessType;
+import cmsc433.p4.enums.ManagementRequestType;
+
+/**
+ * Generator of synthetic workloads for resource-management systems.
+ *
+ * Node i owns resources named Node{i}_0 .. Node{i}_{r-1}.  Every user runs a number
+ * of operations; an operation either accesses a resource (request, think time,
+ * release) or, with the churn probability, disables a resource and enables it again.
+ * Resources are picked with Zipfian popularity, on the user's own node with the local
+ * probability and on a uniformly chosen other node otherwise.
+ *
+ * User scripts are never materialized: all users share one script block, and the
+ * requests of each operation are derived from the seed, the user number and the
+ * operation number when the user reaches them.  A generated user therefore costs a
+ * few small objects no matter how many operations it performs, and the same
+ * parameters always generate the same workload.
+ */
+public class WorkloadGenerator {
+
+	private int nodes = 2;					// Number of nodes
+	private int usersPerNode = 1;			// Number of users on each node
+	private int resourcesPerNode = 1;		// Number of resources owned by each node
+	private long operationsPerUser = 1;		// Number of operations each user performs
+	private double zipfExponent = 1.0;		// Skew of resource popularity; 0 is uniform
+	private double readRatio = 0.5;			// Fraction of accesses that are reads
+	private double blockingRatio = 0.5;		// Fraction of accesses that are blocking
+	private double localRatio = 0.5;		// Fraction of accesses to the user's own node
+	private double churnRatio = 0.0;		// Fraction of operations that disable/enable
+	private double thinkTimeMeanMs = 0.0;	// Mean of exponential think time; 0 for none
+	private long seed = 0;
+	private boolean resourceRanges = false;	// Declare resources of a node as a range
+
+	public WorkloadGenerator setNodes(int nodes) {
+		this.nodes = nodes;
+		return this;
+	}
+
+	public WorkloadGenerator setUsersPerNode(int usersPerNode) {
+		this.usersPerNode = usersPerNode;
+		return this;
+	}
+
+	public WorkloadGenerator setResourcesPerNode(int resourcesPerNode) {
+		this.resourcesPerNode = resourcesPerNode;
+		return this;
+	}
+
+	public WorkloadGenerator setOperationsPerUser(long operationsPerUser) {
+		this.operationsPerUser = operationsPerUser;
+		return this;
+	}
+
+	public WorkloadGenerator setZipfExponent(double zipfExponent) {
+		this.zipfExponent = zipfExponent;
+		return this;
+	}
+
+	public WorkloadGenerator setReadRatio(double readRatio) {
+		this.readRatio = readRatio;
+		return this;
+	}
+
+	public WorkloadGenerator setBlockingRatio(double blockingRatio) {
+		this.blockingRatio = blockingRatio;
+		return this;
+	}
+
+	public WorkloadGenerator setLocalRatio(double localRatio) {
+		this.localRatio = localRatio;
+		return this;
+	}
+
+	public WorkloadGenerator setChurnRatio(double churnRatio) {
+		this.churnRatio = churnRatio;
+		return this;
+	}
+
+	public WorkloadGenerator setThinkTimeMeanMs(double thinkTimeMeanMs) {
+		this.thinkTimeMeanMs = thinkTimeMeanMs;
+		return this;
+	}
+
+	public WorkloadGenerator setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @param resourceRanges	Whether each node declares its resources as one range
+	 * 							rather than as individual resources
+	 */
+	public WorkloadGenerator setResourceRanges(boolean resourceRanges) {
+		this.resourceRanges = resourceRanges;
+		return this;
+	}
+
+	public int getNodes() {
+		return nodes;
+	}
+
+	public int getUsersPerNode() {
+		return usersPerNode;
+	}
+
+	public int getResourcesPerNode() {
+		return resourcesPerNode;
+	}
+
+	public long getOperationsPerUser() {
+		return operationsPerUser;
+	}
+
+	/**
+	 * @param node	Node number
+	 * @return		Base name of the resources owned by the node
+	 */
+	public static String resourceBaseName(int node) {
+		return "Node" + node;
+	}
+
+	/**
+	 * Make the node specifications of the workload.
+	 *
+	 * @return	List of node specifications
+	 */
+	public ArrayList<NodeSpecification> makeNodes() {
+		UserScript.Block program = makeProgram();
+		ArrayList<NodeSpecification> list = new ArrayList<NodeSpecification>(nodes);
+		for (int node = 0; node < nodes; node++) {
+			ArrayList<UserScript> scripts = new ArrayList<UserScript>(usersPerNode);
+			Iterator<UserScript> it = userScripts(program, node);
+			while (it.hasNext()) {
+				scripts.add(it.next());
+			}
+			if (resourceRanges) {
+				ArrayList<ResourceRange> ranges = new ArrayList<ResourceRange>(1);
+				ranges.add(Systems.makeResourceRange(resourceBaseName(node), resourcesPerNode));
+				list.add(new NodeSpecification(new ArrayList<Resource>(), ranges, scripts));
+			}
+			else {
+				list.add(new NodeSpecification(makeResources(node), scripts));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * @param node	Node number
+	 * @return		Resources owned by given node
+	 */
+	public ArrayList<Resource> makeResources(int node) {
+		return Systems.makeResources(resourceBaseName(node), resourcesPerNode);
+	}
+
+	/**
+	 * Return the scripts of the users on a node, one at a time.
+	 *
+	 * @param node	Node number
+	 * @return		Iterator over the user scripts of the node
+	 */
+	public Iterator<UserScript> userScripts(int node) {
+		return userScripts(makeProgram(), node);
+	}
+
+	private Iterator<UserScript> userScripts(final UserScript.Block program, final int node) {
+		return new Iterator<UserScript>() {
+			private int user = 0;
+
+			@Override
+			public boolean hasNext() {
+				return user < usersPerNode;
+			}
+
+			@Override
+			public UserScript next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				long instance = (long) node * usersPerNode + user;
+				user++;
+				return UserScript.fromBlock(program, instance);
+			}
+		};
+	}
+
+	/**
+	 * Build the block shared by all users: one iteration per operation.
+	 *
+	 * @return	Program block
+	 */
+	private UserScript.Block makeProgram() {
+		Parameters p = new Parameters(this);
+		ArrayList<Object> body = new ArrayList<Object>(3);
+		body.add(new OperationStep(p, OperationStep.ACQUIRE));
+		if (thinkTimeMeanMs > 0)
+			body.add(new OperationStep(p, OperationStep.THINK));
+		body.add(new OperationStep(p, OperationStep.RELEASE));
+		return new UserScript.Block(operationsPerUser, body);
+	}
+
+	/**
+	 * Copy of the generator settings shared by the steps of a program, so that later
+	 * changes to the generator do not affect scripts already handed out.
+	 */
+	private static final class Parameters {
+		final int nodes;
+		final int usersPerNode;
+		final long operationsPerUser;
+		final double readRatio;
+		final double blockingRatio;
+		final double localRatio;
+		final double churnRatio;
+		final double thinkTimeMeanMs;
+		final long seed;
+		final double[] popularity;	// Cumulative Zipf distribution over resource numbers
+
+		Parameters(WorkloadGenerator g) {
+			this.nodes = g.nodes;
+			this.usersPerNode = g.usersPerNode;
+			this.operationsPerUser = g.operationsPerUser;
+			this.readRatio = g.readRatio;
+			this.blockingRatio = g.blockingRatio;
+			this.localRatio = g.localRatio;
+			this.churnRatio = g.churnRatio;
+			this.thinkTimeMeanMs = g.thinkTimeMeanMs;
+			this.seed = g.seed;
+			this.popularity = new double[g.resourcesPerNode];
+			double total = 0;
+			for (int i = 0; i < popularity.length; i++) {
+				total += 1.0 / Math.pow(i + 1, g.zipfExponent);
+				popularity[i] = total;
+			}
+			for (int i = 0; i < popularity.length; i++) {
+				popularity[i] /= total;
+			}
+		}
+
+		/**
+		 * Sample a resource number from the Zipf distribution.
+		 */
+		int sampleResource(SplittableRandom r) {
+			double u = r.nextDouble();
+			int low = 0;
+			int high = popularity.length - 1;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (popularity[mid] < u)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * One step of an operation.  All steps of an operation draw the same random choices,
+	 * since they are seeded with the same user and operation number.
+	 */
+	private static final class OperationStep implements UserScript.Step {
+		static final int ACQUIRE = 0;
+		static final int THINK = 1;
+		static final int RELEASE = 2;
+
+		private final Parameters p;
+		private final int phase;
+
+		OperationStep(Parameters p, int phase) {
+			this.p = p;
+			this.phase = phase;
+		}
+
+		@Override
+		public ArrayList<Object> instantiate(long iteration) {
+			// iteration = user instance * operationsPerUser + operation number
+			SplittableRandom r = new SplittableRandom(p.seed ^ (iteration * 0x9E3779B97F4A7C15L));
+			int home = (int) ((iteration / p.operationsPerUser) / p.usersPerNode);
+			boolean churn = r.nextDouble() < p.churnRatio;
+			int node = home;
+			if (p.nodes > 1 && r.nextDouble() >= p.localRatio) {
+				node = r.nextInt(p.nodes - 1);
+				if (node >= home)
+					node++;
+			}
+			String name = resourceBaseName(node) + "_" + p.sampleResource(r);
+			boolean read = r.nextDouble() < p.readRatio;
+			boolean blocking = r.nextDouble() < p.blockingRatio;
+
+			ArrayList<Object> step = new ArrayList<Object>(1);
+			if (phase == THINK) {
+				step.add(new SleepStep((long) (-p.thinkTimeMeanMs * Math.log(1.0 - r.nextDouble()))));
+			}
+			else if (churn) {
+				step.add(new ManagementRequest(name, phase == ACQUIRE ? ManagementRequestType.DISABLE : ManagementRequestType.ENABLE));
+			}
+			else if (phase == ACQUIRE) {
+				AccessRequestType type;
+				if (read)
+					type = blocking ? AccessRequestType.CONCURRENT_READ_BLOCKING : AccessRequestType.CONCURRENT_READ_NONBLOCKING;
+				else
+					type = blocking ? AccessRequestType.EXCLUSIVE_WRITE_BLOCKING : AccessRequestType.EXCLUSIVE_WRITE_NONBLOCKING;
+				step.add(new AccessRequest(name, type));
+			}
+			else {
+				step.add(new AccessRelease(name, read ? AccessType.CONCURRENT_READ : AccessType.EXCLUSIVE_WRITE));
+			}
+			return step;
+		}
+	}
+}